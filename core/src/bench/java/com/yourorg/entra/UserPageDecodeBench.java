@@ -0,0 +1,102 @@
+package com.yourorg.entra;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation and time per decoded user page, comparing:
+ * <ul>
+ *   <li>buffered: body to String, then {@code readTree} (the original executeJson path)</li>
+ *   <li>tree: {@code readTree} straight from the entity stream (current executeJson)</li>
+ *   <li>streaming: {@link UserPageReader} into {@link UserRecord}s (streamUserPage)</li>
+ * </ul>
+ * Run with {@code ant bench}. Needs a HotSpot JVM for per-thread allocation counters.
+ */
+public final class UserPageDecodeBench {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int WARMUP = 300;
+    private static final int ITERATIONS = 1000;
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 999;
+        byte[] page = syntheticPage(users);
+        System.out.printf("Page: %d users, %d bytes%n", users, page.length);
+
+        run("buffered", page, UserPageDecodeBench::buffered);
+        run("tree", page, UserPageDecodeBench::tree);
+        run("streaming", page, UserPageDecodeBench::streaming);
+    }
+
+    private interface Decoder {
+        long decode(HttpEntity entity) throws Exception;
+    }
+
+    private static long buffered(HttpEntity entity) throws Exception {
+        String body = EntityUtils.toString(entity, StandardCharsets.UTF_8);
+        JsonNode json = MAPPER.readTree(body);
+        return json.path("value").size();
+    }
+
+    private static long tree(HttpEntity entity) throws Exception {
+        try (InputStream in = entity.getContent()) {
+            return MAPPER.readTree(in).path("value").size();
+        }
+    }
+
+    private static long streaming(HttpEntity entity) throws Exception {
+        try (InputStream in = entity.getContent()) {
+            return UserPageReader.read(in, u -> sink += u.getId().length()).getCount();
+        }
+    }
+
+    private static void run(String name, byte[] page, Decoder decoder) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            sink += decoder.decode(entity(page));
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(tid);
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += decoder.decode(entity(page));
+        }
+        long nanos = System.nanoTime() - started;
+        long bytes = threads.getThreadAllocatedBytes(tid) - bytesBefore;
+
+        System.out.printf("%-10s %10.1f KB allocated/page %8.1f us/page%n",
+                name, bytes / 1024.0 / ITERATIONS, nanos / 1000.0 / ITERATIONS);
+    }
+
+    private static HttpEntity entity(byte[] page) {
+        return new ByteArrayEntity(page, ContentType.APPLICATION_JSON);
+    }
+
+    /** A page shaped like /v1.0/users?$select=id,displayName,userPrincipalName,accountEnabled. */
+    static byte[] syntheticPage(int users) {
+        StringBuilder sb = new StringBuilder(users * 200);
+        sb.append("{\"@odata.context\":\"https://graph.microsoft.com/v1.0/$metadata#users(id,displayName,userPrincipalName,accountEnabled)\",");
+        sb.append("\"@odata.nextLink\":\"https://graph.microsoft.com/v1.0/users?$top=").append(users)
+                .append("&$select=id,displayName,userPrincipalName,accountEnabled&$skiptoken=RFNwdAIAAQAAACpVc2VyXzAwMDAwMDAwLTAwMDAtMDAwMC0wMDAwLTAwMDAwMDAwMDAwMQ\",");
+        sb.append("\"value\":[");
+        for (int i = 0; i < users; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":\"").append(String.format("%08x-0000-4000-8000-%012x", i * 2654435761L & 0xffffffffL, (long) i))
+                    .append("\",\"displayName\":\"User ").append(i)
+                    .append(" Example\",\"userPrincipalName\":\"user").append(i)
+                    .append("@contoso.onmicrosoft.com\",\"accountEnabled\":").append(i % 7 != 0).append('}');
+        }
+        sb.append("]}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+package com.yourorg.entra;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * JMH entry point for {@code ant jmh}. Takes the usual JMH command line (a benchmark regex,
+ * -f, -t, -p ...) and always adds the gc profiler, so every result carries the allocation rate
+ * (gc.alloc.rate.norm, bytes per operation) next to the throughput.
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+    /** A committed fixture from src/jmh/resources. */
+    static byte[] fixture(String name) throws IOException {
+        try (InputStream in = Benchmarks.class.getResourceAsStream("/" + name)) {
+            if (in == null) {
+                throw new IOException("Missing benchmark fixture: " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.yourorg.entra;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code getAccessToken} with many threads asking at once, against a token endpoint on
+ * loopback. expiresIn=3600 is the steady state (every call is a volatile read and a clock
+ * check). expiresIn=61 leaves the token usable for about a second with a refresh due after
+ * half of it, so callers keep nudging the single in-flight refresh and occasionally wait on it.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GraphTokenProviderBenchmark {
+
+    @Param({"3600", "61"})
+    public int expiresIn;
+
+    private HttpServer server;
+    private GraphTokenProvider provider;
+
+    @Setup
+    public void setUp() throws Exception {
+        byte[] body = ("{\"token_type\":\"Bearer\",\"expires_in\":" + expiresIn
+                + ",\"access_token\":\"eyJ0eXAiOiJKV1QiLCJhbGciOiJSUzI1NiJ9.bench.signature\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().close();
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        provider = new GraphTokenProvider("http://127.0.0.1:" + server.getAddress().getPort(), "bench",
+                "client", "secret", "https://graph.microsoft.com/.default", 10);
+        provider.getAccessToken();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        provider.close();
+        server.stop(0);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String uncontended() throws Exception {
+        return provider.getAccessToken();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String contended() throws Exception {
+        return provider.getAccessToken();
+    }
+}
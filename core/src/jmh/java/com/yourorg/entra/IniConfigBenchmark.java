@@ -0,0 +1,56 @@
+package com.yourorg.entra;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Parsing config/entra.ini and reading the settings Main needs at startup. */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class IniConfigBenchmark {
+
+    private Path ini;
+
+    @Setup
+    public void setUp() throws Exception {
+        ini = Files.createTempFile("entra-bench", ".ini");
+        Files.write(ini, Benchmarks.fixture("entra.ini"));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(ini);
+    }
+
+    @Benchmark
+    public IniConfig parse() throws Exception {
+        return new IniConfig(ini.toString());
+    }
+
+    @Benchmark
+    public void parseAndRead(Blackhole bh) throws Exception {
+        IniConfig cfg = new IniConfig(ini.toString());
+        bh.consume(cfg.getRequired("graph", "tenantId"));
+        bh.consume(cfg.getRequired("graph", "clientId"));
+        bh.consume(cfg.getRequired("graph", "clientSecret"));
+        bh.consume(cfg.getRequired("graph", "authorityHost"));
+        bh.consume(cfg.getRequired("graph", "graphBaseUrl"));
+        bh.consume(cfg.getRequired("graph", "scope"));
+        bh.consume(cfg.getInt("app", "timeoutSeconds", 30));
+        bh.consume(cfg.getInt("app", "maxConnPerRoute", 32));
+        bh.consume(cfg.getInt("app", "maxRetries", 6));
+        bh.consume(cfg.getBoolean("app", "rateLimitEnabled", false));
+        bh.consume(cfg.getOptional("app", "tokenCacheDir"));
+    }
+}
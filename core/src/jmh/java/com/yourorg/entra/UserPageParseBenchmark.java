@@ -0,0 +1,40 @@
+package com.yourorg.entra;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The Jackson step of {@code GraphHttpClient.executeJson}: a 2xx /v1.0/users page read into a
+ * tree straight from the response entity. Fixtures are pages of 100 and 999 users with Graph's
+ * default user properties (users-100.json, users-999.json).
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserPageParseBenchmark {
+
+    @Param({"100", "999"})
+    public int users;
+
+    private byte[] page;
+
+    @Setup
+    public void setUp() throws Exception {
+        page = Benchmarks.fixture("users-" + users + ".json");
+    }
+
+    @Benchmark
+    public JsonNode readJson() throws Exception {
+        return GraphHttpClient.readJson(new ByteArrayEntity(page, ContentType.APPLICATION_JSON));
+    }
+}
@@ -0,0 +1,86 @@
+package com.yourorg.entra;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side request pacing that settles just below the tenant's throttle threshold (AIMD).
+ * <p>
+ * Each success raises the rate additively (by about {@code increasePerSecond} per second of traffic);
+ * each throttle response cuts it multiplicatively. Decreases are applied at most once per
+ * cooldown, so a burst of 429s from requests already in flight counts as one signal.
+ * Requests are spaced evenly at the current rate.
+ */
+public final class AdaptiveRateLimiter {
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double minRate;
+    private final double maxRate;
+    private final double increasePerSecond;
+    private final double decreaseFactor;
+
+    private double rate;
+    private long nextSlotNanos = System.nanoTime();
+    private long lastDecreaseNanos = System.nanoTime() - DECREASE_COOLDOWN_NANOS;
+
+    /**
+     * @param initialRate       starting requests per second
+     * @param minRate           floor, requests per second
+     * @param maxRate           ceiling, requests per second
+     * @param increasePerSecond additive increase per second of successful traffic
+     * @param decreaseFactor    multiplier applied on throttling, e.g. 0.5
+     */
+    public AdaptiveRateLimiter(double initialRate, double minRate, double maxRate,
+                               double increasePerSecond, double decreaseFactor) {
+        this.minRate = Math.max(0.1, minRate);
+        this.maxRate = Math.max(this.minRate, maxRate);
+        this.increasePerSecond = Math.max(0, increasePerSecond);
+        this.decreaseFactor = Math.min(0.99, Math.max(0.05, decreaseFactor));
+        this.rate = Math.min(this.maxRate, Math.max(this.minRate, initialRate));
+    }
+
+    /** Reads [app] rateLimit* settings; returns null (no pacing) unless rateLimitEnabled=true. */
+    public static AdaptiveRateLimiter fromIni(IniConfig cfg) {
+        if (!cfg.getBoolean("app", "rateLimitEnabled", false)) {
+            return null;
+        }
+        return new AdaptiveRateLimiter(
+                cfg.getInt("app", "rateLimitInitial", 20),
+                cfg.getInt("app", "rateLimitMin", 1),
+                cfg.getInt("app", "rateLimitMax", 500),
+                cfg.getInt("app", "rateLimitIncreasePerSecond", 2),
+                0.5);
+    }
+
+    /** Block until this caller may send its next request. */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextSlotNanos);
+            nextSlotNanos = slot + (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    public synchronized void onSuccess() {
+        // +increasePerSecond after roughly `rate` successes, i.e. about one second of traffic.
+        rate = Math.min(maxRate, rate + increasePerSecond / rate);
+    }
+
+    public synchronized void onThrottle() {
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos < DECREASE_COOLDOWN_NANOS) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        rate = Math.max(minRate, rate * decreaseFactor);
+    }
+
+    /** Current target rate in requests per second. */
+    public synchronized double getRate() {
+        return rate;
+    }
+}
@@ -0,0 +1,66 @@
+package com.yourorg.entra;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for the async API. On JDK 21+ each call gets its own virtual thread, so thousands of
+ * requests can wait on the network without a platform thread each.
+ * Older JDKs get a bounded pool of daemon threads. Looked up reflectively so the code still
+ * builds and runs on Java 8.
+ */
+final class AsyncExecutors {
+
+    private AsyncExecutors() {
+    }
+
+    /**
+     * @param name            thread name prefix
+     * @param platformThreads pool size when virtual threads are not available
+     */
+    static ExecutorService newAsyncExecutor(String name, int platformThreads) {
+        ExecutorService virtual = newVirtualThreadExecutor(name);
+        if (virtual != null) {
+            return virtual;
+        }
+        AtomicInteger n = new AtomicInteger();
+        ThreadFactory tf = r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(platformThreads, platformThreads,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), tf);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /** True when {@link #newAsyncExecutor} hands out virtual threads. */
+    static boolean virtualThreadsAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor(String name) {
+        try {
+            // Thread.ofVirtual().name(name + "-", 1).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method perTask = java.util.concurrent.Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) perTask.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.yourorg.entra;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enables or disables every user listed in a file (one UPN or object id per line).
+ * <p>
+ * The file is read line by line and only a bounded number of users are in flight at once,
+ * so input size does not affect memory. Each user's outcome is written to a results CSV
+ * ({@code user,status,detail}) as it completes. Blank lines and lines starting with {@code #}
+ * are skipped.
+ */
+public final class BulkAccountUpdater {
+    private final GraphHttpClient graph;
+    private final EntraUserManager mgr;
+    private final int concurrency;
+    private final boolean useBatch;
+
+    /**
+     * @param concurrency number of PATCH requests (or $batch calls when useBatch is set) in flight at once
+     * @param useBatch    send PATCHes in $batch calls of up to 20 users instead of one call per user
+     */
+    public BulkAccountUpdater(GraphHttpClient graph, int concurrency, boolean useBatch) {
+        this.graph = graph;
+        this.mgr = new EntraUserManager(graph);
+        this.concurrency = Math.max(1, concurrency);
+        this.useBatch = useBatch;
+    }
+
+    public Summary run(Path input, boolean enabled, Writer results) throws Exception {
+        AtomicLong succeeded = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        ResultSink sink = new ResultSink(results, succeeded, failed);
+        sink.header();
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, daemonThreads());
+        // Reader stays at most one queue-depth ahead of the workers.
+        Semaphore inFlight = new Semaphore(concurrency * 2);
+        long started = System.nanoTime();
+        long total = 0;
+
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            List<String> chunk = new ArrayList<>(GraphBatcher.MAX_BATCH_SIZE);
+            String line;
+            while ((line = in.readLine()) != null) {
+                String user = line.trim();
+                if (user.isEmpty() || user.startsWith("#")) {
+                    continue;
+                }
+                total++;
+
+                if (!useBatch) {
+                    inFlight.acquire();
+                    workers.execute(() -> {
+                        try {
+                            mgr.setAccountEnabled(user, enabled);
+                            sink.ok(user);
+                        } catch (Exception e) {
+                            sink.failed(user, e);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                    continue;
+                }
+
+                chunk.add(user);
+                if (chunk.size() == GraphBatcher.MAX_BATCH_SIZE) {
+                    submitBatch(workers, inFlight, chunk, enabled, sink);
+                    chunk = new ArrayList<>(GraphBatcher.MAX_BATCH_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                submitBatch(workers, inFlight, chunk, enabled, sink);
+            }
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            results.flush();
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        return new Summary(total, succeeded.get(), failed.get(), elapsedMs);
+    }
+
+    private void submitBatch(ExecutorService workers, Semaphore inFlight, List<String> users,
+                             boolean enabled, ResultSink sink) throws InterruptedException {
+        inFlight.acquire();
+        workers.execute(() -> {
+            try {
+                List<CompletableFuture<JsonNode>> futures = new ArrayList<>(users.size());
+                try (GraphBatcher batch = graph.newBatcher()) {
+                    for (String user : users) {
+                        futures.add(mgr.setAccountEnabled(batch, user, enabled));
+                    }
+                }
+                for (int i = 0; i < users.size(); i++) {
+                    try {
+                        futures.get(i).join();
+                        sink.ok(users.get(i));
+                    } catch (Exception e) {
+                        sink.failed(users.get(i), e.getCause() != null ? e.getCause() : e);
+                    }
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "entra-bulk-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** Serializes result rows from worker threads into the results CSV. */
+    private static final class ResultSink {
+        private final Writer out;
+        private final AtomicLong succeeded;
+        private final AtomicLong failed;
+
+        ResultSink(Writer out, AtomicLong succeeded, AtomicLong failed) {
+            this.out = out;
+            this.succeeded = succeeded;
+            this.failed = failed;
+        }
+
+        void header() throws IOException {
+            out.write("user,status,detail\n");
+        }
+
+        void ok(String user) {
+            succeeded.incrementAndGet();
+            write(user, "OK", "");
+        }
+
+        void failed(String user, Throwable e) {
+            failed.incrementAndGet();
+            write(user, "FAILED", String.valueOf(e.getMessage()));
+        }
+
+        private synchronized void write(String user, String status, String detail) {
+            try {
+                out.write(csv(user) + "," + status + "," + csv(detail) + "\n");
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write bulk result for " + user, e);
+            }
+        }
+
+        private static String csv(String s) {
+            String v = s.replace('\r', ' ').replace('\n', ' ');
+            if (v.indexOf(',') < 0 && v.indexOf('"') < 0) {
+                return v;
+            }
+            return "\"" + v.replace("\"", "\"\"") + "\"";
+        }
+    }
+
+    /** Totals and throughput for one bulk run. */
+    public static final class Summary {
+        public final long total;
+        public final long succeeded;
+        public final long failed;
+        public final long elapsedMillis;
+
+        Summary(long total, long succeeded, long failed, long elapsedMillis) {
+            this.total = total;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public double usersPerSecond() {
+            return elapsedMillis == 0 ? total : total * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Processed %d users in %.1fs (%.1f users/sec): ok=%d failed=%d",
+                    total, elapsedMillis / 1000.0, usersPerSecond(), succeeded, failed);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.yourorg.entra;
+
+/**
+ * Connection pool sizing for {@link GraphHttpClient}, read from the {@code [app]} section.
+ */
+public final class ConnectionPoolSettings {
+    public final int maxTotal;
+    public final int maxPerRoute;
+    public final int validateAfterInactivityMs;
+    public final int idleEvictSeconds;
+
+    public ConnectionPoolSettings(int maxTotal, int maxPerRoute, int validateAfterInactivityMs, int idleEvictSeconds) {
+        this.maxTotal = Math.max(1, maxTotal);
+        this.maxPerRoute = Math.max(1, Math.min(maxPerRoute, this.maxTotal));
+        this.validateAfterInactivityMs = Math.max(0, validateAfterInactivityMs);
+        this.idleEvictSeconds = Math.max(1, idleEvictSeconds);
+    }
+
+    /** Defaults sized for a single Graph host with moderate fan-out. */
+    public static ConnectionPoolSettings defaults() {
+        return new ConnectionPoolSettings(64, 32, 2000, 30);
+    }
+
+    public static ConnectionPoolSettings fromIni(IniConfig cfg) {
+        ConnectionPoolSettings d = defaults();
+        return new ConnectionPoolSettings(
+                cfg.getInt("app", "maxConnTotal", d.maxTotal),
+                cfg.getInt("app", "maxConnPerRoute", d.maxPerRoute),
+                cfg.getInt("app", "validateAfterInactivityMs", d.validateAfterInactivityMs),
+                cfg.getInt("app", "idleEvictSeconds", d.idleEvictSeconds));
+    }
+
+    @Override
+    public String toString() {
+        return "maxTotal=" + maxTotal + " maxPerRoute=" + maxPerRoute
+                + " validateAfterInactivityMs=" + validateAfterInactivityMs + " idleEvictSeconds=" + idleEvictSeconds;
+    }
+}
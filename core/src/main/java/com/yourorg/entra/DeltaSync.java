@@ -0,0 +1,93 @@
+package com.yourorg.entra;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings a {@link UserSnapshotStore} up to date using the Graph {@code /users/delta} query.
+ * <p>
+ * The first run pages through every user and ends with a deltaLink; later runs start from that
+ * deltaLink and only receive what changed since. Each page is committed to the store before the
+ * next one is requested, so an interrupted run resumes from the last committed page. If Graph
+ * rejects a saved token with 410 Gone, the store is reset and a full sync is done instead.
+ */
+public final class DeltaSync {
+    static final String INITIAL_PATH = "/v1.0/users/delta?$select=" + EntraUserManager.USER_SELECT;
+
+    private final GraphHttpClient graph;
+    private final UserSnapshotStore store;
+
+    public DeltaSync(GraphHttpClient graph, UserSnapshotStore store) {
+        this.graph = graph;
+        this.store = store;
+    }
+
+    public Result run() throws Exception {
+        long start = System.nanoTime();
+        String link = store.getResumeLink();
+        boolean fullSync = link == null;
+        if (fullSync) {
+            link = INITIAL_PATH;
+        }
+
+        int pages = 0;
+        long upserts = 0;
+        long removals = 0;
+        while (link != null) {
+            List<UserRecord> changes = new ArrayList<>();
+            UserPage page;
+            try {
+                page = graph.streamUserPage(link, changes::add);
+            } catch (GraphHttpException e) {
+                if (e.getStatusCode() != 410 || fullSync) {
+                    throw e;
+                }
+                // Delta token expired or was invalidated; start over from scratch.
+                store.reset();
+                link = INITIAL_PATH;
+                fullSync = true;
+                continue;
+            }
+
+            store.commitPage(changes, page.getNextLink(), page.getDeltaLink());
+            pages++;
+            for (UserRecord c : changes) {
+                if (c.isRemoved()) {
+                    removals++;
+                } else {
+                    upserts++;
+                }
+            }
+            link = page.getNextLink();
+        }
+
+        store.compact();
+        return new Result(fullSync, pages, upserts, removals, store.size(),
+                (System.nanoTime() - start) / 1_000_000L);
+    }
+
+    /** What one {@link #run()} did. */
+    public static final class Result {
+        public final boolean fullSync;
+        public final int pages;
+        public final long upserts;
+        public final long removals;
+        public final int totalUsers;
+        public final long elapsedMillis;
+
+        Result(boolean fullSync, int pages, long upserts, long removals, int totalUsers, long elapsedMillis) {
+            this.fullSync = fullSync;
+            this.pages = pages;
+            this.upserts = upserts;
+            this.removals = removals;
+            this.totalUsers = totalUsers;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s sync: %d pages, %d upserts, %d removals in %.1fs; %d users in snapshot",
+                    fullSync ? "Full" : "Incremental", pages, upserts, removals, elapsedMillis / 1000.0, totalUsers);
+        }
+    }
+}
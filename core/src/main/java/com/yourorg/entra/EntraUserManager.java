@@ -3,8 +3,12 @@ package com.yourorg.entra;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.util.concurrent.CompletableFuture;
+
 public final class EntraUserManager {
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    static final String USER_SELECT = "id,displayName,userPrincipalName,accountEnabled";
+
     private final GraphHttpClient graph;
 
     public EntraUserManager(GraphHttpClient graph) {
@@ -14,13 +18,52 @@ public final class EntraUserManager {
     /** List users (basic fields). Requires Directory.Read.All or User.Read.All application permission. */
     public JsonNode listUsers(int top) throws Exception {
         int safeTop = Math.max(1, Math.min(top, 999));
-        String path = "/v1.0/users?$top=" + safeTop + "&$select=id,displayName,userPrincipalName,accountEnabled";
+        String path = "/v1.0/users?$top=" + safeTop + "&$select=" + USER_SELECT;
         return graph.get(path);
     }
 
+    /**
+     * Iterate every user in the tenant, following @odata.nextLink. Memory stays at roughly two pages
+     * regardless of tenant size; the next page is prefetched while the current one is consumed.
+     * Close the iterator if you stop before the end.
+     */
+    public UserPageIterator iterateUsers(int pageSize) {
+        int safeTop = Math.max(1, Math.min(pageSize, 999));
+        return new UserPageIterator(graph, "/v1.0/users?$top=" + safeTop + "&$select=" + USER_SELECT);
+    }
+
+    /** Visit every user in the tenant. Returns the number of users visited. */
+    public long forEachUser(int pageSize, UserVisitor visitor) throws Exception {
+        long count = 0;
+        try (UserPageIterator users = iterateUsers(pageSize)) {
+            while (users.hasNext()) {
+                visitor.visit(users.next());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Visit every user in the tenant without building JSON trees: each page is decoded straight
+     * from the response stream into {@link UserRecord}s. Pages are fetched one after another.
+     * Returns the number of users visited.
+     */
+    public long forEachUserRecord(int pageSize, UserRecord.Handler handler) throws Exception {
+        int safeTop = Math.max(1, Math.min(pageSize, 999));
+        String next = "/v1.0/users?$top=" + safeTop + "&$select=" + USER_SELECT;
+        long count = 0;
+        while (next != null) {
+            UserPage page = graph.streamUserPage(next, handler);
+            count += page.getCount();
+            next = page.getNextLink();
+        }
+        return count;
+    }
+
     /** Get a user by UPN or objectId. */
     public JsonNode getUser(String userIdOrUpn) throws Exception {
-        String path = "/v1.0/users/" + urlEncodePath(userIdOrUpn) + "?$select=id,displayName,userPrincipalName,accountEnabled";
+        String path = "/v1.0/users/" + urlEncodePath(userIdOrUpn) + "?$select=" + USER_SELECT;
         return graph.get(path);
     }
 
@@ -31,6 +74,39 @@ public final class EntraUserManager {
         graph.patchJson(path, body);
     }
 
+    /** Async {@link #listUsers}. */
+    public CompletableFuture<JsonNode> listUsersAsync(int top) {
+        int safeTop = Math.max(1, Math.min(top, 999));
+        return graph.getAsync("/v1.0/users?$top=" + safeTop + "&$select=" + USER_SELECT);
+    }
+
+    /** Async {@link #getUser}. */
+    public CompletableFuture<JsonNode> getUserAsync(String userIdOrUpn) {
+        return graph.getAsync("/v1.0/users/" + urlEncodePath(userIdOrUpn) + "?$select=" + USER_SELECT);
+    }
+
+    /**
+     * Async {@link #setAccountEnabled(String, boolean)}. Many of these can be outstanding at once;
+     * how many actually hit the network together is bounded by the connection pool.
+     */
+    public CompletableFuture<Void> setAccountEnabledAsync(String userIdOrUpn, boolean enabled) {
+        String path = "/v1.0/users/" + urlEncodePath(userIdOrUpn);
+        String body = MAPPER.createObjectNode().put("accountEnabled", enabled).toString();
+        return graph.patchJsonAsync(path, body).thenApply(r -> null);
+    }
+
+    /** Queue an enable/disable on a batcher; the future completes when its $batch round trip does. */
+    public CompletableFuture<JsonNode> setAccountEnabled(GraphBatcher batch, String userIdOrUpn, boolean enabled) {
+        String path = "/v1.0/users/" + urlEncodePath(userIdOrUpn);
+        String body = MAPPER.createObjectNode().put("accountEnabled", enabled).toString();
+        return batch.patchJson(path, body).result();
+    }
+
+    /** Callback for {@link #forEachUser}. */
+    public interface UserVisitor {
+        void visit(JsonNode user) throws Exception;
+    }
+
     private static String urlEncodePath(String s) {
         // Minimal safe encoding for path segment; avoids adding new deps.
         return s.replace(" ", "%20").replace("@", "%40");
@@ -0,0 +1,125 @@
+package com.yourorg.entra;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Persists access tokens between processes so short-lived runs can skip the token endpoint.
+ * <p>
+ * One file per tenant/client/scope (named by a SHA-256 of the key, so no identifiers leak into file names).
+ * On POSIX file systems the directory is created {@code rwx------} and files {@code rw-------}.
+ * Only the access token and its expiry are stored, never the client secret.
+ */
+public final class FileTokenCache {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path dir;
+
+    public FileTokenCache(Path dir) {
+        this.dir = dir;
+    }
+
+    /** Returns the cached token, or null if none is stored or it cannot be read. */
+    public Entry load(String key) {
+        Path file = fileFor(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            JsonNode json = MAPPER.readTree(Files.readAllBytes(file));
+            String token = json.path("access_token").asText(null);
+            long expiresAt = json.path("expires_at").asLong(0);
+            if (token == null || token.isEmpty() || expiresAt == 0) {
+                return null;
+            }
+            return new Entry(token, Instant.ofEpochSecond(expiresAt));
+        } catch (IOException e) {
+            // A corrupt or unreadable cache just means a fresh token request.
+            return null;
+        }
+    }
+
+    public void store(String key, String accessToken, Instant expiresAt) throws IOException {
+        createPrivateDirectory();
+        String json = MAPPER.createObjectNode()
+                .put("access_token", accessToken)
+                .put("expires_at", expiresAt.getEpochSecond())
+                .toString();
+
+        // Write to a private temp file and rename, so readers never see a partial token.
+        Path tmp = Files.createTempFile(dir, "token", ".tmp", privateFile());
+        try {
+            Files.write(tmp, json.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, fileFor(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path fileFor(String key) {
+        return dir.resolve(sha256(key) + ".json");
+    }
+
+    private void createPrivateDirectory() throws IOException {
+        if (Files.isDirectory(dir)) {
+            return;
+        }
+        try {
+            if (isPosix()) {
+                Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(
+                        PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(dir);
+            }
+        } catch (FileAlreadyExistsException ignored) {
+            // raced with another process
+        }
+    }
+
+    private FileAttribute<?>[] privateFile() {
+        if (!isPosix()) {
+            return new FileAttribute<?>[0];
+        }
+        Set<PosixFilePermission> perms = PosixFilePermissions.fromString("rw-------");
+        return new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(perms) };
+    }
+
+    private boolean isPosix() {
+        return dir.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private static String sha256(String s) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** A cached token and its absolute expiry. */
+    public static final class Entry {
+        public final String accessToken;
+        public final Instant expiresAt;
+
+        Entry(String accessToken, Instant expiresAt) {
+            this.accessToken = accessToken;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
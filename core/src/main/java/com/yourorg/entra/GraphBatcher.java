@@ -0,0 +1,314 @@
+package com.yourorg.entra;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces individual Graph requests into JSON {@code /$batch} calls of up to 20 requests.
+ * <p>
+ * Each queued request gets a {@link Step} whose future completes with that request's own response
+ * body, or fails with a {@link GraphHttpException} carrying its own HTTP status and body (424 when
+ * it was skipped for a failed dependency, 0 when the batch reply left it out). A batch is sent as soon as 20 steps are queued, or on
+ * {@link #flush()} / {@link #close()}. Steps may depend on earlier steps: dependencies still queued
+ * are sent in the same batch with {@code dependsOn}; dependencies already sent are waited for first.
+ * Steps throttled inside a batch response (429, or 503/504 where the step may be repeated) are
+ * re-sent, together with any steps that failed only because of them, using the client's
+ * {@link RetryPolicy}. Safe to share between threads.
+ */
+public final class GraphBatcher implements AutoCloseable {
+    public static final int MAX_BATCH_SIZE = 20;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final GraphHttpClient graph;
+    private final String versionPrefix;
+    private final Object lock = new Object();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong stepsSent = new AtomicLong();
+
+    private List<Step> pending = new ArrayList<>();
+
+    GraphBatcher(GraphHttpClient graph, String apiVersion) {
+        this.graph = graph;
+        this.versionPrefix = "/" + apiVersion;
+    }
+
+    public Step get(String pathAndQuery) {
+        return enqueue("GET", pathAndQuery, null, new Step[0]);
+    }
+
+    public Step postJson(String pathAndQuery, String jsonBody, Step... dependsOn) {
+        return enqueue("POST", pathAndQuery, jsonBody, dependsOn);
+    }
+
+    public Step patchJson(String pathAndQuery, String jsonBody, Step... dependsOn) {
+        return enqueue("PATCH", pathAndQuery, jsonBody, dependsOn);
+    }
+
+    public Step delete(String pathAndQuery, Step... dependsOn) {
+        return enqueue("DELETE", pathAndQuery, null, dependsOn);
+    }
+
+    /** Send whatever is queued, even if fewer than 20 steps. */
+    public void flush() {
+        List<Step> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        send(batch);
+    }
+
+    /** Number of {@code /$batch} HTTP calls made so far. */
+    public long getBatchesSent() {
+        return batchesSent.get();
+    }
+
+    /** Number of individual requests carried by those batches. */
+    public long getStepsSent() {
+        return stepsSent.get();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private Step enqueue(String method, String pathAndQuery, String jsonBody, Step[] dependsOn) {
+        String url = toBatchUrl(pathAndQuery);
+        JsonNode body = parseBody(jsonBody);
+
+        List<Step> full = null;
+        Step step;
+        while (true) {
+            CompletableFuture<JsonNode> inFlight = null;
+            synchronized (lock) {
+                List<String> deps = new ArrayList<>();
+                Step failedDep = null;
+                for (Step d : dependsOn) {
+                    if (d.owner != this) {
+                        throw new IllegalArgumentException("Step belongs to a different batcher: " + d);
+                    }
+                    if (pending.contains(d)) {
+                        deps.add(d.id);
+                    } else if (!d.future.isDone()) {
+                        inFlight = d.future;
+                        break;
+                    } else if (d.future.isCompletedExceptionally()) {
+                        failedDep = d;
+                    }
+                }
+
+                if (inFlight == null) {
+                    step = new Step(this, String.valueOf(pending.size() + 1), method, url, body, deps);
+                    if (failedDep != null) {
+                        // Mirror Graph's 424 Failed Dependency without spending a round trip.
+                        step.future.completeExceptionally(new GraphHttpException(method, url, 424, null,
+                                "skipped, depends on failed " + failedDep));
+                        return step;
+                    }
+                    pending.add(step);
+                    if (pending.size() >= MAX_BATCH_SIZE) {
+                        full = pending;
+                        pending = new ArrayList<>();
+                    }
+                    break;
+                }
+            }
+            // A dependency is in a batch another thread is sending; wait for it outside the lock.
+            inFlight.handle((r, e) -> null).join();
+        }
+
+        if (full != null) {
+            send(full);
+        }
+        return step;
+    }
+
+    private void send(List<Step> batch) {
+        send(batch, 0);
+    }
+
+    private void send(List<Step> batch, int attempt) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<String, Step> byId = new LinkedHashMap<>();
+        for (Step s : batch) byId.put(s.id, s);
+
+        ObjectNode root = MAPPER.createObjectNode();
+        ArrayNode requests = root.putArray("requests");
+        for (Step s : batch) {
+            ObjectNode r = requests.addObject();
+            r.put("id", s.id);
+            r.put("method", s.method);
+            r.put("url", s.url);
+            if (s.body != null) {
+                r.set("body", s.body);
+                r.putObject("headers").put("Content-Type", "application/json");
+            }
+            ArrayNode deps = null;
+            for (String d : s.dependsOn) {
+                // On a retry, dependencies that already succeeded are no longer in the batch.
+                if (!byId.containsKey(d)) continue;
+                if (deps == null) deps = r.putArray("dependsOn");
+                deps.add(d);
+            }
+        }
+
+        JsonNode resp;
+        try {
+            resp = graph.postJson(versionPrefix + "/$batch", root.toString());
+        } catch (Exception e) {
+            for (Step s : batch) s.future.completeExceptionally(e);
+            return;
+        } finally {
+            batchesSent.incrementAndGet();
+            stepsSent.addAndGet(batch.size());
+        }
+
+        RetryPolicy policy = graph.getRetryPolicy();
+        boolean canRetry = attempt < policy.maxRetries;
+        Map<String, Step> retry = new LinkedHashMap<>();
+        Map<String, Step> failedDependency = new LinkedHashMap<>();
+        Map<String, JsonNode> failedDependencyResponses = new HashMap<>();
+        Duration retryAfter = null;
+        int throttled = 0;
+
+        // Responses can come back in any order; route each one by id.
+        for (JsonNode r : resp.path("responses")) {
+            Step s = byId.remove(r.path("id").asText());
+            if (s == null) {
+                continue;
+            }
+            int code = r.path("status").asInt();
+            JsonNode body = r.path("body");
+            Duration ra = RetryPolicy.parseRetryAfter(r.path("headers").path("Retry-After").asText(null));
+            if (code >= 200 && code < 300) {
+                s.future.complete(body.isMissingNode() || body.isNull() ? MAPPER.createObjectNode() : body);
+            } else if (canRetry && policy.isRetryable(s.method, code, ra)) {
+                retry.put(s.id, s);
+                if (code == 429) throttled++;
+                if (ra != null && (retryAfter == null || ra.compareTo(retryAfter) > 0)) retryAfter = ra;
+            } else if (canRetry && code == 424) {
+                failedDependency.put(s.id, s);
+                failedDependencyResponses.put(s.id, r);
+            } else {
+                s.future.completeExceptionally(stepFailed(s, r, code, ra));
+            }
+        }
+        for (Step s : byId.values()) {
+            s.future.completeExceptionally(new GraphHttpException(s.method, s.url, 0, null,
+                    "no response for step " + s.id + " in the $batch reply"));
+        }
+
+        // A 424 is only worth retrying if what it depended on is being retried too.
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Iterator<Step> it = failedDependency.values().iterator(); it.hasNext(); ) {
+                Step s = it.next();
+                for (String d : s.dependsOn) {
+                    if (retry.containsKey(d)) {
+                        retry.put(s.id, s);
+                        it.remove();
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        for (Step s : failedDependency.values()) {
+            s.future.completeExceptionally(stepFailed(s, failedDependencyResponses.get(s.id), 424, null));
+        }
+
+        if (retry.isEmpty()) {
+            return;
+        }
+        AdaptiveRateLimiter limiter = graph.getRateLimiter();
+        if (throttled > 0 && limiter != null) {
+            limiter.onThrottle();
+        }
+        long delayMs = policy.delayMs(attempt, retryAfter);
+        graph.getThrottleStats().recordRetries(retry.size(), throttled, delayMs);
+        try {
+            TimeUnit.MILLISECONDS.sleep(delayMs);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            for (Step s : retry.values()) s.future.completeExceptionally(ie);
+            return;
+        }
+        send(new ArrayList<>(retry.values()), attempt + 1);
+    }
+
+    private static GraphHttpException stepFailed(Step s, JsonNode response, int code, Duration retryAfter) {
+        JsonNode body = response.path("body");
+        return new GraphHttpException(s.method, s.url, code, retryAfter,
+                body.isMissingNode() ? "" : body.toString(), null,
+                response.path("headers").path("request-id").asText(null));
+    }
+
+    private String toBatchUrl(String pathAndQuery) {
+        // Batch step URLs are relative to the API version of the $batch endpoint itself.
+        if (pathAndQuery == null || !pathAndQuery.startsWith(versionPrefix + "/")) {
+            throw new IllegalArgumentException("Batched path must start with " + versionPrefix + "/: " + pathAndQuery);
+        }
+        return pathAndQuery.substring(versionPrefix.length());
+    }
+
+    private static JsonNode parseBody(String jsonBody) {
+        if (jsonBody == null) {
+            return null;
+        }
+        try {
+            return MAPPER.readTree(jsonBody);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Batched request body is not valid JSON: " + jsonBody, e);
+        }
+    }
+
+    /** One request inside a batch. */
+    public static final class Step {
+        private final GraphBatcher owner;
+        private final String id;
+        private final String method;
+        private final String url;
+        private final JsonNode body;
+        private final List<String> dependsOn;
+        private final CompletableFuture<JsonNode> future = new CompletableFuture<>();
+
+        private Step(GraphBatcher owner, String id, String method, String url, JsonNode body, List<String> dependsOn) {
+            this.owner = owner;
+            this.id = id;
+            this.method = method;
+            this.url = url;
+            this.body = body;
+            this.dependsOn = Collections.unmodifiableList(dependsOn);
+        }
+
+        /** Completes with this step's response body once its batch has been sent. */
+        public CompletableFuture<JsonNode> result() {
+            return future;
+        }
+
+        @Override
+        public String toString() {
+            return method + " " + url;
+        }
+    }
+}
@@ -2,25 +2,75 @@ package com.yourorg.entra;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.*;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 public final class GraphHttpClient implements AutoCloseable {
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
     private final CloseableHttpClient http;
+    private final PoolingHttpClientConnectionManager pool;
     private final GraphTokenProvider tokenProvider;
     private final String graphBaseUrl;
     private final RequestConfig requestConfig;
+    private final RetryPolicy retryPolicy;
+    private final AdaptiveRateLimiter rateLimiter;
+    private final ThrottleStats throttleStats;
+    private final GraphMetrics metrics;
+    private final SlowRequestLog slowRequestLog;
+    private final int asyncPlatformThreads;
+    private final Semaphore asyncPermits;
+    private volatile ExecutorService asyncExecutor;
 
     public GraphHttpClient(GraphTokenProvider tokenProvider, String graphBaseUrl, int timeoutSeconds) {
+        this(tokenProvider, graphBaseUrl, timeoutSeconds, ConnectionPoolSettings.defaults());
+    }
+
+    public GraphHttpClient(GraphTokenProvider tokenProvider, String graphBaseUrl, int timeoutSeconds,
+                           ConnectionPoolSettings poolSettings) {
+        this(tokenProvider, graphBaseUrl, timeoutSeconds, poolSettings, RetryPolicy.defaults(), null);
+    }
+
+    /**
+     * @param retryPolicy how 429/503/504 responses are retried
+     * @param rateLimiter optional adaptive pacing; null sends requests as fast as callers issue them
+     */
+    public GraphHttpClient(GraphTokenProvider tokenProvider, String graphBaseUrl, int timeoutSeconds,
+                           ConnectionPoolSettings poolSettings, RetryPolicy retryPolicy,
+                           AdaptiveRateLimiter rateLimiter) {
+        this(tokenProvider, graphBaseUrl, timeoutSeconds, poolSettings, retryPolicy, rateLimiter, null);
+    }
+
+    /** @param slowRequestLog optional log of attempts slower than its threshold; not closed by this client */
+    public GraphHttpClient(GraphTokenProvider tokenProvider, String graphBaseUrl, int timeoutSeconds,
+                           ConnectionPoolSettings poolSettings, RetryPolicy retryPolicy,
+                           AdaptiveRateLimiter rateLimiter, SlowRequestLog slowRequestLog) {
         this.tokenProvider = tokenProvider;
+        this.slowRequestLog = slowRequestLog;
+        this.retryPolicy = retryPolicy;
+        this.rateLimiter = rateLimiter;
+        this.throttleStats = new ThrottleStats(rateLimiter);
+        this.metrics = new GraphMetrics(throttleStats, tokenProvider.getTokenStats());
         this.graphBaseUrl = graphBaseUrl.endsWith("/") ? graphBaseUrl.substring(0, graphBaseUrl.length() - 1) : graphBaseUrl;
 
         int timeoutMs = Math.max(1, timeoutSeconds) * 1000;
@@ -30,7 +80,27 @@ public final class GraphHttpClient implements AutoCloseable {
                 .setSocketTimeout(timeoutMs)
                 .build();
 
-        this.http = HttpClients.createDefault();
+        // Keep-alive pool so concurrent callers reuse TLS connections instead of queueing behind
+        // the default two-per-route limit. Idle connections are evicted in the background.
+        // The pool and request executor also feed per-phase timings (see RequestTiming).
+        this.pool = RequestTiming.connectionManager();
+        pool.setMaxTotal(poolSettings.maxTotal);
+        pool.setDefaultMaxPerRoute(poolSettings.maxPerRoute);
+        pool.setValidateAfterInactivity(poolSettings.validateAfterInactivityMs);
+        // More async calls in flight than connections would only queue on the pool. On virtual
+        // threads that queueing is worse than wasteful: httpcore waits for a lease inside a
+        // synchronized block, which pins the carrier, so callers queue on a semaphore instead.
+        // All Graph calls share one route, so the per-route limit is the effective pool size.
+        this.asyncPlatformThreads = poolSettings.maxPerRoute;
+        this.asyncPermits = new Semaphore(poolSettings.maxPerRoute, true);
+
+        this.http = HttpClients.custom()
+                .setConnectionManager(pool)
+                .setRequestExecutor(RequestTiming.requestExecutor())
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(poolSettings.idleEvictSeconds, TimeUnit.SECONDS)
+                .build();
     }
 
     public JsonNode get(String pathAndQuery) throws Exception {
@@ -38,6 +108,33 @@ public final class GraphHttpClient implements AutoCloseable {
         return executeJson(req, null);
     }
 
+    /**
+     * GET an absolute URL returned by Graph, such as {@code @odata.nextLink}.
+     * Only URLs under graphBaseUrl are followed so the bearer token never leaves Graph.
+     */
+    public JsonNode getAbsolute(String url) throws Exception {
+        HttpGet req = new HttpGet(checkGraphUrl(url));
+        return executeJson(req, null);
+    }
+
+    /**
+     * GET a page of users and decode it straight from the response stream, handing each user to
+     * the handler as it is parsed. The page is never buffered as a String or JsonNode tree.
+     * Accepts a path ("/v1.0/users?...") or an absolute nextLink/deltaLink.
+     */
+    public UserPage streamUserPage(String pathOrUrl, UserRecord.Handler handler) throws Exception {
+        String url = pathOrUrl.startsWith("/") ? graphBaseUrl + pathOrUrl : checkGraphUrl(pathOrUrl);
+        HttpGet req = new HttpGet(url);
+        return execute(req, null, entity -> {
+            if (entity == null) {
+                return UserPage.EMPTY;
+            }
+            try (InputStream in = entity.getContent()) {
+                return UserPageReader.read(in, handler);
+            }
+        });
+    }
+
     public JsonNode postJson(String pathAndQuery, String jsonBody) throws Exception {
         HttpPost req = new HttpPost(graphBaseUrl + pathAndQuery);
         req.setEntity(new StringEntity(jsonBody, StandardCharsets.UTF_8));
@@ -55,45 +152,213 @@ public final class GraphHttpClient implements AutoCloseable {
         executeNoBody(req);
     }
 
-    private JsonNode executeJson(HttpRequestBase req, String contentType) throws Exception {
-        req.setConfig(requestConfig);
-        req.setHeader("Authorization", "Bearer " + tokenProvider.getAccessToken());
-        req.setHeader("Accept", "application/json");
-        if (contentType != null) req.setHeader("Content-Type", contentType);
+    /*
+     * Async variants. Each runs the blocking call above (same retries, throttling and token
+     * handling) on a virtual thread where the JDK has them, otherwise on a daemon pool sized to
+     * the connection pool. Futures fail with the same exceptions the blocking calls throw,
+     * wrapped in CompletionException.
+     */
 
-        try (CloseableHttpResponse resp = http.execute(req)) {
-            int code = resp.getStatusLine().getStatusCode();
-            String body = resp.getEntity() == null ? "" : EntityUtils.toString(resp.getEntity(), StandardCharsets.UTF_8);
+    public CompletableFuture<JsonNode> getAsync(String pathAndQuery) {
+        return async(() -> get(pathAndQuery));
+    }
+
+    public CompletableFuture<JsonNode> getAbsoluteAsync(String url) {
+        return async(() -> getAbsolute(url));
+    }
+
+    public CompletableFuture<JsonNode> postJsonAsync(String pathAndQuery, String jsonBody) {
+        return async(() -> postJson(pathAndQuery, jsonBody));
+    }
+
+    public CompletableFuture<JsonNode> patchJsonAsync(String pathAndQuery, String jsonBody) {
+        return async(() -> patchJson(pathAndQuery, jsonBody));
+    }
 
-            if (code < 200 || code >= 300) {
-                throw new RuntimeException("Graph call failed: " + req.getMethod() + " " + req.getURI()
-                        + " HTTP " + code + " body=" + body);
+    public CompletableFuture<Void> deleteAsync(String pathAndQuery) {
+        return async(() -> {
+            delete(pathAndQuery);
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> async(Callable<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                asyncPermits.acquire();
+                try {
+                    return call.call();
+                } finally {
+                    asyncPermits.release();
+                }
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
             }
-            if (body.isEmpty()) {
-                return MAPPER.createObjectNode();
+        }, asyncExecutor());
+    }
+
+    private ExecutorService asyncExecutor() {
+        ExecutorService ex = asyncExecutor;
+        if (ex == null) {
+            synchronized (this) {
+                ex = asyncExecutor;
+                if (ex == null) {
+                    ex = AsyncExecutors.newAsyncExecutor("entra-graph-async", asyncPlatformThreads);
+                    asyncExecutor = ex;
+                }
             }
-            return MAPPER.readTree(body);
+        }
+        return ex;
+    }
+
+    /**
+     * Snapshot of the connection pool: leased, pending (threads waiting for a connection),
+     * available and max. A persistently non-zero pending count means the pool is too small.
+     */
+    public PoolStats getPoolStats() {
+        return pool.getTotalStats();
+    }
+
+    /** Retries and throttling seen so far, including throttled steps inside $batch calls. */
+    public ThrottleStats getThrottleStats() {
+        return throttleStats;
+    }
+
+    /** Latency, status, byte and token counters; also registered as an MXBean while open. */
+    public GraphMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Start a batcher that coalesces requests into v1.0 {@code /$batch} calls of up to 20. */
+    public GraphBatcher newBatcher() {
+        return new GraphBatcher(this, "v1.0");
+    }
+
+    RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    AdaptiveRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    private JsonNode executeJson(HttpRequestBase req, String contentType) throws Exception {
+        return execute(req, contentType, GraphHttpClient::readJson);
+    }
+
+    /** Body of a 2xx response as a tree; an empty object when there is no body. */
+    static JsonNode readJson(HttpEntity entity) throws IOException {
+        if (entity == null) {
+            return MAPPER.createObjectNode();
+        }
+        // Parse from the stream rather than via an intermediate String copy of the body.
+        try (InputStream in = entity.getContent()) {
+            JsonNode json = MAPPER.readTree(in);
+            return json == null || json.isMissingNode() ? MAPPER.createObjectNode() : json;
         }
     }
 
     private void executeNoBody(HttpRequestBase req) throws Exception {
+        execute(req, null, entity -> {
+            EntityUtils.consume(entity);
+            return null;
+        });
+    }
+
+    /**
+     * Send the request, retrying 429/503/504 per the retry policy (honoring Retry-After), and
+     * hand a 2xx entity to the reader. Other statuses throw {@link GraphHttpException}.
+     */
+    private <T> T execute(HttpRequestBase req, String contentType, BodyReader<T> reader) throws Exception {
+        GraphMetrics.Operation op = GraphMetrics.Operation.classify(req.getMethod(), req.getURI().getRawPath());
+        HttpEntity body = req instanceof HttpEntityEnclosingRequestBase
+                ? ((HttpEntityEnclosingRequestBase) req).getEntity() : null;
+        long bytesOut = body == null ? 0 : body.getContentLength();
+        RequestTiming timing = new RequestTiming(req.getMethod(), String.valueOf(req.getURI()));
+        HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(RequestTiming.CONTEXT_KEY, timing);
+        for (int attempt = 0; ; attempt++) {
+            if (rateLimiter != null) {
+                rateLimiter.acquire();
+            }
+            prepare(req, contentType, timing);
+
+            GraphHttpException failure;
+            // Latency covers the whole attempt: pool lease, send, and reading the body.
+            timing.begin(attempt);
+            try (CloseableHttpResponse resp = http.execute(req, context)) {
+                int code = resp.getStatusLine().getStatusCode();
+                Header requestId = resp.getFirstHeader("request-id");
+                timing.response(code, requestId == null ? null : requestId.getValue());
+                HttpEntity entity = timing.wrap(metrics.meter(resp.getEntity()));
+
+                if (code >= 200 && code < 300) {
+                    if (rateLimiter != null) {
+                        rateLimiter.onSuccess();
+                    }
+                    return reader.read(entity);
+                }
+                failure = failure(req, resp, entity, timing);
+            } finally {
+                timing.end();
+                metrics.record(op, timing, bytesOut);
+                if (slowRequestLog != null) {
+                    slowRequestLog.offer(timing);
+                }
+            }
+
+            if (failure.isThrottled() && rateLimiter != null) {
+                rateLimiter.onThrottle();
+            }
+            if (!retryPolicy.isRetryable(req.getMethod(), failure.getStatusCode(), failure.getRetryAfter())
+                    || attempt >= retryPolicy.maxRetries) {
+                throw failure;
+            }
+            long delayMs = retryPolicy.delayMs(attempt, failure.getRetryAfter());
+            throttleStats.recordRetry(failure.isThrottled(), delayMs);
+            TimeUnit.MILLISECONDS.sleep(delayMs);
+        }
+    }
+
+    private void prepare(HttpRequestBase req, String contentType, RequestTiming timing) throws Exception {
         req.setConfig(requestConfig);
         req.setHeader("Authorization", "Bearer " + tokenProvider.getAccessToken());
         req.setHeader("Accept", "application/json");
+        // Graph echoes this back and logs it next to its own request-id.
+        req.setHeader("client-request-id", timing.getClientRequestId());
+        if (contentType != null) req.setHeader("Content-Type", contentType);
+    }
 
-        try (CloseableHttpResponse resp = http.execute(req)) {
-            int code = resp.getStatusLine().getStatusCode();
-            String body = resp.getEntity() == null ? "" : EntityUtils.toString(resp.getEntity(), StandardCharsets.UTF_8);
+    private static GraphHttpException failure(HttpRequestBase req, HttpResponse resp, HttpEntity entity,
+                                              RequestTiming timing) throws Exception {
+        String body = entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+        Header retryAfter = resp.getFirstHeader("Retry-After");
+        return new GraphHttpException(req.getMethod(), timing.getUri(),
+                resp.getStatusLine().getStatusCode(),
+                RetryPolicy.parseRetryAfter(retryAfter == null ? null : retryAfter.getValue()), body,
+                timing.getClientRequestId(), timing.getRequestId());
+    }
 
-            if (code < 200 || code >= 300) {
-                throw new RuntimeException("Graph call failed: " + req.getMethod() + " " + req.getURI()
-                        + " HTTP " + code + " body=" + body);
-            }
+    private String checkGraphUrl(String url) {
+        if (url == null || !url.startsWith(graphBaseUrl + "/")) {
+            throw new IllegalArgumentException("Refusing to follow link outside " + graphBaseUrl + ": " + url);
         }
+        return url;
     }
 
     @Override
     public void close() throws Exception {
+        ExecutorService ex = asyncExecutor;
+        if (ex != null) {
+            ex.shutdownNow();
+        }
+        metrics.unregister();
         http.close();
     }
+
+    private interface BodyReader<T> {
+        T read(HttpEntity entity) throws Exception;
+    }
 }
@@ -0,0 +1,57 @@
+package com.yourorg.entra;
+
+import java.time.Duration;
+
+/**
+ * A non-2xx response from Graph. Carries the status code and any {@code Retry-After} so callers
+ * (and the retry loop) can tell throttling apart from real failures.
+ */
+public final class GraphHttpException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final Duration retryAfter;
+    private final String clientRequestId;
+    private final String requestId;
+
+    public GraphHttpException(String method, String uri, int statusCode, Duration retryAfter, String body) {
+        this(method, uri, statusCode, retryAfter, body, null, null);
+    }
+
+    /** @param clientRequestId our {@code client-request-id}; requestId Graph's {@code request-id} */
+    public GraphHttpException(String method, String uri, int statusCode, Duration retryAfter, String body,
+                              String clientRequestId, String requestId) {
+        super("Graph call failed: " + method + " " + uri + " HTTP " + statusCode
+                + (requestId == null ? "" : " request-id=" + requestId)
+                + (clientRequestId == null ? "" : " client-request-id=" + clientRequestId)
+                + " body=" + body);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+        this.clientRequestId = clientRequestId;
+        this.requestId = requestId;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /** Server-requested wait before retrying, or null if none was sent. */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /** The {@code client-request-id} we sent, or null. Quote it with request-id to Microsoft support. */
+    public String getClientRequestId() {
+        return clientRequestId;
+    }
+
+    /** Graph's {@code request-id} response header, or null. */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /** 429 Too Many Requests: Graph asking us to slow down. */
+    public boolean isThrottled() {
+        return statusCode == 429;
+    }
+}
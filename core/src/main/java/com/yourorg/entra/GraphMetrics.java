@@ -0,0 +1,309 @@
+package com.yourorg.entra;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import javax.management.ObjectName;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-operation latency, status counts and bytes transferred by a {@link GraphHttpClient}, plus
+ * its {@link ThrottleStats} and the token provider's {@link TokenStats}.
+ * <p>
+ * Recording is on the request path, so it only touches atomics and preallocated histograms:
+ * the operation is classified from the method and raw path without building strings, and byte
+ * counts come from Content-Length. Only a response without one (chunked) gets a counting wrapper.
+ * Everything else is computed when a getter or {@link #summary()} asks for it.
+ */
+public final class GraphMetrics implements GraphMetricsMXBean {
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+    private static final int MAX_STATUS = 600;
+
+    /** What a request does, as far as its method and path tell. */
+    public enum Operation {
+        LIST_USERS, DELTA, GET_USER, UPDATE_USER, DELETE_USER, INVITE, BATCH, OTHER;
+
+        static Operation classify(String method, String rawPath) {
+            if (rawPath == null) {
+                return OTHER;
+            }
+            if (rawPath.endsWith("/$batch")) {
+                return BATCH;
+            }
+            if (rawPath.endsWith("/invitations")) {
+                return INVITE;
+            }
+            if (rawPath.endsWith("/users/delta")) {
+                return DELTA;
+            }
+            if (rawPath.endsWith("/users")) {
+                return "GET".equals(method) ? LIST_USERS : OTHER;
+            }
+            int users = rawPath.indexOf("/users/");
+            if (users < 0 || rawPath.indexOf('/', users + 7) >= 0) {
+                return OTHER;
+            }
+            switch (method) {
+                case "GET":
+                    return GET_USER;
+                case "PATCH":
+                    return UPDATE_USER;
+                case "DELETE":
+                    return DELETE_USER;
+                default:
+                    return OTHER;
+            }
+        }
+    }
+
+    /** Parts of an attempt, as broken down by {@link RequestTiming}. */
+    public enum Phase {
+        LEASE, CONNECT, TTFB, READ, PARSE
+    }
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[Operation.values().length];
+    private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+    private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS);
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final ThrottleStats throttleStats;
+    private final TokenStats tokenStats;
+    private final ObjectName objectName;
+
+    GraphMetrics(ThrottleStats throttleStats, TokenStats tokenStats) {
+        this.throttleStats = throttleStats;
+        this.tokenStats = tokenStats;
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new LatencyHistogram();
+        }
+        this.objectName = register("client-" + INSTANCES.incrementAndGet());
+    }
+
+    /** One finished HTTP attempt; {@code bytesSent} is the request body length, or negative when unknown. */
+    void record(Operation op, RequestTiming timing, long bytesSent) {
+        record(op, timing.getStatus(), timing.getTotalNanos(), bytesSent);
+        phases[Phase.LEASE.ordinal()].recordNanos(timing.getLeaseNanos());
+        if (timing.getConnectNanos() > 0) {
+            // Only attempts that opened a connection; the count is the number of new connections.
+            phases[Phase.CONNECT.ordinal()].recordNanos(timing.getConnectNanos());
+        }
+        phases[Phase.TTFB.ordinal()].recordNanos(timing.getTtfbNanos());
+        phases[Phase.READ.ordinal()].recordNanos(timing.getReadNanos());
+        phases[Phase.PARSE.ordinal()].recordNanos(timing.getParseNanos());
+    }
+
+    /** {@code status} is 0 when no response arrived. */
+    void record(Operation op, int status, long nanos, long bytesSent) {
+        latency[op.ordinal()].recordNanos(nanos);
+        statusCounts.incrementAndGet(status > 0 && status < MAX_STATUS ? status : 0);
+        requests.incrementAndGet();
+        if (status < 200 || status >= 300) {
+            failures.incrementAndGet();
+        }
+        if (bytesSent > 0) {
+            bytesOut.addAndGet(bytesSent);
+        }
+    }
+
+    /**
+     * Count the response body. Returns the entity to read from: the same one when its length is
+     * known, otherwise a wrapper that counts bytes as they are consumed.
+     */
+    HttpEntity meter(HttpEntity entity) {
+        if (entity == null) {
+            return null;
+        }
+        long length = entity.getContentLength();
+        if (length >= 0) {
+            bytesIn.addAndGet(length);
+            return entity;
+        }
+        return new CountingEntity(entity, bytesIn);
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public long getRetries() {
+        return throttleStats.getRetries();
+    }
+
+    @Override
+    public long getThrottled() {
+        return throttleStats.getThrottled();
+    }
+
+    @Override
+    public long getRetryDelayMs() {
+        return throttleStats.getRetryDelayMs();
+    }
+
+    @Override
+    public long getTokenRefreshes() {
+        return tokenStats.getRefreshes();
+    }
+
+    @Override
+    public long getTokenFailures() {
+        return tokenStats.getFailures();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    @Override
+    public Map<String, Long> getStatusCounts() {
+        Map<String, Long> out = new TreeMap<>();
+        for (int i = 0; i < MAX_STATUS; i++) {
+            long n = statusCounts.get(i);
+            if (n > 0) {
+                out.put(String.valueOf(i), n);
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public Map<String, LatencyHistogram.Snapshot> getLatency() {
+        Map<String, LatencyHistogram.Snapshot> out = new LinkedHashMap<>();
+        for (Operation op : Operation.values()) {
+            LatencyHistogram.Snapshot s = latency[op.ordinal()].snapshot();
+            if (s.getCount() > 0) {
+                out.put(op.name(), s);
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public Map<String, LatencyHistogram.Snapshot> getPhaseLatency() {
+        Map<String, LatencyHistogram.Snapshot> out = new LinkedHashMap<>();
+        for (Phase p : Phase.values()) {
+            out.put(p.name(), phases[p.ordinal()].snapshot());
+        }
+        return out;
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getTokenLatency() {
+        return tokenStats.getFetchLatency();
+    }
+
+    /** Multi-line end-of-run report. */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Requests: %d (failures %d), bytes in %d, bytes out %d%n",
+                getRequests(), getFailures(), getBytesIn(), getBytesOut()));
+        sb.append("Status: ").append(getStatusCounts()).append(System.lineSeparator());
+        sb.append("Throttling: ").append(throttleStats).append(System.lineSeparator());
+        sb.append("Token: ").append(tokenStats);
+        LatencyHistogram.Snapshot token = getTokenLatency();
+        if (token.getCount() > 0) {
+            sb.append(' ').append(token);
+        }
+        sb.append(System.lineSeparator());
+        for (Map.Entry<String, LatencyHistogram.Snapshot> e : getLatency().entrySet()) {
+            sb.append(String.format("  %-12s %s%n", e.getKey(), e.getValue()));
+        }
+        if (getRequests() > 0) {
+            sb.append("Phases:").append(System.lineSeparator());
+            for (Map.Entry<String, LatencyHistogram.Snapshot> e : getPhaseLatency().entrySet()) {
+                sb.append(String.format("  %-12s %s%n", e.getKey(), e.getValue()));
+            }
+        }
+        return sb.toString();
+    }
+
+    void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+            // Already gone; nothing to do.
+        }
+    }
+
+    private ObjectName register(String name) {
+        try {
+            ObjectName on = new ObjectName("com.yourorg.entra:type=GraphMetrics,name=" + name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+            return on;
+        } catch (Exception | LinkageError e) {
+            // JMX is a convenience; metrics still work and are printed without it.
+            System.err.println("Warning: could not register GraphMetrics MBean: " + e);
+            return null;
+        }
+    }
+
+    private static final class CountingEntity extends HttpEntityWrapper {
+        private final AtomicLong counter;
+
+        CountingEntity(HttpEntity entity, AtomicLong counter) {
+            super(entity);
+            this.counter = counter;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(super.getContent()) {
+                private long count;
+
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        count++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0) {
+                        count += n;
+                    }
+                    return n;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    counter.addAndGet(count);
+                    count = 0;
+                    super.close();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.yourorg.entra;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link GraphMetrics}, registered as
+ * {@code com.yourorg.entra:type=GraphMetrics,name=client-N} while the client is open.
+ */
+public interface GraphMetricsMXBean {
+    /** HTTP attempts sent, retries included. */
+    long getRequests();
+
+    /** Attempts that got a non-2xx response or no response at all. */
+    long getFailures();
+
+    long getRetries();
+
+    long getThrottled();
+
+    long getRetryDelayMs();
+
+    long getTokenRefreshes();
+
+    long getTokenFailures();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    /** Attempts by HTTP status; "0" counts I/O errors (no response). */
+    Map<String, Long> getStatusCounts();
+
+    /** Per-operation attempt latency, in microseconds. */
+    Map<String, LatencyHistogram.Snapshot> getLatency();
+
+    /** Per-attempt time by phase (lease, connect, ttfb, read, parse), in microseconds. */
+    Map<String, LatencyHistogram.Snapshot> getPhaseLatency();
+
+    /** Token endpoint call latency, in microseconds. */
+    LatencyHistogram.Snapshot getTokenLatency();
+}
@@ -12,36 +12,74 @@ import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * OAuth2 client-credentials token acquisition for Microsoft identity platform v2.
+ * <p>
+ * Reads are lock-free: callers get the current token from a volatile holder. A background thread
+ * refreshes the token ahead of expiry, and at most one token request is ever in flight; callers
+ * only wait when there is no usable token at all (first call, or refresh kept failing).
+ * <p>
+ * With a {@link FileTokenCache}, a still-valid token written by an earlier process is reused
+ * instead of calling the token endpoint, and every fetched token is written back.
  */
-public final class GraphTokenProvider {
+public final class GraphTokenProvider implements AutoCloseable {
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    // Tokens are never handed out within this margin of expiry.
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(60);
+    // Background refresh starts this long before expiry (or at half-life for short tokens).
+    private static final Duration REFRESH_LEAD = Duration.ofMinutes(5);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+
     private final String tokenEndpoint;
     private final String clientId;
     private final String clientSecret;
     private final String scope;
     private final RequestConfig requestConfig;
+    private final CloseableHttpClient http;
+    private final ScheduledThreadPoolExecutor refresher;
+    private final FileTokenCache tokenCache;
+    private final String cacheKey;
+    private final TokenStats stats = new TokenStats();
 
-    // simple in-memory cache
-    private String cachedAccessToken;
-    private Instant cachedExpiry = Instant.EPOCH;
+    private volatile CachedToken current;
+    // After a failed refresh, callers don't start another before this; the retry is scheduled.
+    private volatile Instant retryAt = Instant.EPOCH;
+    private final AtomicReference<CompletableFuture<CachedToken>> inFlight = new AtomicReference<>();
+    private ScheduledFuture<?> scheduledRefresh;
 
     public GraphTokenProvider(String authorityHost, String tenantId,
                               String clientId, String clientSecret,
                               String scope, int timeoutSeconds) {
+        this(authorityHost, tenantId, clientId, clientSecret, scope, timeoutSeconds, null);
+    }
+
+    /** @param tokenCache optional cross-process cache; null keeps tokens in memory only */
+    public GraphTokenProvider(String authorityHost, String tenantId,
+                              String clientId, String clientSecret,
+                              String scope, int timeoutSeconds, FileTokenCache tokenCache) {
 
         String base = authorityHost.endsWith("/") ? authorityHost.substring(0, authorityHost.length() - 1) : authorityHost;
         this.tokenEndpoint = base + "/" + tenantId + "/oauth2/v2.0/token";
         this.clientId = clientId;
         this.clientSecret = clientSecret;
         this.scope = scope;
+        this.tokenCache = tokenCache;
+        this.cacheKey = tokenEndpoint + "|" + clientId + "|" + scope;
 
         int timeoutMs = Math.max(1, timeoutSeconds) * 1000;
         this.requestConfig = RequestConfig.custom()
@@ -49,14 +87,148 @@ public final class GraphTokenProvider {
                 .setConnectionRequestTimeout(timeoutMs)
                 .setSocketTimeout(timeoutMs)
                 .build();
+
+        this.http = HttpClients.createDefault();
+        this.refresher = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "entra-token-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        this.refresher.setRemoveOnCancelPolicy(true);
+    }
+
+    public String getAccessToken() throws Exception {
+        CachedToken t = current;
+        Instant now = Instant.now();
+        if (t != null && now.isBefore(t.usableUntil)) {
+            if (!now.isBefore(t.refreshAt) && !now.isBefore(retryAt)) {
+                // Scheduled refresh is late; nudge it without making this caller wait. After a
+                // failure the scheduled retry does this, so an outage costs one call per RETRY_DELAY.
+                refreshAsync();
+            }
+            return t.value;
+        }
+
+        try {
+            return refreshAsync().get().value;
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw ee;
+        }
+    }
+
+    /** Token endpoint calls, failures and disk cache hits so far. */
+    public TokenStats getTokenStats() {
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        refresher.shutdownNow();
+        // A refresh still queued was dropped; don't leave its waiters blocked forever.
+        CompletableFuture<CachedToken> pending = inFlight.getAndSet(null);
+        if (pending != null) {
+            pending.completeExceptionally(new IllegalStateException("Token provider closed"));
+        }
+        http.close();
+    }
+
+    /** Returns the in-flight refresh, starting one if none is running. */
+    private CompletableFuture<CachedToken> refreshAsync() {
+        while (true) {
+            CompletableFuture<CachedToken> existing = inFlight.get();
+            if (existing != null) {
+                return existing;
+            }
+            CompletableFuture<CachedToken> mine = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, mine)) {
+                continue;
+            }
+            try {
+                refresher.execute(() -> refresh(mine));
+            } catch (RejectedExecutionException e) {
+                inFlight.compareAndSet(mine, null);
+                mine.completeExceptionally(new IllegalStateException("Token provider closed", e));
+            }
+            return mine;
+        }
+    }
+
+    // Only called on the refresher thread.
+    private void refresh(CompletableFuture<CachedToken> mine) {
+        try {
+            CachedToken t = loadFromDisk();
+            if (t == null) {
+                long start = System.nanoTime();
+                t = fetchToken();
+                stats.recordFetch(System.nanoTime() - start);
+                saveToDisk(t);
+            } else {
+                stats.recordDiskCacheHit();
+            }
+            current = t;
+            retryAt = Instant.EPOCH;
+            scheduleRefresh(Duration.between(Instant.now(), t.refreshAt));
+            inFlight.compareAndSet(mine, null);
+            mine.complete(t);
+        } catch (Throwable e) {
+            stats.recordFailure();
+            CachedToken t = current;
+            if (t != null && Instant.now().isBefore(t.usableUntil)) {
+                retryAt = Instant.now().plus(RETRY_DELAY);
+                scheduleRefresh(RETRY_DELAY);
+            }
+            inFlight.compareAndSet(mine, null);
+            mine.completeExceptionally(e);
+        }
+    }
+
+    // Only called on the refresher thread.
+    private void scheduleRefresh(Duration delay) {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        if (refresher.isShutdown()) {
+            return;
+        }
+        long delayMs = Math.max(0, delay.toMillis());
+        scheduledRefresh = refresher.schedule(this::refreshAsync, delayMs, TimeUnit.MILLISECONDS);
     }
 
-    public synchronized String getAccessToken() throws Exception {
-        // refresh 60s early
-        if (cachedAccessToken != null && Instant.now().isBefore(cachedExpiry.minusSeconds(60))) {
-            return cachedAccessToken;
+    /** A token another process cached, if it is usable and newer than ours. */
+    private CachedToken loadFromDisk() {
+        if (tokenCache == null) {
+            return null;
         }
+        FileTokenCache.Entry e = tokenCache.load(cacheKey);
+        if (e == null) {
+            return null;
+        }
+        CachedToken candidate = new CachedToken(e.accessToken, e.expiresAt);
+        CachedToken cur = current;
+        if (!Instant.now().isBefore(candidate.usableUntil)
+                || (cur != null && !candidate.expiresAt.isAfter(cur.expiresAt))) {
+            return null;
+        }
+        return candidate;
+    }
 
+    private void saveToDisk(CachedToken t) {
+        if (tokenCache == null) {
+            return;
+        }
+        try {
+            tokenCache.store(cacheKey, t.value, t.expiresAt);
+        } catch (IOException e) {
+            // The disk cache is only an optimization; never fail a token request because of it.
+            System.err.println("Warning: could not write token cache: " + e.getMessage());
+        }
+    }
+
+    private CachedToken fetchToken() throws Exception {
         HttpPost post = new HttpPost(tokenEndpoint);
         post.setConfig(requestConfig);
         post.setHeader("Content-Type", "application/x-www-form-urlencoded");
@@ -68,8 +240,7 @@ public final class GraphTokenProvider {
         form.add(new BasicNameValuePair("scope", scope));
         post.setEntity(new UrlEncodedFormEntity(form, StandardCharsets.UTF_8));
 
-        try (CloseableHttpClient http = HttpClients.createDefault();
-             CloseableHttpResponse resp = http.execute(post)) {
+        try (CloseableHttpResponse resp = http.execute(post)) {
 
             int code = resp.getStatusLine().getStatusCode();
             String body = resp.getEntity() == null ? "" : EntityUtils.toString(resp.getEntity(), StandardCharsets.UTF_8);
@@ -86,9 +257,24 @@ public final class GraphTokenProvider {
                 throw new RuntimeException("Token response missing access_token. body=" + body);
             }
 
-            this.cachedAccessToken = token;
-            this.cachedExpiry = Instant.now().plusSeconds(Math.max(60, expiresIn));
-            return token;
+            return new CachedToken(token, Instant.now().plusSeconds(Math.max(60, expiresIn)));
+        }
+    }
+
+    /** Immutable token snapshot; swapped atomically via the volatile field. */
+    private static final class CachedToken {
+        final String value;
+        final Instant expiresAt;
+        final Instant usableUntil;
+        final Instant refreshAt;
+
+        CachedToken(String value, Instant expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.usableUntil = expiresAt.minus(EXPIRY_MARGIN);
+            Duration lifetime = Duration.between(Instant.now(), usableUntil);
+            Duration lead = lifetime.compareTo(REFRESH_LEAD.multipliedBy(2)) < 0 ? lifetime.dividedBy(2) : REFRESH_LEAD;
+            this.refreshAt = usableUntil.minus(lead);
         }
     }
 }
@@ -21,8 +21,19 @@ public final class IniConfig {
         return val.trim();
     }
 
+    /** Returns the trimmed value, or null if missing or blank. */
+    public String getOptional(String section, String key) {
+        String val = ini.getString(section + "." + key);
+        return (val == null || val.trim().isEmpty()) ? null : val.trim();
+    }
+
     public int getInt(String section, String key, int defaultValue) {
         String fullKey = section + "." + key;
         return ini.getInt(fullKey, defaultValue);
     }
+
+    public boolean getBoolean(String section, String key, boolean defaultValue) {
+        String fullKey = section + "." + key;
+        return ini.getBoolean(fullKey, defaultValue);
+    }
 }
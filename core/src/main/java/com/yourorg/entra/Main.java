@@ -3,10 +3,19 @@ package com.yourorg.entra;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.apache.commons.configuration.ConfigurationException;
 
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 public final class Main {
     public static void main(String[] args) throws Exception {
-        if (args.length < 1) {
+        boolean deltaSync = args.length == 3 && "delta-sync".equals(args[1]);
+        if (args.length != 1 && args.length != 3 && args.length != 4) {
             System.err.println("Usage: java ... com.yourorg.entra.Main <path-to-ini>");
+            System.err.println("       java ... com.yourorg.entra.Main <path-to-ini> enable|disable <users-file> [results-csv]");
+            System.err.println("       java ... com.yourorg.entra.Main <path-to-ini> delta-sync <store-dir>");
             System.exit(2);
         }
 
@@ -27,19 +36,68 @@ public final class Main {
         String scope = cfg.getRequired("graph", "scope");
         int timeoutSeconds = cfg.getInt("app", "timeoutSeconds", 30);
 
-        GraphTokenProvider tokenProvider = new GraphTokenProvider(
-                authorityHost, tenantId, clientId, clientSecret, scope, timeoutSeconds
-        );
+        ConnectionPoolSettings pool = ConnectionPoolSettings.fromIni(cfg);
+        RetryPolicy retryPolicy = RetryPolicy.fromIni(cfg);
+        AdaptiveRateLimiter rateLimiter = AdaptiveRateLimiter.fromIni(cfg);
+        String tokenCacheDir = cfg.getOptional("app", "tokenCacheDir");
+        FileTokenCache tokenCache = tokenCacheDir == null ? null : new FileTokenCache(Paths.get(tokenCacheDir));
+
+        try (SlowRequestLog slowLog = SlowRequestLog.fromIni(cfg);
+             GraphTokenProvider tokenProvider = new GraphTokenProvider(
+                     authorityHost, tenantId, clientId, clientSecret, scope, timeoutSeconds, tokenCache);
+             GraphHttpClient graph = new GraphHttpClient(
+                     tokenProvider, graphBaseUrl, timeoutSeconds, pool, retryPolicy, rateLimiter, slowLog)) {
+            if (deltaSync) {
+                runDeltaSync(graph, Paths.get(args[2]));
+                return;
+            }
+            if (args.length > 1) {
+                runBulk(cfg, graph, args);
+                return;
+            }
 
-        try (GraphHttpClient graph = new GraphHttpClient(tokenProvider, graphBaseUrl, timeoutSeconds)) {
             EntraUserManager mgr = new EntraUserManager(graph);
 
             // Demo: list first 10 users
             JsonNode users = mgr.listUsers(10);
             System.out.println(users.toPrettyString());
+            System.out.print(graph.getMetrics().summary());
+
+            // Example full-tenant enumeration (streams page by page):
+            // long total = mgr.forEachUser(999, u -> System.out.println(u.path("userPrincipalName").asText()));
 
             // Example enable/disable:
             // mgr.setAccountEnabled("user@domain.com", false);
         }
     }
+
+    private static void runDeltaSync(GraphHttpClient graph, Path storeDir) throws Exception {
+        try (UserSnapshotStore store = UserSnapshotStore.open(storeDir)) {
+            DeltaSync.Result result = new DeltaSync(graph, store).run();
+            System.out.println(result);
+            System.out.print(graph.getMetrics().summary());
+            System.out.println("Snapshot: " + storeDir.toAbsolutePath());
+        }
+    }
+
+    private static void runBulk(IniConfig cfg, GraphHttpClient graph, String[] args) throws Exception {
+        String action = args[1];
+        if (!"enable".equals(action) && !"disable".equals(action)) {
+            throw new IllegalArgumentException("Bulk action must be enable or disable (got: " + action + ")");
+        }
+        Path input = Paths.get(args[2]);
+        Path resultsPath = Paths.get(args.length > 3 ? args[3] : args[2] + ".results.csv");
+
+        int concurrency = cfg.getInt("app", "bulkConcurrency", 8);
+        boolean useBatch = cfg.getBoolean("app", "bulkUseBatch", true);
+
+        BulkAccountUpdater updater = new BulkAccountUpdater(graph, concurrency, useBatch);
+        try (Writer results = Files.newBufferedWriter(resultsPath, StandardCharsets.UTF_8)) {
+            BulkAccountUpdater.Summary summary = updater.run(input, "enable".equals(action), results);
+            System.out.println(summary);
+            System.out.println("Connection pool: " + graph.getPoolStats());
+            System.out.print(graph.getMetrics().summary());
+            System.out.println("Per-user results: " + resultsPath.toAbsolutePath());
+        }
+    }
 }
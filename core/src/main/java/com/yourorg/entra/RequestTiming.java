@@ -0,0 +1,227 @@
+package com.yourorg.entra;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Where the time went in one attempt of a Graph call, plus the ids that tie it to Graph's logs.
+ * <p>
+ * Phases, in order: <b>lease</b> (waiting for a pooled connection), <b>connect</b> (TCP and TLS,
+ * only when the pool had no open connection), <b>ttfb</b> (sending the request until the response
+ * headers arrive: mostly Graph service time), <b>read</b> (blocked reading the body from the
+ * socket) and <b>parse</b> (everything else until the body is consumed: JSON decoding and any
+ * per-user handler). Only ttfb is Graph; lease, read and parse are ours.
+ * <p>
+ * The connection manager and request executor from {@link #connectionManager()} and
+ * {@link #requestExecutor()} fill in connect and ttfb through the {@link HttpContext}.
+ */
+public final class RequestTiming {
+    static final String CONTEXT_KEY = "com.yourorg.entra.RequestTiming";
+
+    private final String method;
+    private final String uri;
+    private final String clientRequestId;
+    private int attempt;
+    private int status;
+    private String requestId;
+    private long startNanos;
+    private long connectNanos;
+    private long sentNanos;
+    private long headersNanos;
+    private long readNanos;
+    private long endNanos;
+
+    RequestTiming(String method, String uri) {
+        this.method = method;
+        this.uri = uri;
+        this.clientRequestId = newClientRequestId();
+    }
+
+    /** A random (version 4) UUID without going through the shared SecureRandom. */
+    static String newClientRequestId() {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        long msb = (r.nextLong() & ~0xF000L) | 0x4000L;
+        long lsb = (r.nextLong() & ~(3L << 62)) | (1L << 63);
+        return new UUID(msb, lsb).toString();
+    }
+
+    static RequestTiming of(HttpContext context) {
+        Object t = context == null ? null : context.getAttribute(CONTEXT_KEY);
+        return t instanceof RequestTiming ? (RequestTiming) t : null;
+    }
+
+    void begin(int attempt) {
+        this.attempt = attempt;
+        this.status = 0;
+        this.requestId = null;
+        this.connectNanos = 0;
+        this.sentNanos = 0;
+        this.headersNanos = 0;
+        this.readNanos = 0;
+        this.endNanos = 0;
+        this.startNanos = System.nanoTime();
+    }
+
+    void response(int status, String requestId) {
+        this.status = status;
+        this.requestId = requestId;
+    }
+
+    void end() {
+        endNanos = System.nanoTime();
+    }
+
+    /** Time blocked in the body's read calls is counted as read; the rest of the body is parse. */
+    HttpEntity wrap(HttpEntity entity) {
+        return entity == null ? null : new TimedEntity(entity, this);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    /** Sent as the {@code client-request-id} header; the same for every retry of one call. */
+    public String getClientRequestId() {
+        return clientRequestId;
+    }
+
+    /** Graph's {@code request-id} response header, or null if no response arrived. */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /** HTTP status, or 0 when no response arrived. */
+    public int getStatus() {
+        return status;
+    }
+
+    public long getTotalNanos() {
+        return endNanos - startNanos;
+    }
+
+    public long getLeaseNanos() {
+        return sentNanos == 0 ? 0 : sentNanos - startNanos - connectNanos;
+    }
+
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    public long getTtfbNanos() {
+        return headersNanos == 0 ? 0 : headersNanos - sentNanos;
+    }
+
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    public long getParseNanos() {
+        return headersNanos == 0 ? 0 : Math.max(0, endNanos - headersNanos - readNanos);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s status=%d attempt=%d total=%.1fms lease=%.1f connect=%.1f ttfb=%.1f read=%.1f parse=%.1f"
+                        + " client-request-id=%s request-id=%s",
+                method, uri, status, attempt, ms(getTotalNanos()), ms(getLeaseNanos()), ms(connectNanos),
+                ms(getTtfbNanos()), ms(readNanos), ms(getParseNanos()), clientRequestId, requestId);
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /** Pool whose connect step (TCP plus TLS handshake) is timed into the request's timing. */
+    static PoolingHttpClientConnectionManager connectionManager() {
+        return new PoolingHttpClientConnectionManager() {
+            @Override
+            public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout,
+                                HttpContext context) throws IOException {
+                long start = System.nanoTime();
+                try {
+                    super.connect(conn, route, connectTimeout, context);
+                } finally {
+                    RequestTiming t = of(context);
+                    if (t != null) {
+                        t.connectNanos += System.nanoTime() - start;
+                    }
+                }
+            }
+        };
+    }
+
+    /** Executor that marks when the request starts going out and when response headers are in. */
+    static HttpRequestExecutor requestExecutor() {
+        return new HttpRequestExecutor() {
+            @Override
+            public HttpResponse execute(HttpRequest request, HttpClientConnection conn,
+                                        HttpContext context) throws IOException, HttpException {
+                RequestTiming t = of(context);
+                if (t != null) {
+                    t.sentNanos = System.nanoTime();
+                }
+                HttpResponse resp = super.execute(request, conn, context);
+                if (t != null) {
+                    t.headersNanos = System.nanoTime();
+                }
+                return resp;
+            }
+        };
+    }
+
+    private static final class TimedEntity extends HttpEntityWrapper {
+        private final RequestTiming timing;
+
+        TimedEntity(HttpEntity entity, RequestTiming timing) {
+            super(entity);
+            this.timing = timing;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(super.getContent()) {
+                @Override
+                public int read() throws IOException {
+                    long start = System.nanoTime();
+                    try {
+                        return super.read();
+                    } finally {
+                        timing.readNanos += System.nanoTime() - start;
+                    }
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    long start = System.nanoTime();
+                    try {
+                        return super.read(b, off, len);
+                    } finally {
+                        timing.readNanos += System.nanoTime() - start;
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.yourorg.entra;
+
+import org.apache.http.client.utils.DateUtils;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When and how long to wait before retrying a Graph call.
+ * <p>
+ * 429 is retried for every method. 503 and 504 are retried for idempotent methods, and for POST
+ * and PATCH only when the server sent {@code Retry-After}: a gateway timeout on an invitation or
+ * {@code $batch} may mean the backend already ran it, and sending it again would repeat it.
+ * A {@code Retry-After} from the server always wins and is waited out in full; one longer than
+ * maxDelay ends the retries rather than retrying before Graph said to. Otherwise the delay is
+ * exponential backoff with jitter (uniform between half and all of the backoff), capped at maxDelay.
+ */
+public final class RetryPolicy {
+    public final int maxRetries;
+    public final long baseDelayMs;
+    public final long maxDelayMs;
+
+    public RetryPolicy(int maxRetries, long baseDelayMs, long maxDelayMs) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelayMs = Math.max(1, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+    }
+
+    public static RetryPolicy defaults() {
+        return new RetryPolicy(6, 500, 60_000);
+    }
+
+    public static RetryPolicy fromIni(IniConfig cfg) {
+        RetryPolicy d = defaults();
+        return new RetryPolicy(
+                cfg.getInt("app", "maxRetries", d.maxRetries),
+                cfg.getInt("app", "retryBaseDelayMs", (int) d.baseDelayMs),
+                cfg.getInt("app", "retryMaxDelayMs", (int) d.maxDelayMs));
+    }
+
+    public boolean isRetryable(String method, int statusCode, Duration retryAfter) {
+        if (retryAfter != null && retryAfter.toMillis() > maxDelayMs) {
+            return false;
+        }
+        if (statusCode == 429) {
+            return true;
+        }
+        if (statusCode != 503 && statusCode != 504) {
+            return false;
+        }
+        return isIdempotent(method) || retryAfter != null;
+    }
+
+    private static boolean isIdempotent(String method) {
+        switch (method) {
+            case "GET":
+            case "HEAD":
+            case "PUT":
+            case "DELETE":
+            case "OPTIONS":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Delay before retry number {@code attempt} (0-based). */
+    public long delayMs(int attempt, Duration retryAfter) {
+        if (retryAfter != null) {
+            return Math.max(0, retryAfter.toMillis());
+        }
+        long ceiling = baseDelayMs << Math.min(attempt, 20);
+        ceiling = Math.min(maxDelayMs, ceiling);
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    /** Parse a Retry-After header: delta-seconds or an HTTP-date. Null if absent or unparseable. */
+    public static Duration parseRetryAfter(String header) {
+        if (header == null || header.trim().isEmpty()) {
+            return null;
+        }
+        String v = header.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(v)));
+        } catch (NumberFormatException notSeconds) {
+            Date at = DateUtils.parseDate(v);
+            return at == null ? null : Duration.ofMillis(Math.max(0, at.getTime() - System.currentTimeMillis()));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.yourorg.entra;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One line per Graph request attempt slower than a threshold, with its {@link RequestTiming}
+ * breakdown and correlation ids. Configured from {@code [app]}: {@code slowRequestMs} (0, the
+ * default, turns it off) and optional {@code slowRequestLog} (a file to append to; stderr
+ * otherwise).
+ */
+public final class SlowRequestLog implements AutoCloseable {
+    private final long thresholdNanos;
+    private final PrintStream out;
+    private final boolean ownsStream;
+
+    public SlowRequestLog(long thresholdMs, PrintStream out) {
+        this(thresholdMs, out, false);
+    }
+
+    private SlowRequestLog(long thresholdMs, PrintStream out, boolean ownsStream) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, thresholdMs));
+        this.out = out;
+        this.ownsStream = ownsStream;
+    }
+
+    /** Appends to {@code file}, creating it if needed. */
+    public static SlowRequestLog toFile(long thresholdMs, Path file) throws IOException {
+        PrintStream ps = new PrintStream(new FileOutputStream(file.toFile(), true), true, StandardCharsets.UTF_8.name());
+        return new SlowRequestLog(thresholdMs, ps, true);
+    }
+
+    /** @return null when slowRequestMs is unset or 0 */
+    public static SlowRequestLog fromIni(IniConfig cfg) throws IOException {
+        int thresholdMs = cfg.getInt("app", "slowRequestMs", 0);
+        if (thresholdMs <= 0) {
+            return null;
+        }
+        String file = cfg.getOptional("app", "slowRequestLog");
+        return file == null ? new SlowRequestLog(thresholdMs, System.err) : toFile(thresholdMs, Paths.get(file));
+    }
+
+    public long getThresholdMs() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    void offer(RequestTiming timing) {
+        if (timing.getTotalNanos() >= thresholdNanos) {
+            // One println per line so concurrent callers never interleave within a line.
+            out.println(Instant.now() + " SLOW " + timing);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownsStream) {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.yourorg.entra;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for retries and throttling seen by a {@link GraphHttpClient}.
+ */
+public final class ThrottleStats {
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong retryDelayMs = new AtomicLong();
+    private final AdaptiveRateLimiter limiter;
+
+    ThrottleStats(AdaptiveRateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    void recordRetry(boolean wasThrottled, long delayMs) {
+        retries.incrementAndGet();
+        if (wasThrottled) {
+            throttled.incrementAndGet();
+        }
+        retryDelayMs.addAndGet(delayMs);
+    }
+
+    void recordRetries(int count, int wasThrottled, long delayMs) {
+        retries.addAndGet(count);
+        throttled.addAndGet(wasThrottled);
+        retryDelayMs.addAndGet(delayMs);
+    }
+
+    /** Requests re-sent after a retryable failure. */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /** 429 responses received (including steps inside $batch responses). */
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    /** Total time spent waiting before retries. */
+    public long getRetryDelayMs() {
+        return retryDelayMs.get();
+    }
+
+    @Override
+    public String toString() {
+        String s = "retries=" + retries.get() + " throttled=" + throttled.get()
+                + " retryDelayMs=" + retryDelayMs.get();
+        if (limiter != null) {
+            s += String.format(" rateLimit=%.1f/s", limiter.getRate());
+        }
+        return s;
+    }
+}
@@ -0,0 +1,55 @@
+package com.yourorg.entra;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for token acquisition by a {@link GraphTokenProvider}.
+ */
+public final class TokenStats {
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong diskCacheHits = new AtomicLong();
+    private final LatencyHistogram fetchLatency = new LatencyHistogram();
+
+    TokenStats() {
+    }
+
+    void recordFetch(long nanos) {
+        refreshes.incrementAndGet();
+        fetchLatency.recordNanos(nanos);
+    }
+
+    void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    void recordDiskCacheHit() {
+        diskCacheHits.incrementAndGet();
+    }
+
+    /** Tokens fetched from the token endpoint. */
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    /** Refresh attempts that failed (network error, non-2xx, bad response). */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /** Tokens taken from the {@link FileTokenCache} instead of the token endpoint. */
+    public long getDiskCacheHits() {
+        return diskCacheHits.get();
+    }
+
+    /** Latency of successful token endpoint calls. */
+    public LatencyHistogram.Snapshot getFetchLatency() {
+        return fetchLatency.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return "refreshes=" + refreshes.get() + " failures=" + failures.get()
+                + " diskCacheHits=" + diskCacheHits.get();
+    }
+}
@@ -0,0 +1,33 @@
+package com.yourorg.entra;
+
+/**
+ * What is left of a streamed user page once its users have been handed out: the count and the paging links.
+ */
+public final class UserPage {
+    static final UserPage EMPTY = new UserPage(0, null, null);
+
+    private final long count;
+    private final String nextLink;
+    private final String deltaLink;
+
+    UserPage(long count, String nextLink, String deltaLink) {
+        this.count = count;
+        this.nextLink = nextLink;
+        this.deltaLink = deltaLink;
+    }
+
+    /** Number of users decoded from this page. */
+    public long getCount() {
+        return count;
+    }
+
+    /** {@code @odata.nextLink}, or null on the last page. */
+    public String getNextLink() {
+        return nextLink;
+    }
+
+    /** {@code @odata.deltaLink}, present only on the last page of a delta query. */
+    public String getDeltaLink() {
+        return deltaLink;
+    }
+}
@@ -0,0 +1,98 @@
+package com.yourorg.entra;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Iterates every user of a Graph collection, one record at a time, following {@code @odata.nextLink}.
+ * <p>
+ * At most two pages are held in memory: the one being consumed and the next one, which is
+ * fetched on a background thread while the caller works through the current page.
+ * Close the iterator when stopping early so the prefetch thread is released.
+ */
+public final class UserPageIterator implements Iterator<JsonNode>, AutoCloseable {
+    private final GraphHttpClient graph;
+    private final ExecutorService prefetcher;
+
+    private Iterator<JsonNode> current = Collections.emptyIterator();
+    private Future<JsonNode> nextPage;
+    private long pagesFetched;
+
+    UserPageIterator(GraphHttpClient graph, String firstPathAndQuery) {
+        this.graph = graph;
+        this.prefetcher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "entra-user-prefetch");
+            t.setDaemon(true);
+            return t;
+        });
+        this.nextPage = prefetcher.submit(() -> graph.get(firstPathAndQuery));
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (nextPage == null) {
+                return false;
+            }
+            JsonNode page = await(nextPage);
+            pagesFetched++;
+
+            String nextLink = page.path("@odata.nextLink").asText(null);
+            if (nextLink != null && !nextLink.isEmpty()) {
+                nextPage = prefetcher.submit(() -> graph.getAbsolute(nextLink));
+            } else {
+                nextPage = null;
+                prefetcher.shutdown();
+            }
+            current = page.path("value").elements();
+        }
+        return true;
+    }
+
+    @Override
+    public JsonNode next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /** Number of pages received from Graph so far. */
+    public long getPagesFetched() {
+        return pagesFetched;
+    }
+
+    @Override
+    public void close() {
+        if (nextPage != null) {
+            nextPage.cancel(true);
+            nextPage = null;
+        }
+        current = Collections.emptyIterator();
+        prefetcher.shutdownNow();
+    }
+
+    private JsonNode await(Future<JsonNode> page) {
+        try {
+            return page.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new RuntimeException("Interrupted while waiting for user page", ie);
+        } catch (ExecutionException ee) {
+            close();
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("Failed to fetch user page", cause);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.yourorg.entra;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes a Graph user collection page ({@code {"value":[...], "@odata.nextLink":...}}) with Jackson's
+ * streaming parser. Users are handed out one at a time as they are parsed, so the page is never held
+ * as a String or a JsonNode tree. Unknown fields are skipped; delta pages ({@code @odata.deltaLink},
+ * {@code @removed}, partial records) are handled too.
+ */
+final class UserPageReader {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private UserPageReader() {
+    }
+
+    static UserPage read(InputStream in, UserRecord.Handler handler) throws Exception {
+        String nextLink = null;
+        String deltaLink = null;
+        long count = 0;
+
+        try (JsonParser p = JSON.createParser(in)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object at start of user page");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken t = p.nextToken();
+                if ("value".equals(field) && t == JsonToken.START_ARRAY) {
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        handler.handle(readUser(p));
+                        count++;
+                    }
+                } else if ("@odata.nextLink".equals(field)) {
+                    nextLink = text(p, t);
+                } else if ("@odata.deltaLink".equals(field)) {
+                    deltaLink = text(p, t);
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return new UserPage(count, nextLink, deltaLink);
+    }
+
+    private static UserRecord readUser(JsonParser p) throws IOException {
+        String id = null;
+        String displayName = null;
+        String upn = null;
+        Boolean accountEnabled = null;
+        int present = 0;
+        boolean removed = false;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken t = p.nextToken();
+            switch (field) {
+                case "id":
+                    id = text(p, t);
+                    present |= UserRecord.ID;
+                    break;
+                case "displayName":
+                    displayName = text(p, t);
+                    present |= UserRecord.DISPLAY_NAME;
+                    break;
+                case "userPrincipalName":
+                    upn = text(p, t);
+                    present |= UserRecord.UPN;
+                    break;
+                case "accountEnabled":
+                    accountEnabled = t == JsonToken.VALUE_TRUE ? Boolean.TRUE
+                            : t == JsonToken.VALUE_FALSE ? Boolean.FALSE : null;
+                    present |= UserRecord.ACCOUNT_ENABLED;
+                    break;
+                case "@removed":
+                    // delta queries: {"id":"...","@removed":{"reason":"changed|deleted"}}
+                    removed = true;
+                    p.skipChildren();
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        return new UserRecord(id, displayName, upn, accountEnabled, present, removed);
+    }
+
+    private static String text(JsonParser p, JsonToken t) throws IOException {
+        return t == JsonToken.VALUE_NULL ? null : p.getText();
+    }
+}
@@ -0,0 +1,80 @@
+package com.yourorg.entra;
+
+/**
+ * One user as decoded by {@link UserPageReader}: just the fields EntraUserManager selects.
+ * <p>
+ * Records from a delta query may carry only the properties that changed, or be a removal marker;
+ * {@link #mergedInto} applies such a change to a previously known record.
+ */
+public final class UserRecord {
+    static final int ID = 1;
+    static final int DISPLAY_NAME = 1 << 1;
+    static final int UPN = 1 << 2;
+    static final int ACCOUNT_ENABLED = 1 << 3;
+    static final int ALL = ID | DISPLAY_NAME | UPN | ACCOUNT_ENABLED;
+
+    private final String id;
+    private final String displayName;
+    private final String userPrincipalName;
+    private final Boolean accountEnabled;
+    private final int present;
+    private final boolean removed;
+
+    public UserRecord(String id, String displayName, String userPrincipalName, Boolean accountEnabled) {
+        this(id, displayName, userPrincipalName, accountEnabled, ALL, false);
+    }
+
+    UserRecord(String id, String displayName, String userPrincipalName, Boolean accountEnabled,
+               int present, boolean removed) {
+        this.id = id;
+        this.displayName = displayName;
+        this.userPrincipalName = userPrincipalName;
+        this.accountEnabled = accountEnabled;
+        this.present = present;
+        this.removed = removed;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getUserPrincipalName() {
+        return userPrincipalName;
+    }
+
+    public Boolean getAccountEnabled() {
+        return accountEnabled;
+    }
+
+    /** True for a delta entry marked {@code @removed} (user deleted or moved out of scope). */
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    /** Apply this (possibly partial) change on top of {@code previous}; fields not sent keep their old values. */
+    public UserRecord mergedInto(UserRecord previous) {
+        if (previous == null || present == ALL) {
+            return new UserRecord(id, displayName, userPrincipalName, accountEnabled);
+        }
+        return new UserRecord(
+                id,
+                (present & DISPLAY_NAME) != 0 ? displayName : previous.displayName,
+                (present & UPN) != 0 ? userPrincipalName : previous.userPrincipalName,
+                (present & ACCOUNT_ENABLED) != 0 ? accountEnabled : previous.accountEnabled);
+    }
+
+    @Override
+    public String toString() {
+        return "UserRecord{id='" + id + "', displayName='" + displayName + "', userPrincipalName='"
+                + userPrincipalName + "', accountEnabled=" + accountEnabled + (removed ? ", removed" : "") + "}";
+    }
+
+    /** Receives users as they are decoded from a response stream. */
+    public interface Handler {
+        void handle(UserRecord user) throws Exception;
+    }
+}
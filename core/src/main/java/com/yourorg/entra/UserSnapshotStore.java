@@ -0,0 +1,259 @@
+package com.yourorg.entra;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable local copy of the directory for {@link DeltaSync}.
+ * <p>
+ * Two files in the store directory:
+ * <ul>
+ *   <li>{@code users.snapshot.ndjson}: compacted base. First line holds the deltaLink, then one user per line.
+ *       Replaced only via temp file + atomic rename.</li>
+ *   <li>{@code users.journal.ndjson}: append-only. Each committed page is its change lines followed by a
+ *       checkpoint line with the page's nextLink/deltaLink, then fsync.</li>
+ * </ul>
+ * On open, the journal is replayed up to its last checkpoint; anything after it (a page that was being
+ * written when the process died) is discarded, so a run resumes from the last committed link.
+ * Replaying is idempotent, so a crash between compaction and journal truncation is harmless.
+ */
+public final class UserSnapshotStore implements AutoCloseable {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String BASE = "users.snapshot.ndjson";
+    private static final String JOURNAL = "users.journal.ndjson";
+
+    private final Path dir;
+    private final Map<String, UserRecord> users = new HashMap<>();
+    private String deltaLink;
+    private String nextLink;
+    private FileChannel journal;
+
+    private UserSnapshotStore(Path dir) {
+        this.dir = dir;
+    }
+
+    public static UserSnapshotStore open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        UserSnapshotStore store = new UserSnapshotStore(dir);
+        store.loadBase();
+        long committed = store.replayJournal();
+        store.journal = FileChannel.open(dir.resolve(JOURNAL),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Drop any half-written page so new entries follow the last checkpoint directly.
+        store.journal.truncate(committed);
+        store.journal.position(committed);
+        return store;
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    public UserRecord get(String id) {
+        return users.get(id);
+    }
+
+    public Collection<UserRecord> users() {
+        return Collections.unmodifiableCollection(users.values());
+    }
+
+    /** deltaLink of the last completed round, or null if no round has completed. */
+    public String getDeltaLink() {
+        return deltaLink;
+    }
+
+    /**
+     * Where the next run should start: the nextLink of an interrupted round, else the last deltaLink,
+     * else null when a full sync is needed.
+     */
+    public String getResumeLink() {
+        return nextLink != null ? nextLink : deltaLink;
+    }
+
+    /** Apply one page of changes and durably record it together with the page's links. */
+    public void commitPage(List<UserRecord> changes, String pageNextLink, String pageDeltaLink) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (UserRecord change : changes) {
+            if (change.getId() == null) {
+                continue;
+            }
+            if (change.isRemoved()) {
+                users.remove(change.getId());
+                sb.append(MAPPER.createObjectNode().put("r", change.getId())).append('\n');
+            } else {
+                UserRecord merged = change.mergedInto(users.get(change.getId()));
+                users.put(merged.getId(), merged);
+                ObjectNode line = MAPPER.createObjectNode();
+                line.set("u", toJson(merged));
+                sb.append(line).append('\n');
+            }
+        }
+
+        ObjectNode checkpoint = MAPPER.createObjectNode();
+        checkpoint.putObject("checkpoint").put("nextLink", pageNextLink).put("deltaLink", pageDeltaLink);
+        sb.append(checkpoint).append('\n');
+
+        ByteBuffer buf = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) {
+            journal.write(buf);
+        }
+        journal.force(false);
+
+        applyLinks(pageNextLink, pageDeltaLink);
+    }
+
+    /** Fold the journal into a new base file and empty the journal. */
+    public void compact() throws IOException {
+        Path tmp = Files.createTempFile(dir, "users", ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE);
+                 Writer w = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(ch), StandardCharsets.UTF_8))) {
+                w.write(MAPPER.createObjectNode().put("deltaLink", deltaLink).toString());
+                w.write('\n');
+                for (UserRecord u : users.values()) {
+                    w.write(toJson(u).toString());
+                    w.write('\n');
+                }
+                w.flush();
+                ch.force(true);
+            }
+            Files.move(tmp, dir.resolve(BASE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        journal.truncate(0);
+        journal.position(0);
+        journal.force(true);
+        nextLink = null;
+    }
+
+    /** Forget everything, e.g. when Graph says the delta token has expired (410 Gone). */
+    public void reset() throws IOException {
+        users.clear();
+        deltaLink = null;
+        nextLink = null;
+        journal.truncate(0);
+        journal.position(0);
+        journal.force(true);
+        Files.deleteIfExists(dir.resolve(BASE));
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    private void loadBase() throws IOException {
+        Path base = dir.resolve(BASE);
+        if (!Files.isRegularFile(base)) {
+            return;
+        }
+        try (BufferedReader r = Files.newBufferedReader(base, StandardCharsets.UTF_8)) {
+            String header = r.readLine();
+            if (header == null) {
+                return;
+            }
+            deltaLink = MAPPER.readTree(header).path("deltaLink").asText(null);
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    UserRecord u = fromJson(MAPPER.readTree(line));
+                    users.put(u.getId(), u);
+                }
+            }
+        }
+    }
+
+    /** Replays committed pages; returns the byte length of the journal up to its last checkpoint. */
+    private long replayJournal() throws IOException {
+        Path file = dir.resolve(JOURNAL);
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+        long offset = 0;
+        long committed = 0;
+        List<JsonNode> page = new ArrayList<>();
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                JsonNode entry;
+                try {
+                    entry = MAPPER.readTree(line);
+                } catch (IOException torn) {
+                    break;
+                }
+                if (entry == null || !entry.isObject()) {
+                    break;
+                }
+                if (!entry.has("checkpoint")) {
+                    page.add(entry);
+                    continue;
+                }
+                for (JsonNode e : page) {
+                    if (e.has("r")) {
+                        users.remove(e.path("r").asText());
+                    } else {
+                        UserRecord u = fromJson(e.path("u"));
+                        users.put(u.getId(), u);
+                    }
+                }
+                page.clear();
+                JsonNode cp = entry.path("checkpoint");
+                applyLinks(cp.path("nextLink").asText(null), cp.path("deltaLink").asText(null));
+                committed = offset;
+            }
+        }
+        return committed;
+    }
+
+    private void applyLinks(String pageNextLink, String pageDeltaLink) {
+        nextLink = pageNextLink;
+        if (pageDeltaLink != null) {
+            deltaLink = pageDeltaLink;
+        }
+    }
+
+    private static ObjectNode toJson(UserRecord u) {
+        ObjectNode n = MAPPER.createObjectNode();
+        n.put("id", u.getId());
+        n.put("displayName", u.getDisplayName());
+        n.put("userPrincipalName", u.getUserPrincipalName());
+        if (u.getAccountEnabled() == null) {
+            n.putNull("accountEnabled");
+        } else {
+            n.put("accountEnabled", u.getAccountEnabled());
+        }
+        return n;
+    }
+
+    private static UserRecord fromJson(JsonNode n) {
+        JsonNode enabled = n.path("accountEnabled");
+        return new UserRecord(
+                n.path("id").asText(null),
+                n.path("displayName").asText(null),
+                n.path("userPrincipalName").asText(null),
+                enabled.isBoolean() ? enabled.asBoolean() : null);
+    }
+}
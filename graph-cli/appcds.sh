@@ -0,0 +1,40 @@
+#!/usr/bin/env bash
+set -euo pipefail
+# Builds target/graphcli.jar and an AppCDS archive (target/graphcli.jsa) of the classes a search
+# loads, for run-fast.sh. The training run is a read-only search for a user that does not exist,
+# using this directory's auth.ini. Needs JDK 17+ to run (JAVA=/path/to/bin/java picks one); the
+# Maven build itself still runs on Java 8.
+cd "$(dirname "$0")"
+JAVA="${JAVA:-java}"
+version=$("$JAVA" -XshowSettings:properties -version 2>&1 | sed -n 's/^ *java.specification.version = //p')
+case "$version" in
+  1.*|9|1[0-6])
+    echo "AppCDS needs JDK 17 or newer; $JAVA is $version. Set JAVA=/path/to/jdk17/bin/java." >&2
+    exit 2 ;;
+esac
+[ -f auth.ini ] || { echo "auth.ini not found in $PWD" >&2; exit 2; }
+
+mvn -q -Pappcds package -DskipTests
+JAR="$PWD/target/graphcli.jar"
+LIST="$PWD/target/graphcli.classlist"
+JSA="$PWD/target/graphcli.jsa"
+
+train=$(mktemp -d)
+trap 'rm -rf "$train"' EXIT
+cp auth.ini "$train/"
+cat > "$train/config.ini" <<'INI'
+[operation]
+mode = search
+[search]
+query = appcds-training@example.invalid
+maxResults = 1
+[invite]
+sendInvitationMessage = false
+INI
+echo "Training run (search for a user that does not exist)..."
+(cd "$train" && "$JAVA" -XX:DumpLoadedClassList="$LIST" -cp "$JAR" com.keyesit.graphcli.GraphCli) || true
+
+rm -f "$JSA"
+"$JAVA" -Xshare:dump -Xlog:cds=off -Xlog:cds+dynamic=off -XX:SharedClassListFile="$LIST" \
+  -XX:SharedArchiveFile="$JSA" -cp "$JAR"
+echo "Wrote $JSA ($(wc -l < "$LIST") classes listed). Start with ./run-fast.sh"
@@ -0,0 +1,4 @@
+#!/usr/bin/env bash
+set -euo pipefail
+# Sends one command to a running 'mode = daemon'; see README.txt.
+exec java -cp "$(dirname "$0")/target/classes" com.keyesit.graphcli.GraphCliClient "$@"
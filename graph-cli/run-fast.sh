@@ -0,0 +1,19 @@
+#!/usr/bin/env bash
+set -euo pipefail
+# Runs target/graphcli.jar (mvn -Pappcds package) in the current directory, using the AppCDS
+# archive from appcds.sh when there is one. JAVA=/path/to/bin/java picks the JDK.
+DIR="$(cd "$(dirname "$0")" && pwd)"
+JAVA="${JAVA:-java}"
+JAR="$DIR/target/graphcli.jar"
+JSA="$DIR/target/graphcli.jsa"
+[ -f "$JAR" ] || { echo "$JAR not found; build it with: mvn -Pappcds package" >&2; exit 2; }
+opts=()
+if [ -f "$JSA" ]; then
+  if [ "$JSA" -ot "$JAR" ]; then
+    echo "Warning: $JSA is older than the jar and will not be used; rerun ./appcds.sh" >&2
+  else
+    # auto: a JDK that cannot use the archive just starts without it
+    opts=(-XX:+IgnoreUnrecognizedVMOptions -XX:SharedArchiveFile="$JSA" -Xshare:auto)
+  fi
+fi
+exec "$JAVA" ${opts[@]+"${opts[@]}"} -cp "$JAR" com.keyesit.graphcli.GraphCli "$@"
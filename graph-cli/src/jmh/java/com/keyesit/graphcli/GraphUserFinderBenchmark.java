@@ -0,0 +1,78 @@
+package com.keyesit.graphcli;
+
+import com.microsoft.graph.models.User;
+import com.microsoft.graph.models.UserCollectionResponse;
+import com.microsoft.kiota.serialization.JsonParseNodeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+/**
+ * The CPU side of a search: building the $filter strings, parsing a /v1.0/users page with the
+ * SDK's JSON parse node, and mapping its users with toSummary. Pages are the committed
+ * users-100.json and users-999.json fixtures, selected with GraphUserFinder.SELECT.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GraphUserFinderBenchmark {
+
+  @State(Scope.Thread)
+  public static class Queries {
+    final String[] names = {"adele", "Megan Bo", "O'Brien", "pradeep.g"};
+    final String[] emails = {"adele.vance@contoso.com", "joni.o'brien@fabrikam.com",
+        "megan.bowen_gmail.com#EXT#@contoso.onmicrosoft.com", "sanjay.patel12@contoso.com"};
+    int next;
+  }
+
+  @State(Scope.Benchmark)
+  public static class Page {
+    @Param({"100", "999"})
+    public int users;
+
+    byte[] json;
+    List<User> value;
+
+    @Setup
+    public void setUp() throws Exception {
+      json = Benchmarks.fixture("users-" + users + ".json");
+      value = parse(json).getValue();
+    }
+  }
+
+  @Benchmark
+  public void filters(Queries q, Blackhole bh) {
+    int i = q.next++ & 3;
+    bh.consume(GraphUserFinder.displayNameFilter(q.names[i]));
+    bh.consume(GraphUserFinder.upnFilter(q.emails[i]));
+    bh.consume(GraphUserFinder.mailFilter(q.emails[i]));
+    bh.consume(GraphUserFinder.upnOrMailFilter(q.emails[i]));
+  }
+
+  @Benchmark
+  public void toSummary(Page page, Blackhole bh) {
+    for (User u : page.value)
+      bh.consume(GraphUserFinder.toSummary(u));
+  }
+
+  @Benchmark
+  public void parseAndMap(Page page, Blackhole bh) throws Exception {
+    for (User u : parse(page.json).getValue())
+      bh.consume(GraphUserFinder.toSummary(u));
+  }
+
+  private static UserCollectionResponse parse(byte[] json) throws Exception {
+    return new JsonParseNodeFactory()
+        .getParseNode("application/json", new ByteArrayInputStream(json))
+        .getObjectValue(UserCollectionResponse::createFromDiscriminatorValue);
+  }
+}
@@ -0,0 +1,44 @@
+package com.keyesit.graphcli;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Reading config.ini (every section filled in) and validating it into an AppConfig. */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class IniConfigBenchmark {
+
+  private Path config;
+
+  @Setup
+  public void setUp() throws Exception {
+    config = Files.createTempFile("graphcli-bench", ".ini");
+    Files.write(config, Benchmarks.fixture("bench.config"));
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(config);
+  }
+
+  @Benchmark
+  public IniConfig parse() {
+    return IniConfig.load(config);
+  }
+
+  @Benchmark
+  public AppConfig parseAndValidate() {
+    return AppConfig.fromIni(IniConfig.load(config));
+  }
+}
@@ -0,0 +1,201 @@
+package com.keyesit.graphcli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first request of a cold GraphCli process: from process start until the first token or
+ * Graph request is about to go out, plus the milestones StartupTrace reports on the way (config,
+ * logging, client). Each run starts a fresh JVM in a temp directory holding a search config and
+ * dummy credentials, and stops it as soon as the first request begins, so no tenant or network is
+ * needed. JMH is not used: its forks pay for JMH's own startup, which is the thing being measured.
+ *
+ * <pre>
+ *   mvn -Pappcds package &amp;&amp; mvn -Pjmh package
+ *   java -cp target/benchmarks.jar com.keyesit.graphcli.StartupBenchmark \
+ *       [--java /path/to/bin/java] [--cp target/graphcli.jar] [--archive target/graphcli.jsa] \
+ *       [--runs 10] [--budget-ms 2000]
+ * </pre>
+ *
+ * With --archive the runs are repeated with the AppCDS archive. With --budget-ms the exit code
+ * is 1 when the median time to first request (of the last configuration) is over budget, so a
+ * build can catch a startup regression.
+ */
+public final class StartupBenchmark {
+
+  private static final String FIRST_REQUEST = "firstRequest";
+  private static final long RUN_TIMEOUT_SECONDS = 120;
+
+  private StartupBenchmark() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    String classpath = "target/graphcli.jar";
+    String archive = null;
+    int runs = 10;
+    long budgetMs = 0;
+    for (int i = 0; i < args.length; i++) {
+      String a = args[i];
+      if (i + 1 >= args.length)
+        usage("missing value for " + a);
+      switch (a) {
+        case "--java":
+          java = args[++i];
+          break;
+        case "--cp":
+          classpath = args[++i];
+          break;
+        case "--archive":
+          archive = args[++i];
+          break;
+        case "--runs":
+          runs = Integer.parseInt(args[++i]);
+          break;
+        case "--budget-ms":
+          budgetMs = Long.parseLong(args[++i]);
+          break;
+        default:
+          usage("unknown option " + a);
+      }
+    }
+
+    Path dir = Files.createTempDirectory("graphcli-startup");
+    writeConfig(dir);
+    List<String> plain = command(java, classpath, null);
+    long median = report("time to first request, " + runs + " runs: " + String.join(" ", plain),
+        measure(plain, dir, runs));
+    if (archive != null) {
+      List<String> cds = command(java, classpath, archive);
+      median = report("with AppCDS archive " + archive, measure(cds, dir, runs));
+    }
+    if (budgetMs > 0 && median > budgetMs) {
+      System.out.println("FAIL: median " + median + " ms is over the " + budgetMs + " ms budget");
+      System.exit(1);
+    }
+  }
+
+  private static List<String> command(String java, String classpath, String archive) {
+    List<String> cmd = new ArrayList<>();
+    cmd.add(java);
+    if (archive != null) {
+      // on, not auto: a run that silently fell back to no archive would measure the wrong thing
+      cmd.add("-XX:SharedArchiveFile=" + Paths.get(archive).toAbsolutePath());
+      cmd.add("-Xshare:on");
+    }
+    cmd.add("-D" + StartupTrace.PROPERTY + "=true");
+    cmd.add("-cp");
+    cmd.add(absoluteClasspath(classpath));
+    cmd.add(GraphCli.class.getName());
+    return cmd;
+  }
+
+  /** The archive records absolute jar paths, and the runs start in a temp directory. */
+  private static String absoluteClasspath(String classpath) {
+    StringBuilder sb = new StringBuilder();
+    for (String entry : classpath.split(java.io.File.pathSeparator)) {
+      if (sb.length() > 0)
+        sb.append(java.io.File.pathSeparatorChar);
+      sb.append(Paths.get(entry).toAbsolutePath());
+    }
+    return sb.toString();
+  }
+
+  /** Milestone name to one time per run, in ms; "wall" is measured here, the rest by the process. */
+  private static Map<String, List<Long>> measure(List<String> cmd, Path dir, int runs) throws Exception {
+    run(cmd, dir); // untimed: fills the OS file cache
+    Map<String, List<Long>> times = new LinkedHashMap<>();
+    for (int i = 0; i < runs; i++) {
+      for (Map.Entry<String, Long> e : run(cmd, dir).entrySet())
+        times.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(e.getValue());
+    }
+    return times;
+  }
+
+  private static Map<String, Long> run(List<String> cmd, Path dir) throws Exception {
+    Map<String, Long> milestones = new LinkedHashMap<>();
+    StringBuilder output = new StringBuilder();
+    long start = System.nanoTime();
+    Process p = new ProcessBuilder(cmd).directory(dir.toFile()).redirectErrorStream(true).start();
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        output.append(line).append('\n');
+        if (!line.startsWith("STARTUP "))
+          continue;
+        String[] parts = line.split(" ");
+        milestones.put(parts[1], Long.parseLong(parts[2]));
+        if (parts[1].equals(FIRST_REQUEST)) {
+          milestones.put("wall", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+          break;
+        }
+      }
+    } finally {
+      p.destroyForcibly();
+      p.waitFor(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    if (!milestones.containsKey("wall"))
+      throw new IllegalStateException("No first request from " + String.join(" ", cmd) + ":\n" + output);
+    return milestones;
+  }
+
+  /** Prints min/p50/p90/max per milestone and returns the median wall time. */
+  private static long report(String title, Map<String, List<Long>> times) {
+    System.out.println(title);
+    System.out.println(String.format("  %-14s %7s %7s %7s %7s", "ms", "min", "p50", "p90", "max"));
+    List<String> order = new ArrayList<>(times.keySet());
+    order.remove("wall");
+    order.add(0, "wall");
+    for (String name : order) {
+      List<Long> t = sorted(times.get(name));
+      System.out.println(String.format("  %-14s %7d %7d %7d %7d", name, t.get(0), pct(t, 50), pct(t, 90),
+          t.get(t.size() - 1)));
+    }
+    System.out.println();
+    return pct(sorted(times.get("wall")), 50);
+  }
+
+  private static List<Long> sorted(List<Long> values) {
+    List<Long> t = new ArrayList<>(values);
+    Collections.sort(t);
+    return t;
+  }
+
+  private static long pct(List<Long> sorted, int p) {
+    return sorted.get(Math.min(sorted.size() - 1, (sorted.size() * p) / 100));
+  }
+
+  private static void writeConfig(Path dir) throws IOException {
+    List<String> config = Arrays.asList(
+        "[operation]", "mode = search",
+        "[search]", "query = startup-benchmark@example.invalid", "maxResults = 1",
+        "[invite]", "sendInvitationMessage = false");
+    List<String> auth = Arrays.asList(
+        "[auth]",
+        "tenantId = 00000000-0000-0000-0000-000000000001",
+        "clientId = 00000000-0000-0000-0000-000000000002",
+        "clientSecret = not-a-secret",
+        "scope = https://graph.microsoft.com/.default");
+    Files.write(dir.resolve("config.ini"), config, StandardCharsets.UTF_8);
+    Files.write(dir.resolve("auth.ini"), auth, StandardCharsets.UTF_8);
+  }
+
+  private static void usage(String problem) {
+    System.err.println(problem);
+    System.err.println("usage: StartupBenchmark [--java PATH] [--cp CLASSPATH] [--archive FILE.jsa] [--runs N]"
+        + " [--budget-ms N]");
+    System.exit(2);
+  }
+}
@@ -1,30 +1,98 @@
 package com.keyesit.graphcli;
 
 import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 
 public final class AppConfig {
 
   public enum Mode {
-    search, delete, invite
+    search, delete, invite, index, batchsearch, bulkdelete, bulkinvite, report, snapshot, export, daemon
+  }
+
+  public enum Resolution {
+    sequential, parallel, merged
+  }
+
+  public enum OutputFormat {
+    csv, ndjson
   }
 
   public final Mode mode;
   public final String query;
   public final int maxResults;
+  public final String inviteEmail;
   public final URI inviteRedirectUrl;
   public final boolean sendInvitationMessage;
+  public final Resolution resolution;
+  public final boolean stream;
+  public final long maxTotal;
+  public final Path indexFile;
+  public final Duration indexMaxAge;
+  public final Path snapshotFile;
+  public final Path batchInputFile;
+  public final Path batchOutputFile;
+  public final OutputFormat batchFormat;
+  public final int batchConcurrency;
+  public final boolean batchDryRun;
+  public final int batchRatePerSecond;
+  public final Path exportFile;
+  public final OutputFormat exportFormat;
+  public final int exportCheckpointPages;
+  public final int daemonPort;
+  public final Path daemonKeyFile;
+  public final int daemonThreads;
 
   private AppConfig(
       Mode mode,
       String query,
       int maxResults,
+      String inviteEmail,
       URI inviteRedirectUrl,
-      boolean sendInvitationMessage) {
+      boolean sendInvitationMessage,
+      Resolution resolution,
+      boolean stream,
+      long maxTotal,
+      Path indexFile,
+      Duration indexMaxAge,
+      Path snapshotFile,
+      Path batchInputFile,
+      Path batchOutputFile,
+      OutputFormat batchFormat,
+      int batchConcurrency,
+      boolean batchDryRun,
+      int batchRatePerSecond,
+      Path exportFile,
+      OutputFormat exportFormat,
+      int exportCheckpointPages,
+      int daemonPort,
+      Path daemonKeyFile,
+      int daemonThreads) {
     this.mode = mode;
     this.query = query;
     this.maxResults = maxResults;
+    this.inviteEmail = inviteEmail;
     this.inviteRedirectUrl = inviteRedirectUrl;
     this.sendInvitationMessage = sendInvitationMessage;
+    this.resolution = resolution;
+    this.stream = stream;
+    this.maxTotal = maxTotal;
+    this.indexFile = indexFile;
+    this.indexMaxAge = indexMaxAge;
+    this.snapshotFile = snapshotFile;
+    this.batchInputFile = batchInputFile;
+    this.batchOutputFile = batchOutputFile;
+    this.batchFormat = batchFormat;
+    this.batchConcurrency = batchConcurrency;
+    this.batchDryRun = batchDryRun;
+    this.batchRatePerSecond = batchRatePerSecond;
+    this.exportFile = exportFile;
+    this.exportFormat = exportFormat;
+    this.exportCheckpointPages = exportCheckpointPages;
+    this.daemonPort = daemonPort;
+    this.daemonKeyFile = daemonKeyFile;
+    this.daemonThreads = daemonThreads;
   }
 
   public static AppConfig fromIni(IniConfig cfg) {
@@ -41,17 +109,113 @@ public final class AppConfig {
     if (mode == Mode.search || mode == Mode.delete) {
       query = cfg.get("search", "query"); // exits if missing/blank (based on your IniConfig.get())
     } else {
-      query = cfg.get("search", "query").trim();
+      String q = cfg.getOptional("search", "query");
+      query = q == null ? "" : q;
     }
 
     // invite fields are only required for invite mode
+    String inviteEmail = null;
     URI redirectUrl = null;
     boolean sendInvitationMessage = cfg.getBoolean("invite", "sendInvitationMessage");
     if (mode == Mode.invite) {
       redirectUrl = parseAbsoluteUri(cfg.get("invite", "redirectUrl"), "invite.redirectUrl");
+      inviteEmail = cfg.get("invite", "email").trim();
+    } else if (mode == Mode.bulkinvite || mode == Mode.daemon) {
+      // default for rows that leave redirectUrl blank
+      String raw = cfg.getOptional("invite", "redirectUrl");
+      if (raw != null)
+        redirectUrl = parseAbsoluteUri(raw, "invite.redirectUrl");
     }
 
-    return new AppConfig(mode, query, maxResults, redirectUrl, sendInvitationMessage);
+    // how email-like queries are resolved against Graph (default: one strategy at a time)
+    String rawResolution = cfg.getOptional("search", "resolution");
+    Resolution resolution = rawResolution == null ? Resolution.sequential : parseResolution(rawResolution);
+
+    // streaming search: every page instead of the first maxResults, optionally capped (0 = no cap)
+    String rawStream = cfg.getOptional("search", "stream");
+    boolean stream = rawStream != null && (rawStream.equalsIgnoreCase("true") || rawStream.equalsIgnoreCase("yes")
+        || rawStream.equals("1"));
+    String rawMaxTotal = cfg.getOptional("search", "maxTotal");
+    long maxTotal = rawMaxTotal == null ? 0 : parseIntInRange(rawMaxTotal, 0, Integer.MAX_VALUE, "search.maxTotal");
+
+    // optional local user index (default max age 60 minutes); index mode rebuilds it
+    String rawIndexFile = mode == Mode.index
+        ? cfg.get("search", "indexFile")
+        : cfg.getOptional("search", "indexFile");
+    Path indexFile = rawIndexFile == null ? null : Paths.get(rawIndexFile);
+    String rawMaxAge = cfg.getOptional("search", "indexMaxAgeMinutes");
+    Duration indexMaxAge = Duration.ofMinutes(rawMaxAge == null
+        ? 60
+        : parseIntInRange(rawMaxAge, 0, 525600, "search.indexMaxAgeMinutes"));
+    // optional binary snapshot, preferred over indexFile for lookups; snapshot mode writes it
+    String rawSnapshotFile = mode == Mode.snapshot
+        ? cfg.get("search", "snapshotFile")
+        : cfg.getOptional("search", "snapshotFile");
+    Path snapshotFile = rawSnapshotFile == null ? null : Paths.get(rawSnapshotFile);
+
+    // batch modes read many inputs from [batch] inputFile
+    Path batchInputFile = null;
+    Path batchOutputFile = null;
+    OutputFormat batchFormat = OutputFormat.csv;
+    int batchConcurrency = 8;
+    boolean batchDryRun = false;
+    int batchRatePerSecond = 5;
+    if (mode == Mode.batchsearch || mode == Mode.bulkdelete || mode == Mode.bulkinvite) {
+      batchInputFile = Paths.get(cfg.get("batch", "inputFile"));
+      // bulk delete/invite always write CSV; format only applies to batchsearch
+      String rawFormat = cfg.getOptional("batch", "format");
+      if (rawFormat != null && mode == Mode.batchsearch)
+        batchFormat = parseFormat(rawFormat, "batch.format");
+      String rawOutput = cfg.getOptional("batch", "outputFile");
+      batchOutputFile = Paths.get(rawOutput != null ? rawOutput : batchInputFile + ".results." + batchFormat);
+      String rawConcurrency = cfg.getOptional("batch", "concurrency");
+      if (rawConcurrency != null)
+        batchConcurrency = parseIntInRange(rawConcurrency, 1, 64, "batch.concurrency");
+      String rawDryRun = cfg.getOptional("batch", "dryRun");
+      batchDryRun = rawDryRun != null && (rawDryRun.equalsIgnoreCase("true") || rawDryRun.equalsIgnoreCase("yes")
+          || rawDryRun.equals("1"));
+      String rawRate = cfg.getOptional("batch", "ratePerSecond");
+      if (rawRate != null)
+        batchRatePerSecond = parseIntInRange(rawRate, 1, 100, "batch.ratePerSecond");
+    }
+
+    // export writes a gzip file and checkpoints its progress every few pages
+    Path exportFile = null;
+    OutputFormat exportFormat = OutputFormat.ndjson;
+    int exportCheckpointPages = 10;
+    if (mode == Mode.export) {
+      exportFile = Paths.get(cfg.get("export", "outputFile"));
+      String rawFormat = cfg.getOptional("export", "format");
+      if (rawFormat != null)
+        exportFormat = parseFormat(rawFormat, "export.format");
+      String rawPages = cfg.getOptional("export", "checkpointPages");
+      if (rawPages != null)
+        exportCheckpointPages = parseIntInRange(rawPages, 1, 1000, "export.checkpointPages");
+    }
+
+    // daemon serves search/delete/invite to GraphCliClient on loopback; the key file carries
+    // the port and a per-start secret, and is read by the client (same [daemon] keyFile)
+    int daemonPort = DEFAULT_DAEMON_PORT;
+    int daemonThreads = 4;
+    String rawPort = cfg.getOptional("daemon", "port");
+    if (rawPort != null)
+      daemonPort = parseIntInRange(rawPort, 0, 65535, "daemon.port");
+    String rawThreads = cfg.getOptional("daemon", "threads");
+    if (rawThreads != null)
+      daemonThreads = parseIntInRange(rawThreads, 1, 64, "daemon.threads");
+    Path daemonKeyFile = daemonKeyFile(cfg);
+
+    return new AppConfig(mode, query, maxResults, inviteEmail, redirectUrl, sendInvitationMessage, resolution, stream, maxTotal, indexFile, indexMaxAge,
+        snapshotFile, batchInputFile, batchOutputFile, batchFormat, batchConcurrency, batchDryRun,
+        batchRatePerSecond, exportFile, exportFormat, exportCheckpointPages, daemonPort, daemonKeyFile, daemonThreads);
+  }
+
+  static final int DEFAULT_DAEMON_PORT = 47700;
+
+  /** [daemon] keyFile, default daemon.key; shared with {@link GraphCliClient}. */
+  static Path daemonKeyFile(IniConfig cfg) {
+    String raw = cfg.getOptional("daemon", "keyFile");
+    return Paths.get(raw == null ? "daemon.key" : raw);
   }
 
   private static Mode parseMode(String raw) {
@@ -59,11 +223,29 @@ public final class AppConfig {
     try {
       return Mode.valueOf(v);
     } catch (Exception e) {
-      die("operation.mode must be one of: search, delete, invite (got: " + raw + ")");
+      die("operation.mode must be one of: search, delete, invite, index, batchsearch, bulkdelete, bulkinvite, report, snapshot, export, daemon (got: " + raw + ")");
       return Mode.search; // unreachable
     }
   }
 
+  private static Resolution parseResolution(String raw) {
+    try {
+      return Resolution.valueOf(raw.trim().toLowerCase());
+    } catch (Exception e) {
+      die("search.resolution must be one of: sequential, parallel, merged (got: " + raw + ")");
+      return Resolution.sequential; // unreachable
+    }
+  }
+
+  private static OutputFormat parseFormat(String raw, String field) {
+    try {
+      return OutputFormat.valueOf(raw.trim().toLowerCase());
+    } catch (Exception e) {
+      die(field + " must be csv or ndjson (got: " + raw + ")");
+      return OutputFormat.csv; // unreachable
+    }
+  }
+
   private static int parseIntInRange(String raw, int min, int max, String field) {
     try {
       int v = Integer.parseInt(raw.trim());
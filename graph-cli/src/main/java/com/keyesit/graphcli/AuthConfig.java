@@ -0,0 +1,52 @@
+package com.keyesit.graphcli;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * auth.ini, read and checked together with {@link AppConfig} before the credential or any
+ * Graph SDK class is loaded, so a missing or malformed value costs a few milliseconds instead of
+ * a second of class loading.
+ */
+public final class AuthConfig {
+
+  public final String tenantId;
+  public final String clientId;
+  public final String clientSecret;
+  public final String scope;
+  public final Path tokenCacheDir;
+
+  private AuthConfig(String tenantId, String clientId, String clientSecret, String scope, Path tokenCacheDir) {
+    this.tenantId = tenantId;
+    this.clientId = clientId;
+    this.clientSecret = clientSecret;
+    this.scope = scope;
+    this.tokenCacheDir = tokenCacheDir;
+  }
+
+  public static AuthConfig fromIni(IniConfig cfg) {
+    String tenantId = cfg.get("auth", "tenantId");
+    String clientId = cfg.get("auth", "clientId");
+    String clientSecret = cfg.get("auth", "clientSecret");
+    String scope = cfg.get("auth", "scope");
+    if (!isAbsoluteUri(scope))
+      die("auth.scope must be an absolute URI such as https://graph.microsoft.com/.default (got: " + scope + ")");
+    // optional: reuse a still-valid token from an earlier run instead of fetching a new one
+    String rawCacheDir = cfg.getOptional("auth", "tokenCacheDir");
+    Path tokenCacheDir = rawCacheDir == null ? null : Paths.get(rawCacheDir);
+    return new AuthConfig(tenantId, clientId, clientSecret, scope, tokenCacheDir);
+  }
+
+  private static boolean isAbsoluteUri(String raw) {
+    try {
+      return URI.create(raw).isAbsolute();
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  private static void die(String message) {
+    throw new ConfigException(message);
+  }
+}
@@ -0,0 +1,203 @@
+package com.keyesit.graphcli;
+
+import com.microsoft.graph.models.Invitation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invites every guest listed in a CSV of {@code email,redirectUrl,sendMessage} rows.
+ *
+ * Rows are streamed and invited on a worker pool, and a shared RateLimiter caps how many
+ * invitations start per second. Blank redirectUrl/sendMessage cells fall back to the [invite]
+ * defaults. Results are appended to the output CSV
+ * ({@code email,status,invitedUserId,redeemUrl,detail}). Addresses already recorded there as
+ * invited are skipped, so an interrupted or partly failed run can simply be started again.
+ */
+public final class BulkGuestInviter {
+  private static final Logger log = LoggerFactory.getLogger(BulkGuestInviter.class);
+
+  static final String INVITED = "invited";
+  static final String SKIPPED = "skipped";
+  static final String DUPLICATE = "duplicate";
+  static final String INVALID = "invalid";
+  static final String FAILED = "failed";
+
+  private static final String HEADER = Csv.row("email", "status", "invitedUserId", "redeemUrl", "detail");
+
+  private final GraphGuestInviter inviter;
+  private final int concurrency;
+  private final RateLimiter limiter;
+  private final String defaultRedirectUrl;
+  private final boolean defaultSendMessage;
+
+  public BulkGuestInviter(GraphGuestInviter inviter, int concurrency, RateLimiter limiter,
+      String defaultRedirectUrl, boolean defaultSendMessage) {
+    this.inviter = inviter;
+    this.concurrency = concurrency;
+    this.limiter = limiter;
+    this.defaultRedirectUrl = defaultRedirectUrl;
+    this.defaultSendMessage = defaultSendMessage;
+  }
+
+  public RunStats run(Path input, Path output) throws IOException, InterruptedException {
+    RunStats stats = new RunStats();
+    Set<String> previous = alreadyInvited(output);
+    Set<String> seen = new HashSet<>();
+    boolean writeHeader = !Files.exists(output) || Files.size(output) == 0;
+
+    ExecutorService pool = Executors.newFixedThreadPool(concurrency, BulkUserSearch.daemonThreads("graphcli-invite-"));
+    Semaphore inFlight = new Semaphore(concurrency * 2);
+    try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+         BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8,
+             StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+      if (writeHeader)
+        write(out, HEADER);
+
+      String line;
+      boolean first = true;
+      while ((line = in.readLine()) != null) {
+        if (line.trim().isEmpty() || line.trim().startsWith("#"))
+          continue;
+        List<String> cells = Csv.parse(line);
+        if (first) {
+          first = false;
+          if (cells.get(0).equalsIgnoreCase("email"))
+            continue; // header row
+        }
+
+        String email = cells.get(0);
+        String key = email.toLowerCase(Locale.ROOT);
+        long start = System.nanoTime();
+        if (previous.contains(key)) {
+          // already recorded as invited by an earlier run
+          stats.record(SKIPPED, System.nanoTime() - start);
+          continue;
+        }
+        if (!seen.add(key)) {
+          stats.record(DUPLICATE, System.nanoTime() - start);
+          write(out, Csv.row(email, DUPLICATE, "", "", "same address as an earlier row"));
+          continue;
+        }
+
+        String redirectUrl = cell(cells, 1, defaultRedirectUrl);
+        String sendRaw = cell(cells, 2, null);
+        boolean send = sendRaw == null ? defaultSendMessage
+            : sendRaw.equalsIgnoreCase("true") || sendRaw.equalsIgnoreCase("yes") || sendRaw.equals("1");
+        String problem = validate(email, redirectUrl);
+        if (problem != null) {
+          stats.record(INVALID, System.nanoTime() - start);
+          write(out, Csv.row(email, INVALID, "", "", problem));
+          continue;
+        }
+
+        inFlight.acquire();
+        pool.execute(() -> {
+          try {
+            invite(email, redirectUrl, send, start, stats, out);
+          } finally {
+            inFlight.release();
+          }
+        });
+      }
+
+      pool.shutdown();
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } finally {
+      pool.shutdownNow();
+      stats.finish();
+    }
+    return stats;
+  }
+
+  private void invite(String email, String redirectUrl, boolean send, long start, RunStats stats, Writer out) {
+    String row;
+    String status;
+    try {
+      limiter.acquire();
+      Invitation created = inviter.invite(email, redirectUrl, send);
+      String userId = created.getInvitedUser() == null ? "" : created.getInvitedUser().getId();
+      status = INVITED;
+      row = Csv.row(email, INVITED, userId, created.getInviteRedeemUrl(), "");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      status = FAILED;
+      row = Csv.row(email, FAILED, "", "", "interrupted");
+    } catch (Exception e) {
+      log.warn("BULK_INVITE failed email={} error={}", email, e.toString());
+      status = FAILED;
+      row = Csv.row(email, FAILED, "", "", e.getMessage() == null ? e.toString() : e.getMessage());
+    }
+    stats.record(status, System.nanoTime() - start);
+    try {
+      write(out, row);
+    } catch (IOException e) {
+      log.error("BULK_INVITE could not record result email={} status={} error={}", email, status, e.toString());
+    }
+  }
+
+  /** Addresses recorded as invited by earlier runs. */
+  private static Set<String> alreadyInvited(Path output) throws IOException {
+    Set<String> previous = new HashSet<>();
+    if (Files.isRegularFile(output)) {
+      try (BufferedReader r = Files.newBufferedReader(output, StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = r.readLine()) != null) {
+          List<String> cells = Csv.parse(line);
+          if (cells.size() > 1 && INVITED.equals(cells.get(1)))
+            previous.add(cells.get(0).toLowerCase(Locale.ROOT));
+        }
+      }
+    }
+    if (!previous.isEmpty())
+      log.info("BULK_INVITE resuming alreadyInvited={} output={}", previous.size(), output);
+    return previous;
+  }
+
+  private static String validate(String email, String redirectUrl) {
+    int at = email.indexOf('@');
+    if (at <= 0 || at == email.length() - 1 || email.indexOf(' ') >= 0)
+      return "not an email address";
+    if (redirectUrl == null)
+      return "no redirectUrl in row or invite.redirectUrl";
+    try {
+      URI u = URI.create(redirectUrl);
+      if (u.getScheme() == null || u.getHost() == null)
+        return "redirectUrl must be an absolute URL";
+    } catch (IllegalArgumentException e) {
+      return "redirectUrl is not a valid URL";
+    }
+    return null;
+  }
+
+  private static String cell(List<String> cells, int i, String fallback) {
+    if (i >= cells.size() || cells.get(i).isEmpty())
+      return fallback;
+    return cells.get(i);
+  }
+
+  private static void write(Writer out, String line) throws IOException {
+    synchronized (out) {
+      out.write(line);
+      out.write('\n');
+      out.flush();
+    }
+  }
+}
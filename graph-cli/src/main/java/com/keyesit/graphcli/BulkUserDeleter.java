@@ -0,0 +1,245 @@
+package com.keyesit.graphcli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Deletes every user listed in a file (one query per line: id, UPN, mail or name).
+ *
+ * Each line is resolved with GraphUserFinder under the same rule as single delete: exactly one
+ * match or nothing happens. Pass a Graph-only finder ({@link GraphCli#deleteFinder}); an index
+ * hit can be stale. Lookups run on a worker pool while resolved users are deleted in
+ * JSON batches of 20 on separate threads, so the two phases overlap. Every input line gets a
+ * row in the results CSV ({@code input,status,userId,userPrincipalName,detail}); rows are
+ * written as items finish, not in input order.
+ */
+public final class BulkUserDeleter {
+  private static final Logger log = LoggerFactory.getLogger(BulkUserDeleter.class);
+
+  static final String DELETED = "deleted";
+  static final String WOULD_DELETE = "would_delete";
+  static final String NOT_FOUND = "not_found";
+  static final String AMBIGUOUS = "refused_ambiguous";
+  static final String DUPLICATE = "duplicate";
+  static final String ALREADY_GONE = "already_gone";
+  static final String LOOKUP_ERROR = "lookup_error";
+  static final String FAILED = "failed";
+
+  private static final int DELETE_BATCHES_IN_FLIGHT = 2;
+
+  private final GraphUserFinder finder;
+  private final GraphUserDeleter deleter;
+  private final int concurrency;
+  private final int maxResults;
+  private final boolean dryRun;
+
+  /**
+   * @param concurrency lookups in flight at once
+   * @param dryRun      resolve and report, but delete nothing
+   */
+  public BulkUserDeleter(GraphUserFinder finder, GraphUserDeleter deleter, int concurrency, int maxResults,
+      boolean dryRun) {
+    this.finder = finder;
+    this.deleter = deleter;
+    this.concurrency = concurrency;
+    this.maxResults = maxResults;
+    this.dryRun = dryRun;
+  }
+
+  public RunStats run(Path input, Path output) throws IOException, InterruptedException {
+    RunStats stats = new RunStats();
+    ExecutorService lookups = Executors.newFixedThreadPool(concurrency, BulkUserSearch.daemonThreads("graphcli-lookup-"));
+    ExecutorService deletes = Executors.newFixedThreadPool(DELETE_BATCHES_IN_FLIGHT,
+        BulkUserSearch.daemonThreads("graphcli-delete-"));
+    try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+         BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+      Run run = new Run(out, stats, deletes);
+      run.write(Csv.row("input", "status", "userId", "userPrincipalName", "detail"));
+
+      Deque<Future<Lookup>> window = new ArrayDeque<>();
+      String line;
+      while ((line = in.readLine()) != null) {
+        String q = line.trim();
+        if (q.isEmpty() || q.startsWith("#"))
+          continue;
+        window.addLast(lookups.submit(() -> lookup(q)));
+        if (window.size() >= concurrency * 4)
+          run.resolved(take(window));
+      }
+      while (!window.isEmpty())
+        run.resolved(take(window));
+      run.finish();
+    } finally {
+      lookups.shutdownNow();
+      deletes.shutdownNow();
+      stats.finish();
+    }
+    return stats;
+  }
+
+  private Lookup lookup(String query) {
+    long start = System.nanoTime();
+    try {
+      return new Lookup(query, start, finder.find(query, maxResults), null);
+    } catch (Exception e) {
+      log.warn("BULK_DELETE lookup failed query='{}' error={}", query, e.toString());
+      return new Lookup(query, start, Collections.<UserSummary>emptyList(), e);
+    }
+  }
+
+  private static Lookup take(Deque<Future<Lookup>> window) throws InterruptedException {
+    try {
+      return window.removeFirst().get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Bulk delete lookup failed", e.getCause());
+    }
+  }
+
+  /** Per-run state: the batch being filled, users already scheduled, and outstanding batch calls. */
+  private final class Run {
+    private final Writer out;
+    private final RunStats stats;
+    private final ExecutorService deletes;
+    private final Semaphore batchSlots = new Semaphore(DELETE_BATCHES_IN_FLIGHT * 2);
+    private final Set<String> scheduled = new HashSet<>();
+    private final List<Future<?>> sent = new ArrayList<>();
+    private List<Lookup> batch = new ArrayList<>(GraphUserDeleter.MAX_BATCH_SIZE);
+
+    Run(Writer out, RunStats stats, ExecutorService deletes) {
+      this.out = out;
+      this.stats = stats;
+      this.deletes = deletes;
+    }
+
+    void resolved(Lookup l) throws IOException, InterruptedException {
+      if (l.error != null) {
+        result(l, LOOKUP_ERROR, null, l.error.getMessage() == null ? l.error.toString() : l.error.getMessage());
+        return;
+      }
+      if (l.matches.isEmpty()) {
+        result(l, NOT_FOUND, null, "");
+        return;
+      }
+      if (l.matches.size() > 1) {
+        // Same rule as runDelete: never guess which of several users was meant.
+        StringBuilder sb = new StringBuilder(l.matches.size() + " matches:");
+        for (UserSummary u : l.matches)
+          sb.append(' ').append(u.getUserPrincipalName());
+        result(l, AMBIGUOUS, null, sb.toString());
+        return;
+      }
+      UserSummary target = l.matches.get(0);
+      if (!scheduled.add(target.getId())) {
+        result(l, DUPLICATE, target, "same user as an earlier line");
+        return;
+      }
+      if (dryRun) {
+        result(l, WOULD_DELETE, target, "");
+        return;
+      }
+      l.target = target;
+      batch.add(l);
+      if (batch.size() == GraphUserDeleter.MAX_BATCH_SIZE)
+        send();
+    }
+
+    void finish() throws IOException, InterruptedException {
+      if (!batch.isEmpty())
+        send();
+      for (Future<?> f : sent) {
+        try {
+          f.get();
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("Bulk delete batch failed", e.getCause());
+        }
+      }
+    }
+
+    private void send() throws InterruptedException {
+      List<Lookup> items = batch;
+      batch = new ArrayList<>(GraphUserDeleter.MAX_BATCH_SIZE);
+      // Bound how far lookups can run ahead of deletes.
+      batchSlots.acquire();
+      sent.add(deletes.submit(() -> {
+        try {
+          deleteBatch(items);
+        } finally {
+          batchSlots.release();
+        }
+        return null;
+      }));
+    }
+
+    private void deleteBatch(List<Lookup> items) throws IOException {
+      List<String> ids = new ArrayList<>(items.size());
+      for (Lookup l : items)
+        ids.add(l.target.getId());
+      Map<String, GraphUserDeleter.Outcome> outcomes;
+      try {
+        outcomes = deleter.deleteBatch(ids);
+      } catch (Exception e) {
+        log.error("BULK_DELETE batch failed size={} error={}", ids.size(), e.toString());
+        for (Lookup l : items)
+          result(l, FAILED, l.target, e.getMessage() == null ? e.toString() : e.getMessage());
+        return;
+      }
+      for (Lookup l : items) {
+        GraphUserDeleter.Outcome o = outcomes.get(l.target.getId());
+        if (o == null)
+          result(l, FAILED, l.target, "no response for batch step");
+        else if (o.isSuccess())
+          result(l, DELETED, l.target, "");
+        else if (o.status == 404)
+          result(l, ALREADY_GONE, l.target, o.message);
+        else
+          result(l, FAILED, l.target, "HTTP " + o.status + " " + o.message);
+      }
+    }
+
+    private void result(Lookup l, String status, UserSummary u, String detail) throws IOException {
+      stats.record(status, System.nanoTime() - l.startNanos);
+      write(Csv.row(l.query, status, u == null ? "" : u.getId(), u == null ? "" : u.getUserPrincipalName(), detail));
+    }
+
+    synchronized void write(String line) throws IOException {
+      out.write(line);
+      out.write('\n');
+    }
+  }
+
+  private static final class Lookup {
+    final String query;
+    final long startNanos;
+    final List<UserSummary> matches;
+    final Exception error;
+    UserSummary target;
+
+    Lookup(String query, long startNanos, List<UserSummary> matches, Exception error) {
+      this.query = query;
+      this.startNanos = startNanos;
+      this.matches = matches;
+      this.error = error;
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package com.keyesit.graphcli;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves a file of queries (one per line) with GraphUserFinder on a bounded worker pool.
+ *
+ * Results are written in input order: at most a small window of lookups is in flight, and the
+ * oldest one is written as soon as it finishes, so memory does not grow with the input.
+ * Blank lines and lines starting with # are skipped.
+ */
+public final class BulkUserSearch {
+  private static final Logger log = LoggerFactory.getLogger(BulkUserSearch.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  static final String FOUND = "found";
+  static final String NOT_FOUND = "not_found";
+  static final String ERROR = "error";
+
+  private final GraphUserFinder finder;
+  private final int concurrency;
+  private final int maxResults;
+
+  public BulkUserSearch(GraphUserFinder finder, int concurrency, int maxResults) {
+    this.finder = finder;
+    this.concurrency = concurrency;
+    this.maxResults = maxResults;
+  }
+
+  public RunStats run(Path input, Path output, AppConfig.OutputFormat format) throws IOException, InterruptedException {
+    RunStats stats = new RunStats();
+    ExecutorService pool = Executors.newFixedThreadPool(concurrency, daemonThreads("graphcli-search-"));
+    Deque<Future<Result>> window = new ArrayDeque<>();
+    try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+         BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+      if (format == AppConfig.OutputFormat.csv)
+        writeLine(out, Csv.row("query", "status", "matches", "id", "displayName", "userPrincipalName", "mail",
+            "userType", "accountEnabled", "error"));
+
+      String line;
+      while ((line = in.readLine()) != null) {
+        String q = line.trim();
+        if (q.isEmpty() || q.startsWith("#"))
+          continue;
+        window.addLast(pool.submit(() -> lookup(q, stats)));
+        // Keep a few lookups queued per worker; block on the oldest to preserve input order.
+        if (window.size() >= concurrency * 4)
+          write(out, take(window), format);
+      }
+      while (!window.isEmpty())
+        write(out, take(window), format);
+    } finally {
+      pool.shutdownNow();
+      stats.finish();
+    }
+    return stats;
+  }
+
+  private Result lookup(String query, RunStats stats) {
+    long start = System.nanoTime();
+    Result r;
+    try {
+      List<UserSummary> matches = finder.find(query, maxResults);
+      r = new Result(query, matches, null);
+    } catch (Exception e) {
+      log.warn("BATCH_SEARCH failed query='{}' error={}", query, e.toString());
+      r = new Result(query, Collections.<UserSummary>emptyList(), e.getMessage() == null ? e.toString() : e.getMessage());
+    }
+    stats.record(r.status(), System.nanoTime() - start);
+    return r;
+  }
+
+  private static Result take(Deque<Future<Result>> window) throws InterruptedException {
+    try {
+      return window.removeFirst().get();
+    } catch (ExecutionException e) {
+      // lookup() catches everything, so this is a bug rather than a Graph failure
+      throw new IllegalStateException("Batch search worker failed", e.getCause());
+    }
+  }
+
+  private static void write(Writer out, Result r, AppConfig.OutputFormat format) throws IOException {
+    if (format == AppConfig.OutputFormat.ndjson) {
+      ObjectNode n = MAPPER.createObjectNode();
+      n.put("query", r.query);
+      n.put("status", r.status());
+      ArrayNode arr = n.putArray("matches");
+      for (UserSummary u : r.matches) {
+        arr.addObject()
+            .put("id", u.getId())
+            .put("displayName", u.getDisplayName())
+            .put("userPrincipalName", u.getUserPrincipalName())
+            .put("mail", u.getMail())
+            .put("userType", u.getUserType())
+            .put("accountEnabled", u.getAccountEnabled());
+      }
+      if (r.error != null)
+        n.put("error", r.error);
+      writeLine(out, n.toString());
+      return;
+    }
+
+    // csv: one row per match, or a single row when nothing matched
+    if (r.matches.isEmpty()) {
+      writeLine(out, Csv.row(r.query, r.status(), 0, "", "", "", "", "", "", r.error));
+      return;
+    }
+    for (UserSummary u : r.matches) {
+      writeLine(out, Csv.row(r.query, r.status(), r.matches.size(), u.getId(), u.getDisplayName(),
+          u.getUserPrincipalName(), u.getMail(), u.getUserType(), u.getAccountEnabled(), ""));
+    }
+  }
+
+  private static void writeLine(Writer out, String line) throws IOException {
+    out.write(line);
+    out.write('\n');
+  }
+
+  static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger n = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r, prefix + n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+
+  private static final class Result {
+    final String query;
+    final List<UserSummary> matches;
+    final String error;
+
+    Result(String query, List<UserSummary> matches, String error) {
+      this.query = query;
+      this.matches = matches;
+      this.error = error;
+    }
+
+    String status() {
+      if (error != null)
+        return ERROR;
+      return matches.isEmpty() ? NOT_FOUND : FOUND;
+    }
+  }
+}
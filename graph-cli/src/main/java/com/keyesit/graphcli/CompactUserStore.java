@@ -0,0 +1,571 @@
+package com.keyesit.graphcli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.graph.models.User;
+import com.microsoft.graph.models.UserCollectionResponse;
+import com.microsoft.graph.serviceclient.GraphServiceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Column-oriented store for tenant-wide user sets, at a fraction of the heap of a
+ * {@code List<UserSummary>}.
+ *
+ * Each user is a row. ids are kept as two longs. displayName, UPN and mail share one
+ * length-prefixed UTF-8 record per row in a byte heap; the domain part of UPN and mail is a
+ * dictionary code, and a mail equal to the UPN costs one byte. userType and externalUserState
+ * are one-byte dictionary codes, accountEnabled is two bits, and externalUserStateChangeDateTime
+ * is epoch millis (views return it in UTC). The id/userType/state/enabled/time accessors read
+ * columns without allocating, so counting scans are cheap; {@link #get(String)}, {@link #view}
+ * and iteration build {@link UserSummary} objects on demand.
+ *
+ * Rows are append-only: an update appends a new row and a remove only marks the old row as
+ * removed. Not thread-safe.
+ */
+public final class CompactUserStore implements Iterable<UserSummary>, UserTable {
+  private static final Logger log = LoggerFactory.getLogger(CompactUserStore.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final long NO_TIME = Long.MIN_VALUE;
+
+  private int rows;
+  private int live;
+  private long[] idHi = new long[1024];
+  private long[] idLo = new long[1024];
+  private final StringHeap strings = new StringHeap();
+  private final DictColumn userType = new DictColumn("userType");
+  private final DictColumn externalUserState = new DictColumn("externalUserState");
+  private final BitSet enabledKnown = new BitSet();
+  private final BitSet enabled = new BitSet();
+  private final BitSet removed = new BitSet();
+  private long[] stateChanged = new long[1024];
+
+  // open addressing over rows: slot holds row + 1, 0 = empty
+  private int[] slots = new int[2048];
+
+  /** Lists every user in the tenant into a new store. */
+  public static CompactUserStore fromGraph(GraphServiceClient graph) {
+    CompactUserStore store = new CompactUserStore();
+    UserCollectionResponse page = graph.users().get(req -> {
+      req.queryParameters.select = GraphUserFinder.SELECT;
+      req.queryParameters.top = 999;
+    });
+    while (page != null) {
+      if (page.getValue() != null) {
+        for (User u : page.getValue())
+          store.put(GraphUserFinder.toSummary(u));
+      }
+      String next = page.getOdataNextLink();
+      if (next == null)
+        break;
+      page = graph.users().withUrl(next).get();
+    }
+    store.trimToSize();
+    log.debug("COMPACT_STORE built from Graph users={} heapBytes={}", store.size(), store.estimatedHeapBytes());
+    return store;
+  }
+
+  /** Loads an NDJSON export (optionally .gz) in the UserIndex format, applying {@code @removed} lines. */
+  public static CompactUserStore load(Path file) throws IOException {
+    CompactUserStore store = new CompactUserStore();
+    try (BufferedReader r = UserIndex.openExport(file)) {
+      String line;
+      while ((line = r.readLine()) != null) {
+        if (line.trim().isEmpty())
+          continue;
+        JsonNode n = MAPPER.readTree(line);
+        String id = n.path("id").asText(null);
+        if (id == null)
+          continue;
+        if (n.has("@removed"))
+          store.remove(id);
+        else
+          store.put(UserIndex.fromJson(n));
+      }
+    }
+    store.trimToSize();
+    log.debug("COMPACT_STORE loaded file={} users={} heapBytes={}", file, store.size(), store.estimatedHeapBytes());
+    return store;
+  }
+
+  /**
+   * Adds a user, replacing any earlier row with the same id.
+   *
+   * @throws IllegalArgumentException if the id is not a GUID, as Graph object ids are
+   */
+  public void put(UserSummary u) {
+    UUID id = parseId(u.getId());
+    int old = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    if (old >= 0)
+      markRemoved(old);
+
+    int row = rows;
+    if (row == idHi.length) {
+      int cap = row * 2;
+      idHi = Arrays.copyOf(idHi, cap);
+      idLo = Arrays.copyOf(idLo, cap);
+      stateChanged = Arrays.copyOf(stateChanged, cap);
+    }
+    idHi[row] = id.getMostSignificantBits();
+    idLo[row] = id.getLeastSignificantBits();
+    strings.add(row, u.getDisplayName(), u.getUserPrincipalName(), u.getMail());
+    userType.add(row, u.getUserType());
+    externalUserState.add(row, u.getExternalUserState());
+    if (u.getAccountEnabled() != null) {
+      enabledKnown.set(row);
+      enabled.set(row, u.getAccountEnabled());
+    }
+    OffsetDateTime changed = u.getExternalUserStateChangeDateTime();
+    stateChanged[row] = changed == null ? NO_TIME : changed.toInstant().toEpochMilli();
+    // before the counters move: a rehash walks rows [0, rows) and must not see this row yet
+    insertSlot(row);
+    rows++;
+    live++;
+  }
+
+  /** @return true if a user with this id was present */
+  public boolean remove(String id) {
+    UUID uuid = tryParseId(id);
+    if (uuid == null)
+      return false;
+    int row = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    if (row < 0)
+      return false;
+    markRemoved(row);
+    return true;
+  }
+
+  /** Number of users, not counting removed rows. */
+  @Override
+  public int size() {
+    return live;
+  }
+
+  /** Number of rows including removed ones; row numbers run from 0 to rows() - 1. */
+  @Override
+  public int rows() {
+    return rows;
+  }
+
+  @Override
+  public boolean isLive(int row) {
+    return !removed.get(row);
+  }
+
+  /** Row of the user with this id, or -1. */
+  public int rowOf(String id) {
+    UUID uuid = tryParseId(id);
+    return uuid == null ? -1 : find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+  }
+
+  /** View of the user with this id, or null. */
+  public UserSummary get(String id) {
+    int row = rowOf(id);
+    return row < 0 ? null : view(row);
+  }
+
+  /** Materializes one row as a UserSummary. */
+  @Override
+  public UserSummary view(int row) {
+    long t = stateChanged[row];
+    return new UserSummary(
+        id(row),
+        strings.displayName(row),
+        strings.userPrincipalName(row),
+        strings.mail(row),
+        userType(row),
+        accountEnabled(row),
+        externalUserState(row),
+        t == NO_TIME ? null : OffsetDateTime.ofInstant(Instant.ofEpochMilli(t), ZoneOffset.UTC));
+  }
+
+  public String id(int row) {
+    return new UUID(idHi[row], idLo[row]).toString();
+  }
+
+  public String displayName(int row) {
+    return strings.displayName(row);
+  }
+
+  public String userPrincipalName(int row) {
+    return strings.userPrincipalName(row);
+  }
+
+  public String mail(int row) {
+    return strings.mail(row);
+  }
+
+  // Dictionary values and Boolean constants are shared, so these do not allocate.
+
+  @Override
+  public String userType(int row) {
+    return userType.get(row);
+  }
+
+  @Override
+  public String externalUserState(int row) {
+    return externalUserState.get(row);
+  }
+
+  @Override
+  public Boolean accountEnabled(int row) {
+    if (!enabledKnown.get(row))
+      return null;
+    return enabled.get(row) ? Boolean.TRUE : Boolean.FALSE;
+  }
+
+  /** externalUserStateChangeDateTime as epoch millis, or Long.MIN_VALUE when unset. */
+  @Override
+  public long externalUserStateChangeMillis(int row) {
+    return stateChanged[row];
+  }
+
+  /** Views of the live rows, in insertion order. */
+  @Override
+  public Iterator<UserSummary> iterator() {
+    return new Iterator<UserSummary>() {
+      private int next = removed.nextClearBit(0);
+
+      @Override
+      public boolean hasNext() {
+        return next < rows;
+      }
+
+      @Override
+      public UserSummary next() {
+        if (next >= rows)
+          throw new NoSuchElementException();
+        UserSummary u = view(next);
+        next = removed.nextClearBit(next + 1);
+        return u;
+      }
+    };
+  }
+
+  /** Drops spare capacity left by growth; call once loading is done. */
+  public void trimToSize() {
+    int cap = Math.max(1, rows);
+    idHi = Arrays.copyOf(idHi, cap);
+    idLo = Arrays.copyOf(idLo, cap);
+    stateChanged = Arrays.copyOf(stateChanged, cap);
+    strings.trim(cap);
+    userType.trim(cap);
+    externalUserState.trim(cap);
+  }
+
+  /** Approximate bytes held by the column arrays. */
+  public long estimatedHeapBytes() {
+    long bytes = 8L * (idHi.length + idLo.length + stateChanged.length) + 4L * slots.length;
+    bytes += strings.bytes();
+    bytes += userType.codes.length + externalUserState.codes.length;
+    bytes += (enabledKnown.size() + enabled.size() + removed.size()) / 8;
+    return bytes;
+  }
+
+  private void markRemoved(int row) {
+    if (removed.get(row))
+      return;
+    removed.set(row);
+    live--;
+    deleteSlot(row);
+  }
+
+  // ---------- id hash ----------
+
+  private int find(long hi, long lo) {
+    int mask = slots.length - 1;
+    for (int i = hash(hi, lo) & mask; ; i = (i + 1) & mask) {
+      int s = slots[i];
+      if (s == 0)
+        return -1;
+      int row = s - 1;
+      if (idHi[row] == hi && idLo[row] == lo)
+        return row;
+    }
+  }
+
+  /** Adds a row that is not yet counted in rows/live, growing the table past 3/4 full. */
+  private void insertSlot(int row) {
+    if ((live + 1) * 4L > slots.length * 3L)
+      rehash(slots.length * 2);
+    int mask = slots.length - 1;
+    int i = hash(idHi[row], idLo[row]) & mask;
+    while (slots[i] != 0)
+      i = (i + 1) & mask;
+    slots[i] = row + 1;
+  }
+
+  /** Removes a row from the table, shifting later entries of its probe run back (no tombstones). */
+  private void deleteSlot(int row) {
+    int mask = slots.length - 1;
+    int i = hash(idHi[row], idLo[row]) & mask;
+    while (slots[i] != row + 1)
+      i = (i + 1) & mask;
+    slots[i] = 0;
+    for (int j = (i + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+      int r = slots[j] - 1;
+      int home = hash(idHi[r], idLo[r]) & mask;
+      // move r into the hole if the hole lies cyclically between its home slot and j
+      if (((j - home) & mask) >= ((j - i) & mask)) {
+        slots[i] = slots[j];
+        slots[j] = 0;
+        i = j;
+      }
+    }
+  }
+
+  private void rehash(int capacity) {
+    slots = new int[capacity];
+    int mask = capacity - 1;
+    for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+      int i = hash(idHi[row], idLo[row]) & mask;
+      while (slots[i] != 0)
+        i = (i + 1) & mask;
+      slots[i] = row + 1;
+    }
+  }
+
+  private static int hash(long hi, long lo) {
+    long h = (hi ^ lo) * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private static UUID parseId(String id) {
+    UUID uuid = tryParseId(id);
+    if (uuid == null)
+      throw new IllegalArgumentException("Not a Graph object id: " + id);
+    return uuid;
+  }
+
+  private static UUID tryParseId(String id) {
+    // UUID.fromString accepts short groups such as "1-2-3-4-5"; require the canonical form
+    if (id == null || id.length() != 36 || id.charAt(8) != '-' || id.charAt(13) != '-'
+        || id.charAt(18) != '-' || id.charAt(23) != '-')
+      return null;
+    try {
+      return UUID.fromString(id);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  // ---------- columns ----------
+
+  /**
+   * displayName, UPN and mail of each row as one record in a byte array, at pos[row]. Each field
+   * starts with a varint header, 0 meaning null. displayName: header = UTF-8 length + 1.
+   * UPN: header = local-part length + 1, then the domain code (0 = no '@'). mail: header 1 means
+   * "same as UPN", otherwise local-part length + 2, then the domain code.
+   */
+  private static final class StringHeap {
+    private int[] pos = new int[1024];
+    private byte[] heap = new byte[64 * 1024];
+    private int used;
+    private final List<String> domains = new ArrayList<>();
+    private final Map<String, Integer> domainCodes = new HashMap<>();
+
+    void add(int row, String displayName, String upn, String mail) {
+      if (row == pos.length)
+        pos = Arrays.copyOf(pos, row * 2);
+      pos[row] = used;
+      if (displayName == null) {
+        writeVarint(0);
+      } else {
+        byte[] b = displayName.getBytes(StandardCharsets.UTF_8);
+        writeVarint(b.length + 1);
+        writeBytes(b);
+      }
+      writeAddress(upn, 1);
+      if (mail != null && mail.equals(upn))
+        writeVarint(1);
+      else
+        writeAddress(mail, 2);
+    }
+
+    String displayName(int row) {
+      int[] p = {pos[row]};
+      return readPlain(p);
+    }
+
+    String userPrincipalName(int row) {
+      int[] p = {pos[row]};
+      skipPlain(p);
+      return readAddress(p, 1);
+    }
+
+    String mail(int row) {
+      int[] p = {pos[row]};
+      skipPlain(p);
+      int upnStart = p[0];
+      skipAddress(p, 1);
+      int h = peekVarint(p[0]);
+      if (h == 1) {
+        p[0] = upnStart;
+        return readAddress(p, 1);
+      }
+      return readAddress(p, 2);
+    }
+
+    private void writeAddress(String s, int bias) {
+      if (s == null) {
+        writeVarint(0);
+        return;
+      }
+      int at = s.lastIndexOf('@');
+      String local = at < 0 ? s : s.substring(0, at);
+      byte[] b = local.getBytes(StandardCharsets.UTF_8);
+      writeVarint(b.length + bias);
+      writeBytes(b);
+      writeVarint(at < 0 ? 0 : domainCode(s.substring(at + 1)) + 1);
+    }
+
+    private String readPlain(int[] p) {
+      int h = readVarint(p);
+      if (h == 0)
+        return null;
+      String s = new String(heap, p[0], h - 1, StandardCharsets.UTF_8);
+      p[0] += h - 1;
+      return s;
+    }
+
+    private void skipPlain(int[] p) {
+      int h = readVarint(p);
+      if (h > 0)
+        p[0] += h - 1;
+    }
+
+    private String readAddress(int[] p, int bias) {
+      int h = readVarint(p);
+      if (h == 0)
+        return null;
+      String local = new String(heap, p[0], h - bias, StandardCharsets.UTF_8);
+      p[0] += h - bias;
+      int domain = readVarint(p);
+      return domain == 0 ? local : local + "@" + domains.get(domain - 1);
+    }
+
+    private void skipAddress(int[] p, int bias) {
+      int h = readVarint(p);
+      if (h == 0)
+        return;
+      p[0] += h - bias;
+      readVarint(p);
+    }
+
+    private int domainCode(String domain) {
+      Integer c = domainCodes.get(domain);
+      if (c == null) {
+        c = domains.size();
+        domains.add(domain);
+        domainCodes.put(domain, c);
+      }
+      return c;
+    }
+
+    private void writeVarint(int v) {
+      ensure(5);
+      while ((v & ~0x7F) != 0) {
+        heap[used++] = (byte) ((v & 0x7F) | 0x80);
+        v >>>= 7;
+      }
+      heap[used++] = (byte) v;
+    }
+
+    private int readVarint(int[] p) {
+      int v = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = heap[p[0]++];
+        v |= (b & 0x7F) << shift;
+        if (b >= 0)
+          return v;
+      }
+    }
+
+    private int peekVarint(int at) {
+      return readVarint(new int[] {at});
+    }
+
+    private void writeBytes(byte[] b) {
+      ensure(b.length);
+      System.arraycopy(b, 0, heap, used, b.length);
+      used += b.length;
+    }
+
+    private void ensure(int extra) {
+      if (used + extra > heap.length) {
+        long cap = Math.max((long) heap.length * 2, (long) used + extra);
+        if (cap > Integer.MAX_VALUE - 8)
+          throw new IllegalStateException("String heap exceeds 2 GB");
+        heap = Arrays.copyOf(heap, (int) cap);
+      }
+    }
+
+    void trim(int rows) {
+      pos = Arrays.copyOf(pos, rows);
+      heap = Arrays.copyOf(heap, used);
+    }
+
+    long bytes() {
+      return 4L * pos.length + heap.length;
+    }
+  }
+
+  /** Low-cardinality strings as one-byte codes; code 0 is null. */
+  private static final class DictColumn {
+    private final String name;
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> codesByValue = new HashMap<>();
+    private byte[] codes = new byte[1024];
+
+    DictColumn(String name) {
+      this.name = name;
+      values.add(null);
+    }
+
+    void add(int row, String value) {
+      if (row == codes.length)
+        codes = Arrays.copyOf(codes, row * 2);
+      codes[row] = (byte) code(value);
+    }
+
+    String get(int row) {
+      return values.get(codes[row] & 0xFF);
+    }
+
+    private int code(String value) {
+      if (value == null)
+        return 0;
+      Integer c = codesByValue.get(value);
+      if (c != null)
+        return c;
+      if (values.size() > 255)
+        throw new IllegalStateException("More than 255 distinct " + name + " values");
+      values.add(value);
+      codesByValue.put(value, values.size() - 1);
+      return values.size() - 1;
+    }
+
+    void trim(int rows) {
+      codes = Arrays.copyOf(codes, rows);
+    }
+  }
+}
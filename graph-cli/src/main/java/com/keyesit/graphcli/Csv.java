@@ -0,0 +1,60 @@
+package com.keyesit.graphcli;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Minimal RFC 4180 helpers for the batch input and result files. */
+final class Csv {
+
+  private Csv() {
+  }
+
+  /** Quotes a field when it contains a comma, quote or line break. */
+  static String escape(Object value) {
+    if (value == null)
+      return "";
+    String s = value.toString();
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0)
+      return s;
+    return "\"" + s.replace("\"", "\"\"") + "\"";
+  }
+
+  static String row(Object... fields) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0)
+        sb.append(',');
+      sb.append(escape(fields[i]));
+    }
+    return sb.toString();
+  }
+
+  /** Splits one line into fields, honouring quotes. Quoted line breaks are not supported. */
+  static List<String> parse(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          sb.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          sb.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(sb.toString().trim());
+        sb.setLength(0);
+      } else {
+        sb.append(c);
+      }
+    }
+    fields.add(sb.toString().trim());
+    return fields;
+  }
+}
@@ -1,54 +1,95 @@
 package com.keyesit.graphcli;
 
-import com.azure.identity.ClientSecretCredential;
-import com.azure.identity.ClientSecretCredentialBuilder;
+import com.microsoft.graph.core.requests.GraphClientFactory;
 import com.microsoft.graph.serviceclient.GraphServiceClient;
-import com.microsoft.graph.models.Invitation;
+import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
 
 public class GraphCli {
 
   private static Logger log;
 
   public static void main(String[] args) throws Exception {
+    StartupTrace.begin();
     try {
+      // Everything up to StartupTrace.mark("config") is plain JDK: a config mistake is reported
+      // before logging, Azure Identity or the Graph SDK is loaded.
       Path projectDir = Paths.get("").toAbsolutePath();
       Path configPath = projectDir.resolve("config.ini");
       Path authPath = projectDir.resolve("auth.ini");
       IniConfig auth_ini = IniConfig.load(authPath);
       IniConfig config_ini = IniConfig.load(configPath);
       AppConfig cfg = AppConfig.fromIni(config_ini);
-      log = LoggerFactory.getLogger(GraphCli.class);
+      AuthConfig auth = AuthConfig.fromIni(auth_ini);
+      StartupTrace.mark("config");
       Path logDir = projectDir.resolve("log");
       Files.createDirectories(logDir);
       System.setProperty("LOG_DIR", logDir.toString());
       System.setProperty("LOG_FILE", "graphcli.log");
+      log = LoggerFactory.getLogger(GraphCli.class);
+      StartupTrace.mark("logging");
       System.out.println("Starting " + cfg.mode + ".");
       log.info("STARTING - MODE : {}", cfg.mode);
-      GraphServiceClient graph = buildGraphClient(auth_ini);
+      GraphMetrics metrics = new GraphMetrics();
+      LazyGraphClient graph = LazyGraphClient.of(auth, metrics);
 
       switch (cfg.mode) {
         case search:
           runSearch(cfg, graph);
           break;
         case delete:
-          runDelete(cfg, graph);
+          runDelete(cfg, graph.get());
           break;
         case invite:
-          runInvite(cfg, config_ini, graph);
+          runInvite(cfg, graph.get());
+          break;
+        case index:
+          runIndex(cfg, graph.get());
+          break;
+        case batchsearch:
+          runBatchSearch(cfg, graph);
+          break;
+        case bulkdelete:
+          runBulkDelete(cfg, graph.get());
+          break;
+        case bulkinvite:
+          runBulkInvite(cfg, graph.get());
+          break;
+        case report:
+          runReport(cfg, graph);
+          break;
+        case snapshot:
+          runSnapshot(cfg, graph.get());
+          break;
+        case export:
+          runExport(cfg, graph.get());
+          break;
+        case daemon:
+          runDaemon(cfg, graph.get(), metrics);
           break;
         default: {
-          System.out.println("Unsupported mode :{}\n try: 'search', 'delete' or 'invite'" + cfg.mode);
+          System.out.println("Unsupported mode :{}\n try: 'search', 'delete', 'invite', 'index', 'batchsearch', 'bulkdelete', 'bulkinvite', 'report', 'snapshot', 'export' or 'daemon'" + cfg.mode);
           log.warn("Unsupported mode: {}", cfg.mode);
           System.exit(2);
         }
       }
 
+      log.info("STARTUP {}", StartupTrace.summary());
+      if (metrics.getRequests() > 0) {
+        System.out.println("=== Graph metrics ===");
+        System.out.println(metrics);
+        log.info("METRICS {}", metrics.toString().replace(System.lineSeparator(), " "));
+      }
       System.out.println("Done.");
       log.info("DONE");
       // It was hanging in after completion waiting on something in the backend
@@ -64,109 +105,226 @@ public class GraphCli {
 
   }
 
-  private static GraphServiceClient buildGraphClient(IniConfig ini) {
-    String tenantId = ini.get("auth", "tenantId");
-    String clientId = ini.get("auth", "clientId");
-    String clientSecret = ini.get("auth", "clientSecret");
-    String scope = ini.get("auth", "scope");
-    ClientSecretCredential credential = new ClientSecretCredentialBuilder()
-        .tenantId(tenantId)
-        .clientId(clientId)
-        .clientSecret(clientSecret)
+  /** The SDK's default OkHttp stack with the metrics interceptor innermost, so it sees every attempt. */
+  static OkHttpClient httpClient(GraphMetrics metrics) {
+    return GraphClientFactory.create(GraphServiceClient.getGraphClientOptions())
+        .addInterceptor(metrics.interceptor())
         .build();
+  }
 
-    return new GraphServiceClient(credential, new String[] { scope });
-  }
-
-  private static void runInvite(AppConfig cfg, IniConfig ini, GraphServiceClient graph) {
-    String email = ini.get("invite", "email").trim();
-    String redirectUrl = ini.get("invite", "redirectUrl").trim();
-    boolean sendMsg = ini.getBoolean("invite", "sendInvitationMessage");
-    System.out.println("=== Execution Plan ===");
-    System.out.println("Action: CREATE guest invitation");
-    System.out.println("  email: " + email);
-    System.out.println("  redirectUrl: " + redirectUrl);
-    System.out.println("  sendInvitationMessage: " + sendMsg);
-    System.out.println("======================");
-    GraphGuestInviter inviter = new GraphGuestInviter(graph);
-    Invitation created = inviter.invite(email, redirectUrl, sendMsg);
-    System.out.println("Invitation created.");
-    System.out.println("- invitedUserEmailAddress = "
-        + safe(created.getInvitedUserEmailAddress()));
-
-    if (created.getInvitedUser() != null) {
-      System.out.println("- invitedUserId = "
-          + safe(created.getInvitedUser().getId()));
+  private static void runInvite(AppConfig cfg, GraphServiceClient graph) {
+    UserCommands.invite(new GraphGuestInviter(graph), cfg.inviteEmail, cfg.inviteRedirectUrl.toString(),
+        cfg.sendInvitationMessage, System.out);
+  }
+
+  private static void runIndex(AppConfig cfg, GraphServiceClient graph) throws IOException {
+    long start = System.nanoTime();
+    UserIndex index = UserIndex.fromGraph(graph);
+    index.save(cfg.indexFile);
+    long ms = (System.nanoTime() - start) / 1_000_000L;
+    System.out.println("Indexed " + index.size() + " users into " + cfg.indexFile.toAbsolutePath() + " in " + ms + " ms.");
+    log.info("INDEX saved file={} users={} elapsedMs={}", cfg.indexFile.toAbsolutePath(), index.size(), ms);
+  }
+
+  /**
+   * Tenant-wide counts by userType, guest invitation state and accountEnabled. Scans the
+   * snapshot or index export when one is fresh, otherwise lists the tenant; index and Graph
+   * users are held in a CompactUserStore so large tenants fit in a small heap.
+   */
+  private static void runReport(AppConfig cfg, Supplier<GraphServiceClient> graph) throws IOException {
+    long start = System.nanoTime();
+    UserTable store;
+    Instant freshAfter = Instant.now().minus(cfg.indexMaxAge);
+    UserSnapshot snapshot = cfg.snapshotFile != null && Files.isRegularFile(cfg.snapshotFile)
+        ? UserSnapshot.open(cfg.snapshotFile) : null;
+    if (snapshot != null && snapshot.getBuiltAt().isAfter(freshAfter)) {
+      store = snapshot;
+      System.out.println("Source: " + cfg.snapshotFile.toAbsolutePath());
+    } else if (cfg.indexFile != null && Files.isRegularFile(cfg.indexFile)
+        && Files.getLastModifiedTime(cfg.indexFile).toInstant().isAfter(freshAfter)) {
+      store = CompactUserStore.load(cfg.indexFile);
+      System.out.println("Source: " + cfg.indexFile.toAbsolutePath());
     } else {
-      System.out.println("- invitedUserId = (not returned yet)");
-      System.out.println("- invitedUserDisplayName = (not returned yet)");
+      store = CompactUserStore.fromGraph(graph.get());
+      System.out.println("Source: Microsoft Graph");
+    }
+
+    Map<String, int[]> byType = new TreeMap<>();
+    Map<String, int[]> byState = new TreeMap<>();
+    int enabled = 0;
+    int disabled = 0;
+    int stalePending = 0;
+    long staleBefore = Instant.now().minus(Duration.ofDays(30)).toEpochMilli();
+    for (int row = 0; row < store.rows(); row++) {
+      if (!store.isLive(row))
+        continue;
+      tally(byType, store.userType(row));
+      String state = store.externalUserState(row);
+      tally(byState, state);
+      Boolean on = store.accountEnabled(row);
+      if (Boolean.TRUE.equals(on))
+        enabled++;
+      else if (Boolean.FALSE.equals(on))
+        disabled++;
+      long changed = store.externalUserStateChangeMillis(row);
+      if ("PendingAcceptance".equals(state) && changed != Long.MIN_VALUE && changed < staleBefore)
+        stalePending++;
     }
-    System.out.println("======== INVITE =========");
-    System.out.println(safe(created.getInviteRedeemUrl()));
-    System.out.println("=========================");
+
+    long ms = (System.nanoTime() - start) / 1_000_000L;
+    System.out.println("Users: " + store.size());
+    System.out.println("Enabled: " + enabled + "  Disabled: " + disabled
+        + "  Unknown: " + (store.size() - enabled - disabled));
+    for (Map.Entry<String, int[]> e : byType.entrySet())
+      System.out.println("userType " + e.getKey() + ": " + e.getValue()[0]);
+    for (Map.Entry<String, int[]> e : byState.entrySet())
+      System.out.println("externalUserState " + e.getKey() + ": " + e.getValue()[0]);
+    System.out.println("Invitations pending for more than 30 days: " + stalePending);
+    log.info("REPORT users={} elapsedMs={}", store.size(), ms);
   }
 
-  private static void runSearch(AppConfig cfg, GraphServiceClient graph) {
-    log.debug("SEARCH query='{}' maxResults={}", cfg.query, cfg.maxResults);
-    GraphUserFinder finder = new GraphUserFinder(graph);
-    List<UserSummary> users = finder.find(cfg);
-    printCandidates(users);
-    log.debug("RESULT searchCount={}", users.size());
+  private static void tally(Map<String, int[]> counts, String value) {
+    counts.computeIfAbsent(value == null ? "(none)" : value, k -> new int[1])[0]++;
   }
 
-  private static void runDelete(AppConfig cfg, GraphServiceClient graph) {
-    log.debug("DELETE requested query='{}'", cfg.query);
-    GraphUserFinder finder = new GraphUserFinder(graph);
-    List<UserSummary> matches = finder.find(cfg);
+  /** Dumps the tenant to a gzip file, resuming from the checkpoint an interrupted run left behind. */
+  private static void runExport(AppConfig cfg, GraphServiceClient graph) throws Exception {
+    Path checkpoint = TenantExporter.checkpointFile(cfg.exportFile);
+    if (Files.isRegularFile(checkpoint))
+      System.out.println("Resuming export from " + checkpoint.toAbsolutePath());
+    log.info("EXPORT file={} format={} checkpointPages={}", cfg.exportFile.toAbsolutePath(), cfg.exportFormat,
+        cfg.exportCheckpointPages);
+    TenantExporter.Result result = new TenantExporter(graph, cfg.exportFormat, cfg.exportCheckpointPages)
+        .run(cfg.exportFile);
+    System.out.println(result);
+    System.out.println("Export: " + cfg.exportFile.toAbsolutePath());
+    log.info("EXPORT done users={} pages={} bytes={} elapsedMs={}", result.users, result.pages, result.bytes,
+        result.elapsedMillis);
+  }
 
-    if (matches.isEmpty()) {
-      System.out.println("No user found. No changes made.");
-      log.debug("MATCH count=0");
-      return;
+  /** Lists the tenant into the binary snapshot used by lookups and report. */
+  private static void runSnapshot(AppConfig cfg, GraphServiceClient graph) throws IOException {
+    long start = System.nanoTime();
+    Instant builtAt = Instant.now();
+    CompactUserStore users = CompactUserStore.fromGraph(graph);
+    UserSnapshot.write(users, builtAt, cfg.snapshotFile);
+    long ms = (System.nanoTime() - start) / 1_000_000L;
+    System.out.println("Wrote " + users.size() + " users to " + cfg.snapshotFile.toAbsolutePath() + " in " + ms + " ms.");
+    log.info("SNAPSHOT saved file={} users={} bytes={} elapsedMs={}", cfg.snapshotFile.toAbsolutePath(), users.size(),
+        Files.size(cfg.snapshotFile), ms);
+  }
+
+  /**
+   * Uses the binary snapshot or NDJSON index when one is configured and readable (snapshot
+   * first); otherwise plain Graph lookups.
+   */
+  static GraphUserFinder newFinder(AppConfig cfg, Supplier<GraphServiceClient> graph) {
+    if (cfg.snapshotFile != null && Files.isRegularFile(cfg.snapshotFile)) {
+      try {
+        return new GraphUserFinder(graph, UserSnapshot.open(cfg.snapshotFile), cfg.indexMaxAge, cfg.resolution);
+      } catch (IOException | RuntimeException e) {
+        log.warn("SNAPSHOT unreadable file={} error={}; trying indexFile", cfg.snapshotFile.toAbsolutePath(), e.toString());
+      }
+    }
+    if (cfg.indexFile == null)
+      return new GraphUserFinder(graph, null, null, cfg.resolution);
+    if (!Files.isRegularFile(cfg.indexFile)) {
+      log.info("INDEX not found file={}; using Graph only (run mode=index to build it)", cfg.indexFile.toAbsolutePath());
+      return new GraphUserFinder(graph, null, null, cfg.resolution);
+    }
+    try {
+      return new GraphUserFinder(graph, UserIndex.load(cfg.indexFile), cfg.indexMaxAge, cfg.resolution);
+    } catch (IOException | RuntimeException e) {
+      log.warn("INDEX unreadable file={} error={}; using Graph only", cfg.indexFile.toAbsolutePath(), e.toString());
+      return new GraphUserFinder(graph, null, null, cfg.resolution);
     }
+  }
+
+  /**
+   * Graph only, never the snapshot or index. Delete takes its single-match check and the id it
+   * deletes from this answer, and a local copy can be up to indexMaxAge behind renames,
+   * reassigned UPNs and new users.
+   */
+  static GraphUserFinder deleteFinder(AppConfig cfg, Supplier<GraphServiceClient> graph) {
+    return new GraphUserFinder(graph, null, null, cfg.resolution);
+  }
 
-    if (matches.size() > 1) {
-      System.out.println("Multiple users matched; refusing to delete. No changes made.");
-      printCandidates(matches);
-      log.debug("MATCH count={} refusingToProceed=true", matches.size());
+  private static void runBulkInvite(AppConfig cfg, GraphServiceClient graph) throws Exception {
+    log.info("BULK_INVITE input={} output={} concurrency={} ratePerSecond={}",
+        cfg.batchInputFile.toAbsolutePath(), cfg.batchOutputFile.toAbsolutePath(), cfg.batchConcurrency,
+        cfg.batchRatePerSecond);
+    BulkGuestInviter bulk = new BulkGuestInviter(new GraphGuestInviter(graph), cfg.batchConcurrency,
+        new RateLimiter(cfg.batchRatePerSecond),
+        cfg.inviteRedirectUrl == null ? null : cfg.inviteRedirectUrl.toString(), cfg.sendInvitationMessage);
+    RunStats stats = bulk.run(cfg.batchInputFile, cfg.batchOutputFile);
+    System.out.println(stats);
+    System.out.println("Invitations: " + cfg.batchOutputFile.toAbsolutePath());
+    log.info("BULK_INVITE done {}", stats.toString().replace('\n', ' '));
+  }
+
+  private static void runSearch(AppConfig cfg, Supplier<GraphServiceClient> graph) {
+    if (cfg.stream) {
+      runStreamingSearch(cfg, graph);
       return;
     }
+    log.debug("SEARCH query='{}' maxResults={}", cfg.query, cfg.maxResults);
+    UserCommands.search(newFinder(cfg, graph), cfg.query, cfg.maxResults, System.out);
+  }
 
-    UserSummary target = matches.get(0);
-    GraphUserDeleter deleter = new GraphUserDeleter(graph);
-    try {
-      deleter.deleteById(target.getId());
-      System.out.println("Delete completed.");
-      log.warn("RESULT status=SUCCESS deletedUserId={}", safe(target.getId()));
-    } catch (Exception e) {
-      System.out.println("Delete failed. No changes made beyond attempted delete.");
-      System.out.println("ERROR: " + e.getMessage());
-      log.error("RESULT status=FAILED deletedUserId={} error={}", safe(target.getId()), e.toString(), e);
-      System.exit(3);
-    }
+  private static void runBatchSearch(AppConfig cfg, Supplier<GraphServiceClient> graph) throws Exception {
+    log.info("BATCH_SEARCH input={} output={} format={} concurrency={}",
+        cfg.batchInputFile.toAbsolutePath(), cfg.batchOutputFile.toAbsolutePath(), cfg.batchFormat, cfg.batchConcurrency);
+    BulkUserSearch search = new BulkUserSearch(newFinder(cfg, graph), cfg.batchConcurrency, cfg.maxResults);
+    RunStats stats = search.run(cfg.batchInputFile, cfg.batchOutputFile, cfg.batchFormat);
+    System.out.println(stats);
+    System.out.println("Results: " + cfg.batchOutputFile.toAbsolutePath());
+    log.info("BATCH_SEARCH done {}", stats.toString().replace('\n', ' '));
   }
 
-  private static void printCandidates(List<UserSummary> users) {
+  private static void runBulkDelete(AppConfig cfg, GraphServiceClient graph) throws Exception {
+    log.warn("BULK_DELETE input={} output={} concurrency={} dryRun={}",
+        cfg.batchInputFile.toAbsolutePath(), cfg.batchOutputFile.toAbsolutePath(), cfg.batchConcurrency, cfg.batchDryRun);
+    if (cfg.batchDryRun)
+      System.out.println("Dry run: users will be resolved but not deleted.");
+    BulkUserDeleter bulk = new BulkUserDeleter(deleteFinder(cfg, () -> graph), new GraphUserDeleter(graph),
+        cfg.batchConcurrency, cfg.maxResults, cfg.batchDryRun);
+    RunStats stats = bulk.run(cfg.batchInputFile, cfg.batchOutputFile);
+    System.out.println(stats);
+    System.out.println("Per-user results: " + cfg.batchOutputFile.toAbsolutePath());
+    log.warn("BULK_DELETE done {}", stats.toString().replace('\n', ' '));
+  }
+
+  /** Prints each match as it arrives instead of collecting a list first. */
+  private static void runStreamingSearch(AppConfig cfg, Supplier<GraphServiceClient> graph) {
+    log.debug("SEARCH (streaming) query='{}' maxTotal={}", cfg.query, cfg.maxTotal);
+    long count = newFinder(cfg, graph).stream(cfg.query, cfg.maxTotal, u -> UserCommands.printCandidate(System.out, u));
     System.out.println("========");
-    System.out.println("Matches: " + users.size());
-    for (UserSummary u : users) {
-      System.out.println("========");
-      StringBuilder sb = new StringBuilder(safe("id = " + u.getId() + "\n"));
-      sb.append("name = " + u.getDisplayName() + "\n");
-      sb.append("upn = " + u.getUserPrincipalName() + "\n");
-      sb.append("mail = " + u.getMail() + "\n");
-      sb.append("userType = " + u.getUserType() + "\n");
-      if (u.getExternalUserState() != null) {
-        sb.append("InviteState = " + u.getExternalUserState() + "\n");
-      }
-      sb.append("acountEnabled = " + u.getAccountEnabled());
-      ;
-      System.out.println(sb);
-    }
+    System.out.println("Matches: " + count + (cfg.maxTotal > 0 && count >= cfg.maxTotal ? " (stopped at search.maxTotal)" : ""));
+    log.debug("RESULT searchCount={}", count);
+  }
 
+  private static void runDelete(AppConfig cfg, GraphServiceClient graph) {
+    log.debug("DELETE requested query='{}'", cfg.query);
+    int exit = UserCommands.delete(deleteFinder(cfg, () -> graph), new GraphUserDeleter(graph), cfg.query, cfg.maxResults,
+        System.out);
+    if (exit != 0)
+      System.exit(exit);
   }
 
-  private static String safe(String s) {
-    return (s == null) ? "" : s;
+  private static void runDaemon(AppConfig cfg, GraphServiceClient graph, GraphMetrics metrics) throws Exception {
+    // Fetch the token and open a connection now, so the first client command doesn't pay for it
+    // and bad credentials fail here rather than on every command.
+    long start = System.nanoTime();
+    graph.users().get(req -> {
+      req.queryParameters.top = 1;
+      req.queryParameters.select = new String[] { "id" };
+    });
+    try (GraphCliDaemon daemon = GraphCliDaemon.start(cfg, graph, metrics)) {
+      log.info("DAEMON listening port={} keyFile={} threads={} warmupMs={}", daemon.getPort(),
+          cfg.daemonKeyFile.toAbsolutePath(), cfg.daemonThreads, (System.nanoTime() - start) / 1_000_000L);
+      System.out.println("Listening on 127.0.0.1:" + daemon.getPort() + " (key in " + cfg.daemonKeyFile.toAbsolutePath()
+          + "). Send commands with client.sh; stop with: client.sh shutdown");
+      daemon.awaitShutdown();
+    }
   }
 }
@@ -0,0 +1,99 @@
+package com.keyesit.graphcli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Thin front end for a running {@code mode = daemon}: sends one command and prints the reply.
+ * Uses only the JDK (no Graph SDK, Azure Identity or logging classes), so it starts in a small
+ * fraction of the time of the one-shot CLI.
+ *
+ * <pre>
+ *   ./client.sh search alice smith
+ *   ./client.sh delete alice@contoso.com
+ *   ./client.sh invite guest@example.org [redirectUrl] [sendInvitationMessage]
+ *   ./client.sh metrics | ping | shutdown
+ * </pre>
+ *
+ * The exit code is the command's, as in the one-shot modes: 0 ok (a delete that matched no user
+ * or several users changes nothing and is also 0), 1 the command failed, 2 usage, 3 Graph
+ * rejected the delete. 2 as well when no daemon is running.
+ */
+public final class GraphCliClient {
+  static final String EXIT = "EXIT ";
+
+  private GraphCliClient() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path config = Paths.get("config.ini");
+    int exit;
+    try {
+      Path keyFile = Files.isRegularFile(config) ? AppConfig.daemonKeyFile(IniConfig.load(config)) : Paths.get("daemon.key");
+      exit = run(keyFile, args, System.out);
+    } catch (ConfigException e) {
+      System.err.println("Config error: " + e.getMessage());
+      exit = 2;
+    }
+    System.exit(exit);
+  }
+
+  static int run(Path keyFile, String[] args, PrintStream out) throws IOException {
+    if (args.length == 0) {
+      out.println("Usage: client.sh search|delete <query> | invite <email> [redirectUrl] [sendInvitationMessage] | metrics | ping | shutdown");
+      return 2;
+    }
+    if (!Files.isRegularFile(keyFile)) {
+      out.println("No daemon key file at " + keyFile.toAbsolutePath() + "; start one with mode = daemon.");
+      return 2;
+    }
+    Properties props = new Properties();
+    try (InputStream in = Files.newInputStream(keyFile)) {
+      props.load(in);
+    }
+    int port = Integer.parseInt(props.getProperty("port", "0").trim());
+    String key = props.getProperty("key", "").trim();
+
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      Writer w = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+      w.write(key + "\n" + commandLine(args) + "\n");
+      w.flush();
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.startsWith(EXIT))
+          return Integer.parseInt(line.substring(EXIT.length()).trim());
+        out.println(line);
+      }
+      out.println("Daemon closed the connection without a result.");
+      return 1;
+    } catch (ConnectException e) {
+      out.println("No daemon listening on 127.0.0.1:" + port + " (stale " + keyFile + "?); start one with mode = daemon.");
+      return 2;
+    }
+  }
+
+  /** search and delete take the rest of the arguments as one query; other commands keep them apart. */
+  static String commandLine(String[] args) {
+    StringBuilder sb = new StringBuilder(args[0]);
+    boolean joinRest = "search".equals(args[0]) || "delete".equals(args[0]);
+    for (int i = 1; i < args.length; i++) {
+      sb.append(joinRest && i > 1 ? ' ' : '\t');
+      sb.append(args[i].replace('\t', ' ').replace('\n', ' ').replace('\r', ' '));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,280 @@
+package com.keyesit.graphcli;
+
+import com.microsoft.graph.serviceclient.GraphServiceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps one warm GraphServiceClient (credential, token, connection pool, loaded index) and serves
+ * search, delete and invite to {@link GraphCliClient} over loopback, so each operation costs a
+ * Graph round trip instead of a JVM start, SDK class loading and a new TLS connection.
+ *
+ * One connection per command, UTF-8 lines: the key, then the command and its arguments separated
+ * by tabs. The reply is the text the one-shot CLI would print, then "EXIT <code>". Only
+ * 127.0.0.1 is bound, and the port and a fresh random key are written to an owner-only key file,
+ * so other local users cannot drive it.
+ */
+final class GraphCliDaemon implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(GraphCliDaemon.class);
+  private static final int READ_TIMEOUT_MS = 30_000;
+
+  private final AppConfig cfg;
+  private final GraphMetrics metrics;
+  private final GraphServiceClient graph;
+  private final GraphUserFinder deleteFinder;
+  private final GraphUserDeleter deleter;
+  private final GraphGuestInviter inviter;
+  private final ServerSocket server;
+  private final String key;
+  private final ExecutorService workers;
+  private final CountDownLatch stopped = new CountDownLatch(1);
+
+  // Search finder: answers from the index/snapshot loaded at start until this daemon deletes
+  // someone, then from Graph until mode=index or mode=snapshot rewrites the file.
+  private GraphUserFinder searchFinder;
+  private long deletedAt;
+
+  private GraphCliDaemon(AppConfig cfg, GraphServiceClient graph, GraphMetrics metrics) throws IOException {
+    this.cfg = cfg;
+    this.metrics = metrics;
+    this.graph = graph;
+    this.searchFinder = GraphCli.newFinder(cfg, () -> graph);
+    this.deleteFinder = GraphCli.deleteFinder(cfg, () -> graph);
+    this.deleter = new GraphUserDeleter(graph);
+    this.inviter = new GraphGuestInviter(graph);
+    this.server = new ServerSocket(cfg.daemonPort, 50, InetAddress.getLoopbackAddress());
+    this.key = newKey();
+    AtomicInteger n = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(cfg.daemonThreads, r -> {
+      Thread t = new Thread(r, "graphcli-daemon-" + n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /** Binds the port, writes the key file and starts accepting commands. */
+  static GraphCliDaemon start(AppConfig cfg, GraphServiceClient graph, GraphMetrics metrics) throws IOException {
+    GraphCliDaemon daemon = new GraphCliDaemon(cfg, graph, metrics);
+    try {
+      writeKeyFile(cfg.daemonKeyFile, daemon.getPort(), daemon.key);
+    } catch (IOException e) {
+      daemon.close();
+      throw e;
+    }
+    Thread acceptor = new Thread(daemon::acceptLoop, "graphcli-daemon-accept");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    return daemon;
+  }
+
+  int getPort() {
+    return server.getLocalPort();
+  }
+
+  /** Blocks until a client sends shutdown or the daemon is closed. */
+  void awaitShutdown() throws InterruptedException {
+    stopped.await();
+  }
+
+  private void acceptLoop() {
+    while (!server.isClosed()) {
+      try {
+        Socket socket = server.accept();
+        workers.execute(() -> handle(socket));
+      } catch (SocketException e) {
+        break; // closed
+      } catch (IOException e) {
+        log.warn("DAEMON accept failed error={}", e.toString());
+      }
+    }
+    stopped.countDown();
+  }
+
+  private void handle(Socket socket) {
+    long start = System.nanoTime();
+    String command = "";
+    int exit;
+    try (Socket s = socket;
+         BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+         PrintStream out = new PrintStream(new BufferedOutputStream(s.getOutputStream()), false, "UTF-8")) {
+      s.setSoTimeout(READ_TIMEOUT_MS);
+      String presented = in.readLine();
+      if (presented == null || !MessageDigest.isEqual(key.getBytes(StandardCharsets.UTF_8),
+          presented.getBytes(StandardCharsets.UTF_8))) {
+        log.warn("DAEMON rejected connection: bad key");
+        out.println("Bad key; is the key file from this daemon?");
+        out.println(GraphCliClient.EXIT + 2);
+        return;
+      }
+      String line = in.readLine();
+      String[] cmd = line == null || line.isEmpty() ? new String[] { "" } : line.split("\t", -1);
+      command = cmd[0];
+      try {
+        exit = execute(cmd, out);
+      } catch (RuntimeException e) {
+        out.println("ERROR: " + e.getMessage());
+        log.error("DAEMON command={} failed error={}", command, e.toString(), e);
+        exit = 1;
+      }
+      out.println(GraphCliClient.EXIT + exit);
+      out.flush();
+      log.info("DAEMON command={} exit={} elapsedMs={}", command, exit, (System.nanoTime() - start) / 1_000_000L);
+    } catch (IOException e) {
+      log.warn("DAEMON connection failed command={} error={}", command, e.toString());
+    }
+  }
+
+  private int execute(String[] cmd, PrintStream out) {
+    switch (cmd[0]) {
+      case "ping":
+        out.println("pong");
+        return 0;
+      case "search":
+        if (!hasArg(cmd, 1))
+          return usage(out, "search <query>");
+        UserCommands.search(searchFinder(), cmd[1], cfg.maxResults, out);
+        return 0;
+      case "delete":
+        if (!hasArg(cmd, 1))
+          return usage(out, "delete <query>");
+        log.debug("DELETE requested query='{}'", cmd[1]);
+        return UserCommands.delete(deleteFinder, deleter, cmd[1], cfg.maxResults, out, this::deleted);
+      case "invite": {
+        if (!hasArg(cmd, 1))
+          return usage(out, "invite <email> [redirectUrl] [sendInvitationMessage]");
+        String redirectUrl = hasArg(cmd, 2) ? cmd[2]
+            : cfg.inviteRedirectUrl == null ? null : cfg.inviteRedirectUrl.toString();
+        if (redirectUrl == null)
+          return usage(out, "invite <email> <redirectUrl> (no [invite] redirectUrl default configured)");
+        boolean send = hasArg(cmd, 3) ? Boolean.parseBoolean(cmd[3].trim()) : cfg.sendInvitationMessage;
+        UserCommands.invite(inviter, cmd[1].trim(), redirectUrl.trim(), send, out);
+        return 0;
+      }
+      case "metrics":
+        out.println(metrics);
+        return 0;
+      case "shutdown":
+        out.println("Shutting down.");
+        // Only stop accepting here: close() waits for workers, this one included.
+        stopAccepting();
+        return 0;
+      default:
+        return usage(out, "search | delete | invite | metrics | ping | shutdown (got: " + cmd[0] + ")");
+    }
+  }
+
+  private synchronized GraphUserFinder searchFinder() {
+    if (deletedAt != 0 && localCopyRewrittenSince(deletedAt)) {
+      searchFinder = GraphCli.newFinder(cfg, () -> graph);
+      deletedAt = 0;
+      log.info("DAEMON local index reloaded");
+    }
+    return searchFinder;
+  }
+
+  /** The loaded index or snapshot still lists the deleted user, so stop answering from it. */
+  private synchronized void deleted(UserSummary user) {
+    if (cfg.indexFile == null && cfg.snapshotFile == null)
+      return;
+    searchFinder = deleteFinder;
+    deletedAt = System.currentTimeMillis();
+    log.info("DAEMON local index dropped after deleting id={}; search uses Graph until the file is rebuilt",
+        user.getId());
+  }
+
+  private boolean localCopyRewrittenSince(long millis) {
+    for (Path file : new Path[] { cfg.snapshotFile, cfg.indexFile }) {
+      try {
+        if (file != null && Files.isRegularFile(file) && Files.getLastModifiedTime(file).toMillis() > millis)
+          return true;
+      } catch (IOException e) {
+        log.debug("DAEMON index file not checked file={} error={}", file, e.toString());
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasArg(String[] cmd, int i) {
+    return cmd.length > i && !cmd[i].trim().isEmpty();
+  }
+
+  private static int usage(PrintStream out, String message) {
+    out.println("Usage: " + message);
+    return 2;
+  }
+
+  /** Stops accepting commands and removes the key file; commands already running finish. */
+  @Override
+  public void close() {
+    stopAccepting();
+    workers.shutdown();
+    try {
+      workers.awaitTermination(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      Files.deleteIfExists(cfg.daemonKeyFile);
+    } catch (IOException e) {
+      log.debug("DAEMON key file not removed error={}", e.toString());
+    }
+  }
+
+  private void stopAccepting() {
+    try {
+      server.close();
+    } catch (IOException e) {
+      log.debug("DAEMON close error={}", e.toString());
+    }
+    stopped.countDown();
+  }
+
+  private static String newKey() {
+    byte[] bytes = new byte[32];
+    new SecureRandom().nextBytes(bytes);
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes)
+      sb.append(String.format("%02x", b));
+    return sb.toString();
+  }
+
+  private static void writeKeyFile(Path file, int port, String key) throws IOException {
+    Path dir = file.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    FileAttribute<?>[] attrs = dir.getFileSystem().supportedFileAttributeViews().contains("posix")
+        ? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")) }
+        : new FileAttribute<?>[0];
+    String content = "port=" + port + "\nkey=" + key + "\n";
+    // temp file + rename so a client never reads a half-written key
+    Path tmp = Files.createTempFile(dir, "daemon", ".tmp", attrs);
+    try {
+      Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+}
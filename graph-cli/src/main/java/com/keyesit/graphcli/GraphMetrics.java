@@ -0,0 +1,288 @@
+package com.keyesit.graphcli;
+
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.credential.TokenRequestContext;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-operation latency, status counts, retries, token refreshes and bytes for every request the
+ * Graph SDK sends, collected by an OkHttp {@link #interceptor()} and a {@link #meter(TokenCredential)
+ * credential wrapper}. Printed at the end of a run and published over JMX.
+ *
+ * The interceptor sits inside the SDK retry handler, so it sees each attempt; retries are the
+ * attempts carrying the handler's Retry-Attempt header. Recording touches only atomics and
+ * preallocated histograms. Latency is measured to response headers, since the SDK reads the body
+ * after the interceptor returns; only a body without Content-Length gets a counting wrapper.
+ */
+public final class GraphMetrics implements GraphMetricsMXBean {
+  private static final Logger log = LoggerFactory.getLogger(GraphMetrics.class);
+  private static final AtomicInteger INSTANCES = new AtomicInteger();
+  private static final int MAX_STATUS = 600;
+  private static final String RETRY_ATTEMPT = "Retry-Attempt";
+
+  /** What a request does, as far as its method and path tell. */
+  public enum Operation {
+    LIST_USERS, DELTA, GET_USER, UPDATE_USER, DELETE_USER, INVITE, BATCH, OTHER;
+
+    /** @param path URL path segments after the API version, e.g. [v1.0, users, id] */
+    static Operation classify(String method, List<String> path) {
+      int n = path.size();
+      String last = n == 0 ? "" : path.get(n - 1);
+      if (last.equals("$batch"))
+        return BATCH;
+      if (last.equals("invitations"))
+        return INVITE;
+      if (n < 2 || !path.get(1).equals("users"))
+        return OTHER;
+      if (n == 2)
+        return method.equals("GET") ? LIST_USERS : OTHER;
+      if (n != 3)
+        return OTHER;
+      if (last.equals("delta"))
+        return DELTA;
+      switch (method) {
+        case "GET":
+          return GET_USER;
+        case "PATCH":
+          return UPDATE_USER;
+        case "DELETE":
+          return DELETE_USER;
+        default:
+          return OTHER;
+      }
+    }
+  }
+
+  private final LatencyHistogram[] latency = new LatencyHistogram[Operation.values().length];
+  private final LatencyHistogram tokenLatency = new LatencyHistogram();
+  private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS);
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong throttled = new AtomicLong();
+  private final AtomicLong tokenRefreshes = new AtomicLong();
+  private final AtomicLong tokenFailures = new AtomicLong();
+  private final AtomicLong bytesIn = new AtomicLong();
+  private final AtomicLong bytesOut = new AtomicLong();
+  private final AtomicReference<OffsetDateTime> tokenExpiry = new AtomicReference<>();
+  private final Interceptor interceptor = this::intercept;
+
+  public GraphMetrics() {
+    for (int i = 0; i < latency.length; i++)
+      latency[i] = new LatencyHistogram();
+  }
+
+  /** Register as an MXBean; failure is logged and otherwise ignored. */
+  public GraphMetrics register() {
+    try {
+      ObjectName name = new ObjectName("com.keyesit.graphcli:type=GraphMetrics,name=client-" + INSTANCES.incrementAndGet());
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+    } catch (Exception | LinkageError e) {
+      log.warn("METRICS could not register MBean: {}", e.toString());
+    }
+    return this;
+  }
+
+  /** Add to the OkHttpClient after the SDK middleware so each attempt is seen. */
+  public Interceptor interceptor() {
+    return interceptor;
+  }
+
+  /** Counts a refresh (and its latency) whenever the credential returns a token with a new expiry. */
+  public TokenCredential meter(TokenCredential credential) {
+    return new TokenCredential() {
+      @Override
+      public Mono<AccessToken> getToken(TokenRequestContext request) {
+        return Mono.defer(() -> {
+          StartupTrace.firstRequest();
+          long start = System.nanoTime();
+          return credential.getToken(request)
+              .doOnNext(t -> onToken(t, System.nanoTime() - start))
+              .doOnError(e -> tokenFailures.incrementAndGet());
+        });
+      }
+
+      @Override
+      public AccessToken getTokenSync(TokenRequestContext request) {
+        StartupTrace.firstRequest();
+        long start = System.nanoTime();
+        AccessToken t;
+        try {
+          t = credential.getTokenSync(request);
+        } catch (RuntimeException e) {
+          tokenFailures.incrementAndGet();
+          throw e;
+        }
+        onToken(t, System.nanoTime() - start);
+        return t;
+      }
+    };
+  }
+
+  private void onToken(AccessToken t, long nanos) {
+    OffsetDateTime expires = t.getExpiresAt();
+    OffsetDateTime seen = tokenExpiry.get();
+    if (expires != null && !expires.equals(seen) && tokenExpiry.compareAndSet(seen, expires)) {
+      tokenRefreshes.incrementAndGet();
+      tokenLatency.recordNanos(nanos);
+    }
+  }
+
+  private Response intercept(Interceptor.Chain chain) throws IOException {
+    StartupTrace.firstRequest();
+    Request req = chain.request();
+    Operation op = Operation.classify(req.method(), req.url().pathSegments());
+    if (req.header(RETRY_ATTEMPT) != null)
+      retries.incrementAndGet();
+    RequestBody body = req.body();
+    long sent = body == null ? 0 : body.contentLength();
+    int status = 0;
+    long start = System.nanoTime();
+    try {
+      Response resp = chain.proceed(req);
+      status = resp.code();
+      return countBody(resp);
+    } finally {
+      record(op, status, System.nanoTime() - start, sent);
+    }
+  }
+
+  void record(Operation op, int status, long nanos, long bytesSent) {
+    latency[op.ordinal()].recordNanos(nanos);
+    statusCounts.incrementAndGet(status > 0 && status < MAX_STATUS ? status : 0);
+    requests.incrementAndGet();
+    if (status < 200 || status >= 300)
+      failures.incrementAndGet();
+    if (status == 429 || status == 503)
+      throttled.incrementAndGet();
+    if (bytesSent > 0)
+      bytesOut.addAndGet(bytesSent);
+  }
+
+  private Response countBody(Response resp) {
+    ResponseBody body = resp.body();
+    if (body == null)
+      return resp;
+    long length = body.contentLength();
+    if (length >= 0) {
+      bytesIn.addAndGet(length);
+      return resp;
+    }
+    ForwardingSource counting = new ForwardingSource(body.source()) {
+      @Override
+      public long read(Buffer sink, long byteCount) throws IOException {
+        long n = super.read(sink, byteCount);
+        if (n > 0)
+          bytesIn.addAndGet(n);
+        return n;
+      }
+    };
+    return resp.newBuilder().body(ResponseBody.create(Okio.buffer(counting), body.contentType(), length)).build();
+  }
+
+  @Override
+  public long getRequests() {
+    return requests.get();
+  }
+
+  @Override
+  public long getFailures() {
+    return failures.get();
+  }
+
+  @Override
+  public long getRetries() {
+    return retries.get();
+  }
+
+  @Override
+  public long getThrottled() {
+    return throttled.get();
+  }
+
+  @Override
+  public long getTokenRefreshes() {
+    return tokenRefreshes.get();
+  }
+
+  @Override
+  public long getTokenFailures() {
+    return tokenFailures.get();
+  }
+
+  @Override
+  public long getBytesIn() {
+    return bytesIn.get();
+  }
+
+  @Override
+  public long getBytesOut() {
+    return bytesOut.get();
+  }
+
+  @Override
+  public Map<String, Long> getStatusCounts() {
+    Map<String, Long> out = new TreeMap<>();
+    for (int i = 0; i < MAX_STATUS; i++) {
+      long n = statusCounts.get(i);
+      if (n > 0)
+        out.put(String.valueOf(i), n);
+    }
+    return out;
+  }
+
+  @Override
+  public Map<String, LatencyHistogram.Snapshot> getLatency() {
+    Map<String, LatencyHistogram.Snapshot> out = new LinkedHashMap<>();
+    for (Operation op : Operation.values()) {
+      LatencyHistogram.Snapshot s = latency[op.ordinal()].snapshot();
+      if (s.getCount() > 0)
+        out.put(op.name(), s);
+    }
+    return out;
+  }
+
+  @Override
+  public LatencyHistogram.Snapshot getTokenLatency() {
+    return tokenLatency.snapshot();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("Requests: %d (failures %d, retries %d, throttled %d), bytes in %d, bytes out %d%n",
+        getRequests(), getFailures(), getRetries(), getThrottled(), getBytesIn(), getBytesOut()));
+    sb.append("Status: ").append(getStatusCounts()).append(System.lineSeparator());
+    sb.append("Token: refreshes=").append(getTokenRefreshes()).append(" failures=").append(getTokenFailures());
+    LatencyHistogram.Snapshot token = getTokenLatency();
+    if (token.getCount() > 0)
+      sb.append(' ').append(token);
+    for (Map.Entry<String, LatencyHistogram.Snapshot> e : getLatency().entrySet())
+      sb.append(String.format("%n  %-12s %s", e.getKey(), e.getValue()));
+    return sb.toString();
+  }
+}
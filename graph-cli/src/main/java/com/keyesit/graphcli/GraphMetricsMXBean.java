@@ -0,0 +1,38 @@
+package com.keyesit.graphcli;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link GraphMetrics}, registered as
+ * {@code com.keyesit.graphcli:type=GraphMetrics,name=client-N}.
+ */
+public interface GraphMetricsMXBean {
+  /** HTTP attempts sent, retries included. */
+  long getRequests();
+
+  /** Attempts that got a non-2xx response or no response at all. */
+  long getFailures();
+
+  /** Attempts the SDK retry handler re-sent. */
+  long getRetries();
+
+  /** 429/503 responses. */
+  long getThrottled();
+
+  long getTokenRefreshes();
+
+  long getTokenFailures();
+
+  long getBytesIn();
+
+  long getBytesOut();
+
+  /** Attempts by HTTP status; "0" counts I/O errors (no response). */
+  Map<String, Long> getStatusCounts();
+
+  /** Per-operation latency to response headers, in microseconds. */
+  Map<String, LatencyHistogram.Snapshot> getLatency();
+
+  /** Time to obtain a new token from the credential, in microseconds. */
+  LatencyHistogram.Snapshot getTokenLatency();
+}
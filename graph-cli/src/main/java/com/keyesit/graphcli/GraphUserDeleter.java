@@ -1,11 +1,30 @@
 package com.keyesit.graphcli;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.graph.core.content.BatchRequestContent;
+import com.microsoft.graph.core.content.BatchResponseContent;
 import com.microsoft.graph.serviceclient.GraphServiceClient;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class GraphUserDeleter {
   private static final Logger log = LoggerFactory.getLogger(GraphUserDeleter.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /** Graph accepts at most 20 requests per JSON batch. */
+  public static final int MAX_BATCH_SIZE = 20;
+  private static final int MAX_STEP_RETRIES = 3;
+
   private final GraphServiceClient graph;
 
   public GraphUserDeleter(GraphServiceClient graph) {
@@ -17,4 +36,98 @@ public class GraphUserDeleter {
     graph.users().byUserId(userId).delete();
     log.info("EXEC_DELETE success id={}", userId);
   }
+
+  /**
+   * Deletes up to 20 users in one JSON $batch call. Steps throttled inside the batch
+   * (429/503/504) are re-sent a few times, honouring Retry-After.
+   *
+   * @return outcome per user id; status 204 means deleted
+   */
+  public Map<String, Outcome> deleteBatch(List<String> userIds) throws IOException, InterruptedException {
+    if (userIds.size() > MAX_BATCH_SIZE)
+      throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " users per batch (got " + userIds.size() + ")");
+
+    Map<String, Outcome> outcomes = new LinkedHashMap<>();
+    List<String> todo = userIds;
+    for (int attempt = 0; !todo.isEmpty(); attempt++) {
+      BatchRequestContent batch = new BatchRequestContent(graph);
+      Map<String, String> stepToUser = new HashMap<>();
+      for (String id : todo)
+        stepToUser.put(batch.addBatchRequestStep(graph.users().byUserId(id).toDeleteRequestInformation()), id);
+
+      log.info("EXEC_DELETE batch size={} attempt={}", todo.size(), attempt);
+      BatchResponseContent resp = graph.getBatchRequestBuilder().post(batch, null);
+      Map<String, Integer> codes = resp.getResponsesStatusCode();
+
+      List<String> retry = new ArrayList<>();
+      long waitSeconds = 0;
+      for (Map.Entry<String, String> step : stepToUser.entrySet()) {
+        String id = step.getValue();
+        Integer code = codes.get(step.getKey());
+        int status = code == null ? 0 : code;
+        Response r = resp.getResponseById(step.getKey());
+        if ((status == 429 || status == 503 || status == 504) && attempt < MAX_STEP_RETRIES) {
+          retry.add(id);
+          waitSeconds = Math.max(waitSeconds, retryAfterSeconds(r, attempt));
+          continue;
+        }
+        Outcome o = new Outcome(status, BatchResponseContent.isSuccessStatusCode(status) ? null : errorMessage(r));
+        outcomes.put(id, o);
+        if (o.isSuccess())
+          log.info("EXEC_DELETE success id={}", id);
+        else
+          log.warn("EXEC_DELETE failed id={} status={} error={}", id, status, o.message);
+      }
+
+      if (!retry.isEmpty()) {
+        log.info("EXEC_DELETE throttled steps={} waitSeconds={}", retry.size(), waitSeconds);
+        Thread.sleep(waitSeconds * 1000L);
+      }
+      todo = retry;
+    }
+    return outcomes;
+  }
+
+  private static long retryAfterSeconds(Response r, int attempt) {
+    String header = r == null ? null : r.header("Retry-After");
+    if (header != null) {
+      try {
+        return Math.max(1, Long.parseLong(header.trim()));
+      } catch (NumberFormatException ignored) {
+        // HTTP-date form is not used by Graph batch steps; fall back to backoff
+      }
+    }
+    return 1L << (attempt + 1);
+  }
+
+  private static String errorMessage(Response r) {
+    if (r == null)
+      return "no response for batch step";
+    ResponseBody body = r.body();
+    if (body == null)
+      return "HTTP " + r.code();
+    try {
+      JsonNode err = MAPPER.readTree(body.string()).path("error");
+      String code = err.path("code").asText("");
+      String message = err.path("message").asText("");
+      return code.isEmpty() && message.isEmpty() ? "HTTP " + r.code() : code + ": " + message;
+    } catch (IOException e) {
+      return "HTTP " + r.code();
+    }
+  }
+
+  /** Final HTTP status of one batched delete, with Graph's error text when it failed. */
+  public static final class Outcome {
+    public final int status;
+    public final String message;
+
+    public Outcome(int status, String message) {
+      this.status = status;
+      this.message = message;
+    }
+
+    public boolean isSuccess() {
+      return status >= 200 && status < 300;
+    }
+  }
 }
@@ -1,21 +1,31 @@
 package com.keyesit.graphcli;
 
+import com.microsoft.graph.core.tasks.PageIterator;
 import com.microsoft.graph.models.User;
+import com.microsoft.graph.models.UserCollectionResponse;
 import com.microsoft.graph.serviceclient.GraphServiceClient;
 import com.microsoft.kiota.ApiException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 public class GraphUserFinder {
   private static final Logger log = LoggerFactory.getLogger(GraphUserFinder.class);
 
-  private static final String[] SELECT = {
+  static final String[] SELECT = {
       "id",
       "displayName",
       "userPrincipalName",
@@ -26,20 +36,76 @@ public class GraphUserFinder {
       "externalUserStateChangeDateTime"
   };
 
+  // Runs the strategies of parallel resolution. Bounded: under batchsearch each of up to 64
+  // concurrent lookups would otherwise add three threads and three requests in flight.
+  private static final int RESOLVER_THREADS = 12;
+  private static final ExecutorService RESOLVERS =
+      Executors.newFixedThreadPool(RESOLVER_THREADS, BulkUserSearch.daemonThreads("graphcli-resolve-"));
+
+  // Largest $top Graph allows for users; fewer round trips when streaming everything.
+  private static final int STREAM_PAGE_SIZE = 999;
+
   private static final Pattern GUID = Pattern
       .compile("(?i)^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$");
 
-  private final GraphServiceClient graph;
+  private final Supplier<GraphServiceClient> graph;
+  private final UserLookup index;
+  private final Duration indexMaxAge;
+  private final AppConfig.Resolution resolution;
 
   public GraphUserFinder(GraphServiceClient graph) {
+    this(graph, null, null);
+  }
+
+  public GraphUserFinder(GraphServiceClient graph, UserLookup index, Duration indexMaxAge) {
+    this(graph, index, indexMaxAge, AppConfig.Resolution.sequential);
+  }
+
+  /**
+   * With an index (UserIndex or UserSnapshot), lookups are answered locally while the index is younger than indexMaxAge;
+   * Graph is only called on a miss or once the index is stale. index may be null.
+   *
+   * resolution controls how email-like queries are resolved against Graph: one strategy after
+   * another (sequential), all strategies at once (parallel, always three requests), or one
+   * merged $filter (merged). All three return the same answer.
+   */
+  public GraphUserFinder(GraphServiceClient graph, UserLookup index, Duration indexMaxAge,
+      AppConfig.Resolution resolution) {
+    this(() -> graph, index, indexMaxAge, resolution);
+  }
+
+  /** As above, but the client is only asked for (and built, see LazyGraphClient) on an index miss. */
+  public GraphUserFinder(Supplier<GraphServiceClient> graph, UserLookup index, Duration indexMaxAge,
+      AppConfig.Resolution resolution) {
     this.graph = graph;
+    this.index = index;
+    this.indexMaxAge = indexMaxAge;
+    this.resolution = resolution;
   }
 
   public List<UserSummary> find(AppConfig cfg) {
-    String q = cfg.query == null ? "" : cfg.query.trim();
+    return find(cfg.query, cfg.maxResults);
+  }
+
+  /** Safe to call from several threads at once. */
+  public List<UserSummary> find(String query, int maxResults) {
+    String q = query == null ? "" : query.trim();
     if (q.isEmpty())
       return Collections.emptyList();
 
+    if (index != null) {
+      if (index.isFresh(indexMaxAge)) {
+        List<UserSummary> hit = findInIndex(q, maxResults);
+        if (!hit.isEmpty()) {
+          log.debug("INDEX hit query='{}' count={}", q, hit.size());
+          return hit;
+        }
+        log.debug("INDEX miss query='{}'; asking Graph", q);
+      } else {
+        log.debug("INDEX stale builtAt={} maxAge={}; asking Graph", index.getBuiltAt(), indexMaxAge);
+      }
+    }
+
     // 0) GUID => try by-id first
     if (GUID.matcher(q).matches()) {
       List<UserSummary> byId = getOne(q, "AUTO: by-id");
@@ -49,33 +115,182 @@ public class GraphUserFinder {
 
     // 1) UPN/email-ish
     if (q.contains("@")) {
-      // Try direct lookup first (fast). If it 400s, fall back to filter.
-      try {
-        List<UserSummary> direct = getOne(q, "AUTO: by-UPN direct");
-        if (!direct.isEmpty())
-          return direct;
-      } catch (ApiException e) {
-        Integer status = e.getResponseStatusCode();
-        if (status != null && status == 400) {
-          log.debug("AUTO: UPN direct 400; falling back to filter. {}", e.getMessage());
-          // fall through to filters below
-        } else if (status != null && status == 404) {
-          // not found; continue to filters below (mail etc.)
-        } else {
-          throw e;
-        }
+      switch (resolution) {
+        case parallel:
+          return findEmailParallel(q, maxResults);
+        case merged:
+          return findEmailMerged(q, maxResults);
+        default:
+          return findEmailSequential(q, maxResults);
+      }
+    }
+
+    // 2) Name prefix
+    return filter(displayNameFilter(q), maxResults);
+  }
+
+  /**
+   * Like find, but delivers every match instead of the first page: a displayName prefix search
+   * walks all result pages with the SDK's PageIterator and hands each user to the consumer as
+   * it is read, so only one page is held at a time. id and email queries resolve to at most a
+   * handful of users and go through find. Stops after cap users when cap > 0.
+   *
+   * @return the number of users passed to the consumer
+   */
+  public long stream(String query, long cap, Consumer<UserSummary> consumer) {
+    String q = query == null ? "" : query.trim();
+    if (q.isEmpty())
+      return 0;
+    int limit = cap > 0 ? (int) Math.min(cap, STREAM_PAGE_SIZE) : STREAM_PAGE_SIZE;
+    if (GUID.matcher(q).matches() || q.contains("@"))
+      return forward(find(q, limit), cap, consumer);
+
+    if (index != null && index.isFresh(indexMaxAge)) {
+      int max = cap > 0 ? (int) Math.min(cap, Integer.MAX_VALUE) : Integer.MAX_VALUE;
+      List<UserSummary> hit = index.byDisplayNamePrefix(q, max);
+      if (!hit.isEmpty())
+        return forward(hit, cap, consumer);
+    }
+
+    String filter = displayNameFilter(q);
+    log.debug("AUTO: by-filter (streaming) {} cap={}", filter, cap);
+    UserCollectionResponse first = graph.get().users().get(req -> {
+      req.queryParameters.filter = filter;
+      req.queryParameters.top = limit;
+      req.queryParameters.select = SELECT;
+    });
+    if (first == null)
+      return 0;
+
+    AtomicLong delivered = new AtomicLong();
+    try {
+      PageIterator<User, UserCollectionResponse> pages = new PageIterator.Builder<User, UserCollectionResponse>()
+          .client(graph.get())
+          .collectionPage(first)
+          .collectionPageFactory(UserCollectionResponse::createFromDiscriminatorValue)
+          .processPageItemCallback(u -> {
+            consumer.accept(toSummary(u));
+            // returning false stops the iterator without fetching further pages
+            long n = delivered.incrementAndGet();
+            return cap <= 0 || n < cap;
+          })
+          .build();
+      pages.iterate();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not page through users for " + filter, e);
+    }
+    return delivered.get();
+  }
+
+  private static long forward(List<UserSummary> users, long cap, Consumer<UserSummary> consumer) {
+    long n = 0;
+    for (UserSummary u : users) {
+      if (cap > 0 && n >= cap)
+        break;
+      consumer.accept(u);
+      n++;
+    }
+    return n;
+  }
+
+  /** Direct UPN lookup, then userPrincipalName filter, then mail filter; stops at the first hit. */
+  private List<UserSummary> findEmailSequential(String q, int maxResults) {
+    List<UserSummary> direct = getByUpn(q);
+    if (!direct.isEmpty())
+      return direct;
+
+    List<UserSummary> upn = filter(upnFilter(q), maxResults);
+    if (!upn.isEmpty())
+      return upn;
+
+    return filter(mailFilter(q), maxResults);
+  }
+
+  /**
+   * Starts all three strategies at once and takes the highest-precedence one that finds
+   * something. A hit from a higher-precedence strategy wins as soon as it arrives. cancel() does
+   * not stop a Kiota call already sent, so every email query costs three Graph requests, even
+   * when the first one hits: lower latency for more load (and more throttling) on the tenant.
+   */
+  private List<UserSummary> findEmailParallel(String q, int maxResults) {
+    List<CompletableFuture<List<UserSummary>>> strategies = new ArrayList<>(3);
+    strategies.add(CompletableFuture.supplyAsync(() -> getByUpn(q), RESOLVERS));
+    strategies.add(CompletableFuture.supplyAsync(() -> filter(upnFilter(q), maxResults), RESOLVERS));
+    strategies.add(CompletableFuture.supplyAsync(() -> filter(mailFilter(q), maxResults), RESOLVERS));
+    try {
+      for (CompletableFuture<List<UserSummary>> f : strategies) {
+        List<UserSummary> hit = f.join();
+        if (!hit.isEmpty())
+          return hit;
       }
+      return Collections.emptyList();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw e;
+    } finally {
+      for (CompletableFuture<List<UserSummary>> f : strategies)
+        f.cancel(true);
+    }
+  }
 
-      String esc = escapeOData(q);
-      List<UserSummary> upn = filter("userPrincipalName eq '" + esc + "'", cfg.maxResults);
+  /**
+   * One round trip: {@code userPrincipalName eq 'q' or mail eq 'q'}, then today's precedence is
+   * applied client-side (a UPN match beats mail matches). If the page came back full without a
+   * UPN match, the UPN row may be past maxResults mail matches, so the UPN filter is asked
+   * separately before settling for the mail matches.
+   */
+  private List<UserSummary> findEmailMerged(String q, int maxResults) {
+    List<UserSummary> all = filter(upnOrMailFilter(q), maxResults);
+    List<UserSummary> upn = new ArrayList<>(1);
+    List<UserSummary> mail = new ArrayList<>();
+    for (UserSummary u : all) {
+      if (q.equalsIgnoreCase(u.getUserPrincipalName()))
+        upn.add(u);
+      else if (q.equalsIgnoreCase(u.getMail()))
+        mail.add(u);
+    }
+    if (!upn.isEmpty())
+      return upn;
+    if (all.size() >= maxResults) {
+      upn = filter(upnFilter(q), maxResults);
       if (!upn.isEmpty())
         return upn;
+    }
+    return mail;
+  }
 
-      return filter("mail eq '" + esc + "'", cfg.maxResults);
+  /** Direct GET by UPN; a 400 (e.g. some #EXT# UPNs) or 404 counts as a miss. */
+  private List<UserSummary> getByUpn(String q) {
+    try {
+      return getOne(q, "AUTO: by-UPN direct");
+    } catch (ApiException e) {
+      Integer status = e.getResponseStatusCode();
+      if (status != null && status == 400) {
+        log.debug("AUTO: UPN direct 400; falling back to filter. {}", e.getMessage());
+        return Collections.emptyList();
+      }
+      if (status != null && status == 404)
+        return Collections.emptyList();
+      throw e;
     }
+  }
 
-    // 2) Name prefix
-    return filter("startswith(displayName,'" + escapeOData(q) + "')", cfg.maxResults);
+  /** Same precedence as the Graph path: id, then UPN, then mail, else displayName prefix. */
+  private List<UserSummary> findInIndex(String q, int maxResults) {
+    if (GUID.matcher(q).matches()) {
+      List<UserSummary> byId = index.byId(q);
+      if (!byId.isEmpty())
+        return byId;
+    }
+    if (q.contains("@")) {
+      List<UserSummary> upn = index.byUpn(q);
+      if (!upn.isEmpty())
+        return upn;
+      List<UserSummary> mail = index.byMail(q);
+      return mail.size() > maxResults ? mail.subList(0, maxResults) : mail;
+    }
+    return index.byDisplayNamePrefix(q, maxResults);
   }
 
   /** Direct GET by userId (works for id, and often for UPN). */
@@ -83,7 +298,7 @@ public class GraphUserFinder {
     log.debug("{} {}", tag, userId);
 
     try {
-      User u = graph.users().byUserId(userId).get(req -> req.queryParameters.select = SELECT);
+      User u = graph.get().users().byUserId(userId).get(req -> req.queryParameters.select = SELECT);
       return u == null
           ? Collections.<UserSummary>emptyList()
           : Collections.singletonList(toSummary(u));
@@ -100,7 +315,7 @@ public class GraphUserFinder {
     log.debug("AUTO: by-filter {}", filter);
 
     // Keep the original type inference out (Java 8 has no var)
-    com.microsoft.graph.models.UserCollectionResponse page = graph.users().get(req -> {
+    com.microsoft.graph.models.UserCollectionResponse page = graph.get().users().get(req -> {
       req.queryParameters.filter = filter;
       req.queryParameters.top = maxResults;
       req.queryParameters.select = SELECT;
@@ -120,7 +335,7 @@ public class GraphUserFinder {
     return out;
   }
 
-  private static UserSummary toSummary(User u) {
+  static UserSummary toSummary(User u) {
     return new UserSummary(
         u.getId(),
         u.getDisplayName(),
@@ -132,6 +347,23 @@ public class GraphUserFinder {
         u.getExternalUserStateChangeDateTime());
   }
 
+  static String displayNameFilter(String q) {
+    return "startswith(displayName,'" + escapeOData(q) + "')";
+  }
+
+  static String upnFilter(String q) {
+    return "userPrincipalName eq '" + escapeOData(q) + "'";
+  }
+
+  static String mailFilter(String q) {
+    return "mail eq '" + escapeOData(q) + "'";
+  }
+
+  static String upnOrMailFilter(String q) {
+    String esc = escapeOData(q);
+    return "userPrincipalName eq '" + esc + "' or mail eq '" + esc + "'";
+  }
+
   private static String escapeOData(String s) {
     return s.replace("'", "''");
   }
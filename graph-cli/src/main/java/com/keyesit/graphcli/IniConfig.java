@@ -55,6 +55,15 @@ public final class IniConfig {
     return v;
   }
 
+  /** Returns value, or null if missing/blank (for optional settings). */
+  public String getOptional(String section, String key) {
+    String v = getRaw(section, key);
+    if (v == null)
+      return null;
+    v = stripQuotes(v.trim());
+    return v.trim().isEmpty() ? null : v;
+  }
+
   public boolean getBoolean(String section, String key) {
     String v = get(section, key); // required
     String t = v.trim();
@@ -0,0 +1,124 @@
+package com.keyesit.graphcli;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram in microseconds with fixed log-linear buckets: 16 per power of two,
+ * so a reported percentile is within 1/16 (6.25%) above the true value. Recording is a few shifts
+ * and three atomic updates and never allocates, so it can stay on in production; percentiles are
+ * worked out when a {@link Snapshot} is taken.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BITS = 4;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  // Values below SUB_COUNT get a bucket each; above that, SUB_COUNT buckets per power of two.
+  private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong totalMicros = new AtomicLong();
+  private final AtomicLong maxMicros = new AtomicLong();
+
+  public void recordNanos(long nanos) {
+    recordMicros(nanos / 1000L);
+  }
+
+  public void recordMicros(long micros) {
+    long v = Math.max(0, micros);
+    counts.incrementAndGet(bucket(v));
+    totalMicros.addAndGet(v);
+    long max = maxMicros.get();
+    while (v > max && !maxMicros.compareAndSet(max, v))
+      max = maxMicros.get();
+  }
+
+  static int bucket(long v) {
+    if (v < SUB_COUNT)
+      return (int) v;
+    int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+    return (shift + 1) * SUB_COUNT + (int) ((v >>> shift) - SUB_COUNT);
+  }
+
+  /** Largest value that falls in the bucket. */
+  static long upperBound(int bucket) {
+    if (bucket < SUB_COUNT)
+      return bucket;
+    int shift = bucket / SUB_COUNT - 1;
+    long top = bucket % SUB_COUNT + SUB_COUNT;
+    return ((top + 1) << shift) - 1;
+  }
+
+  public Snapshot snapshot() {
+    long[] c = new long[BUCKETS];
+    long n = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      c[i] = counts.get(i);
+      n += c[i];
+    }
+    long max = maxMicros.get();
+    return new Snapshot(n, n == 0 ? 0 : totalMicros.get() / n,
+        percentile(c, n, 0.50, max), percentile(c, n, 0.90, max), percentile(c, n, 0.99, max), max);
+  }
+
+  private static long percentile(long[] c, long n, double p, long max) {
+    if (n == 0)
+      return 0;
+    long rank = (long) Math.ceil(p * n);
+    long seen = 0;
+    for (int i = 0; i < c.length; i++) {
+      seen += c[i];
+      if (seen >= rank)
+        return Math.min(upperBound(i), max);
+    }
+    return max;
+  }
+
+  /** Point-in-time view; all values in microseconds. Getters make it a CompositeData over JMX. */
+  public static final class Snapshot {
+    private final long count;
+    private final long mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long max;
+
+    Snapshot(long count, long mean, long p50, long p90, long p99, long max) {
+      this.count = count;
+      this.mean = mean;
+      this.p50 = p50;
+      this.p90 = p90;
+      this.p99 = p99;
+      this.max = max;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getMeanMicros() {
+      return mean;
+    }
+
+    public long getP50Micros() {
+      return p50;
+    }
+
+    public long getP90Micros() {
+      return p90;
+    }
+
+    public long getP99Micros() {
+      return p99;
+    }
+
+    public long getMaxMicros() {
+      return max;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("n=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+          count, p50 / 1000.0, p90 / 1000.0, p99 / 1000.0, max / 1000.0);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.keyesit.graphcli;
+
+import com.azure.core.credential.TokenCredential;
+import com.azure.identity.ClientSecretCredentialBuilder;
+import com.microsoft.graph.core.authentication.AzureIdentityAuthenticationProvider;
+import com.microsoft.graph.serviceclient.GraphServiceClient;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * Builds the credential and GraphServiceClient on first use. Loading Azure Identity, MSAL,
+ * Kiota and OkHttp is most of a cold start, and a lookup answered from the snapshot or index
+ * never needs them. Safe to call from several threads; the client is built once.
+ *
+ * The SDK types are only named here and in the classes that make Graph calls, so GraphCli can
+ * be loaded and verified, and the config checked, without loading any of them.
+ */
+final class LazyGraphClient implements Supplier<GraphServiceClient> {
+  private final FutureTask<GraphServiceClient> build;
+
+  LazyGraphClient(Callable<GraphServiceClient> factory) {
+    this.build = new FutureTask<>(factory);
+  }
+
+  /**
+   * Client-credentials client for auth.ini, with the metrics interceptor and token meter. The
+   * metrics MBean is registered with it, since starting the platform MBean server is not free.
+   */
+  static LazyGraphClient of(AuthConfig auth, GraphMetrics metrics) {
+    return new LazyGraphClient(() -> {
+      metrics.register();
+      TokenCredential credential = new ClientSecretCredentialBuilder()
+          .tenantId(auth.tenantId)
+          .clientId(auth.clientId)
+          .clientSecret(auth.clientSecret)
+          .build();
+
+      // Optional: reuse a still-valid token from an earlier run instead of fetching a new one.
+      if (auth.tokenCacheDir != null)
+        credential = new PersistentTokenCredential(credential, auth.tokenCacheDir, auth.tenantId, auth.clientId);
+
+      // Same authentication and middleware as GraphServiceClient(credential, scopes), plus metrics.
+      GraphServiceClient graph = new GraphServiceClient(new AzureIdentityAuthenticationProvider(
+          metrics.meter(credential), new String[0], auth.scope), GraphCli.httpClient(metrics));
+      StartupTrace.mark("client");
+      return graph;
+    });
+  }
+
+  @Override
+  public GraphServiceClient get() {
+    build.run(); // no-op once started; other callers wait in get()
+    try {
+      return build.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IllegalStateException("Graph client could not be built", cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while building the Graph client", e);
+    }
+  }
+}
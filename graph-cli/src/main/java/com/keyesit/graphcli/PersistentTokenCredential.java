@@ -0,0 +1,167 @@
+package com.keyesit.graphcli;
+
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.credential.TokenRequestContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wraps a credential with an on-disk token cache so separate CLI runs reuse a still-valid token
+ * instead of each paying a round trip to the token endpoint.
+ *
+ * One file per tenant/client/scope, owner-only on POSIX. Only the access token and its expiry
+ * are stored. The auth provider asks for a token on every request, so the current token is kept
+ * in memory; the file is read only on the first call (or once the token is near expiry) and
+ * written only when a new token is fetched.
+ */
+public final class PersistentTokenCredential implements TokenCredential {
+  private static final Logger log = LoggerFactory.getLogger(PersistentTokenCredential.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  // Don't hand out a cached token that would expire mid-run.
+  private static final long EXPIRY_MARGIN_SECONDS = 120;
+
+  private final TokenCredential delegate;
+  private final Path dir;
+  private final String keyPrefix;
+  // scopes -> token currently handed out
+  private final ConcurrentMap<String, AccessToken> memory = new ConcurrentHashMap<>();
+
+  public PersistentTokenCredential(TokenCredential delegate, Path dir, String tenantId, String clientId) {
+    this.delegate = delegate;
+    this.dir = dir;
+    this.keyPrefix = tenantId + "|" + clientId;
+  }
+
+  @Override
+  public Mono<AccessToken> getToken(TokenRequestContext request) {
+    String scopes = scopesOf(request);
+    AccessToken cached = cached(scopes);
+    if (cached != null)
+      return Mono.just(cached);
+    return delegate.getToken(request).doOnNext(t -> refreshed(scopes, t));
+  }
+
+  @Override
+  public AccessToken getTokenSync(TokenRequestContext request) {
+    String scopes = scopesOf(request);
+    AccessToken cached = cached(scopes);
+    if (cached != null)
+      return cached;
+    AccessToken fresh = delegate.getTokenSync(request);
+    refreshed(scopes, fresh);
+    return fresh;
+  }
+
+  /** The in-memory token if still usable, else the file's (remembered for next time), else null. */
+  private AccessToken cached(String scopes) {
+    AccessToken token = memory.get(scopes);
+    if (token != null && usable(token.getExpiresAt().toEpochSecond()))
+      return token;
+    token = load(fileFor(scopes));
+    if (token != null)
+      memory.put(scopes, token);
+    return token;
+  }
+
+  private void refreshed(String scopes, AccessToken token) {
+    memory.put(scopes, token);
+    store(fileFor(scopes), token);
+  }
+
+  private static boolean usable(long expiresAt) {
+    return Instant.now().getEpochSecond() + EXPIRY_MARGIN_SECONDS < expiresAt;
+  }
+
+  private AccessToken load(Path file) {
+    if (!Files.isRegularFile(file))
+      return null;
+    try {
+      JsonNode json = MAPPER.readTree(Files.readAllBytes(file));
+      String token = json.path("access_token").asText(null);
+      long expiresAt = json.path("expires_at").asLong(0);
+      if (token == null || token.isEmpty())
+        return null;
+      if (!usable(expiresAt)) {
+        log.debug("TOKEN_CACHE expired file={}", file.getFileName());
+        return null;
+      }
+      log.debug("TOKEN_CACHE hit file={}", file.getFileName());
+      return new AccessToken(token, OffsetDateTime.ofInstant(Instant.ofEpochSecond(expiresAt), ZoneOffset.UTC));
+    } catch (IOException e) {
+      log.debug("TOKEN_CACHE unreadable file={} error={}", file.getFileName(), e.toString());
+      return null;
+    }
+  }
+
+  private void store(Path file, AccessToken token) {
+    try {
+      boolean posix = dir.getFileSystem().supportedFileAttributeViews().contains("posix");
+      if (!Files.isDirectory(dir)) {
+        if (posix)
+          Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        else
+          Files.createDirectories(dir);
+      }
+      FileAttribute<?>[] attrs = posix
+          ? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")) }
+          : new FileAttribute<?>[0];
+
+      String json = MAPPER.createObjectNode()
+          .put("access_token", token.getToken())
+          .put("expires_at", token.getExpiresAt().toEpochSecond())
+          .toString();
+
+      // temp file + rename so a concurrent run never reads a half-written token
+      Path tmp = Files.createTempFile(dir, "token", ".tmp", attrs);
+      try {
+        Files.write(tmp, json.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+      log.debug("TOKEN_CACHE stored file={}", file.getFileName());
+    } catch (IOException e) {
+      // cache is only an optimization; the token itself is still good
+      log.warn("TOKEN_CACHE write failed dir={} error={}", dir, e.toString());
+    }
+  }
+
+  private static String scopesOf(TokenRequestContext request) {
+    return String.join(" ", request.getScopes());
+  }
+
+  private Path fileFor(String scopes) {
+    return dir.resolve(sha256(keyPrefix + "|" + scopes) + ".json");
+  }
+
+  private static String sha256(String s) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+      StringBuilder sb = new StringBuilder(digest.length * 2);
+      for (byte b : digest)
+        sb.append(String.format("%02x", b));
+      return sb.toString();
+    } catch (Exception e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+}
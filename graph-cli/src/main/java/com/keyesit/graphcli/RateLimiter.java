@@ -0,0 +1,45 @@
+package com.keyesit.graphcli;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket shared by the worker threads of a bulk mode: callers block in acquire() so that
+ * on average no more than permitsPerSecond calls start per second, with bursts of up to one
+ * second's worth after an idle period.
+ */
+public final class RateLimiter {
+  private final double permitsPerSecond;
+  private final double nanosPerPermit;
+  private final double maxPermits;
+  private double permits;
+  private long lastRefill;
+
+  public RateLimiter(double permitsPerSecond) {
+    if (permitsPerSecond <= 0)
+      throw new IllegalArgumentException("permitsPerSecond must be positive (got " + permitsPerSecond + ")");
+    this.permitsPerSecond = permitsPerSecond;
+    this.nanosPerPermit = 1_000_000_000.0 / permitsPerSecond;
+    this.maxPermits = Math.max(1.0, permitsPerSecond);
+    this.permits = 1.0;
+    this.lastRefill = System.nanoTime();
+  }
+
+  public double getPermitsPerSecond() {
+    return permitsPerSecond;
+  }
+
+  public void acquire() throws InterruptedException {
+    long waitNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      permits = Math.min(maxPermits, permits + (now - lastRefill) / nanosPerPermit);
+      lastRefill = now;
+      // Take the permit now even if that goes into debt; the caller sleeps off the debt
+      // outside the lock, so waiting threads queue up in arrival order.
+      permits -= 1.0;
+      waitNanos = permits >= 0 ? 0 : (long) (-permits * nanosPerPermit);
+    }
+    if (waitNanos > 0)
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+  }
+}
@@ -0,0 +1,63 @@
+package com.keyesit.graphcli;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome counts and per-item latency for the batch modes, printed as the end-of-run summary.
+ * Safe to record into from several threads.
+ */
+public final class RunStats {
+  private final long startNanos = System.nanoTime();
+  private final Map<String, Integer> outcomes = new TreeMap<>();
+  private long[] latencies = new long[1024];
+  private int count;
+  private long elapsedNanos = -1;
+
+  public synchronized void record(String outcome, long latencyNanos) {
+    outcomes.merge(outcome, 1, Integer::sum);
+    if (count == latencies.length)
+      latencies = Arrays.copyOf(latencies, count * 2);
+    latencies[count++] = latencyNanos;
+  }
+
+  /** Stops the wall clock used for throughput. */
+  public synchronized void finish() {
+    if (elapsedNanos < 0)
+      elapsedNanos = System.nanoTime() - startNanos;
+  }
+
+  public synchronized int getCount() {
+    return count;
+  }
+
+  public synchronized int getCount(String outcome) {
+    Integer n = outcomes.get(outcome);
+    return n == null ? 0 : n;
+  }
+
+  /** Latency at the given percentile (0..100), in milliseconds. */
+  public synchronized double percentileMillis(double p) {
+    if (count == 0)
+      return 0;
+    long[] sorted = Arrays.copyOf(latencies, count);
+    Arrays.sort(sorted);
+    int i = (int) Math.ceil(p / 100.0 * count) - 1;
+    return sorted[Math.max(0, Math.min(count - 1, i))] / 1_000_000.0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    long elapsed = elapsedNanos >= 0 ? elapsedNanos : System.nanoTime() - startNanos;
+    double seconds = elapsed / 1_000_000_000.0;
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("Processed %d items in %.1fs (%.1f/sec)", count, seconds,
+        seconds > 0 ? count / seconds : 0.0));
+    for (Map.Entry<String, Integer> e : outcomes.entrySet())
+      sb.append(' ').append(e.getKey()).append('=').append(e.getValue());
+    sb.append(String.format("%nLatency ms: p50=%.1f p95=%.1f p99=%.1f max=%.1f",
+        percentileMillis(50), percentileMillis(95), percentileMillis(99), percentileMillis(100)));
+    return sb.toString();
+  }
+}
@@ -0,0 +1,45 @@
+package com.keyesit.graphcli;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cold-start milestones in milliseconds since main() began: config validated, logging up, Graph
+ * client built and the first request (token or Graph call) about to go out. GraphCli logs them
+ * at the end of the run. With -Dgraphcli.startupTrace=true each one is also printed to
+ * stderr as "STARTUP name ms", which StartupBenchmark reads.
+ */
+final class StartupTrace {
+  static final String PROPERTY = "graphcli.startupTrace";
+
+  private static final boolean PRINT = Boolean.getBoolean(PROPERTY);
+  private static final AtomicBoolean FIRST_REQUEST = new AtomicBoolean();
+  private static final StringBuffer MILESTONES = new StringBuffer();
+  private static volatile long start = System.nanoTime();
+
+  private StartupTrace() {
+  }
+
+  /** Call first thing in main(); milestones count from here. */
+  static void begin() {
+    start = System.nanoTime();
+  }
+
+  static void mark(String milestone) {
+    long ms = (System.nanoTime() - start) / 1_000_000L;
+    MILESTONES.append(MILESTONES.length() == 0 ? "" : " ").append(milestone).append("Ms=").append(ms);
+    if (PRINT)
+      System.err.println("STARTUP " + milestone + " " + ms);
+  }
+
+  /** Marks the first outbound request of the process; later calls cost one volatile read. */
+  static void firstRequest() {
+    if (FIRST_REQUEST.get() || !FIRST_REQUEST.compareAndSet(false, true))
+      return;
+    mark("firstRequest");
+  }
+
+  /** e.g. "configMs=14 loggingMs=230 clientMs=910 firstRequestMs=960" */
+  static String summary() {
+    return MILESTONES.toString();
+  }
+}
@@ -0,0 +1,271 @@
+package com.keyesit.graphcli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.microsoft.graph.models.User;
+import com.microsoft.graph.models.UserCollectionResponse;
+import com.microsoft.graph.serviceclient.GraphServiceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports every user to a gzip-compressed NDJSON or CSV file in constant memory.
+ *
+ * A pager thread lists the tenant 999 users at a time into a queue of a few pages, while the
+ * calling thread serializes, compresses and writes, so Graph round trips overlap with
+ * compression and disk I/O. Every checkpointPages pages the current gzip member is finished
+ * and fsynced, and the nextLink and file length are saved to {@code <output>.checkpoint}. A
+ * later run with the same output truncates the file to that length, appends a new gzip member
+ * and carries on from the saved nextLink; gzip readers treat the concatenated members as one
+ * stream. The checkpoint is deleted when the export completes.
+ *
+ * NDJSON lines use the same property names as the index file, so an export can be used as
+ * search.indexFile.
+ */
+public final class TenantExporter {
+  private static final Logger log = LoggerFactory.getLogger(TenantExporter.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final int PAGE_SIZE = 999;
+  private static final int PAGES_QUEUED = 4;
+
+  static final String CSV_HEADER = Csv.row("id", "displayName", "userPrincipalName", "mail", "userType",
+      "accountEnabled", "externalUserState", "externalUserStateChangeDateTime");
+
+  private final GraphServiceClient graph;
+  private final AppConfig.OutputFormat format;
+  private final int checkpointPages;
+
+  public TenantExporter(GraphServiceClient graph, AppConfig.OutputFormat format, int checkpointPages) {
+    this.graph = graph;
+    this.format = format;
+    this.checkpointPages = checkpointPages;
+  }
+
+  public static Path checkpointFile(Path output) {
+    return Paths.get(output.toString() + ".checkpoint");
+  }
+
+  public Result run(Path output) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    Path checkpoint = checkpointFile(output);
+    Checkpoint resume = Checkpoint.read(checkpoint);
+    if (resume != null && resume.format != format)
+      throw new IllegalStateException("Checkpoint " + checkpoint + " is for a " + resume.format
+          + " export; finish it with that format or delete the checkpoint to start over");
+
+    Path dir = output.toAbsolutePath().getParent();
+    if (dir != null)
+      Files.createDirectories(dir);
+    long users = resume == null ? 0 : resume.users;
+    int pages = resume == null ? 0 : resume.pages;
+    BlockingQueue<Page> queue = new ArrayBlockingQueue<>(PAGES_QUEUED);
+    ExecutorService pager = Executors.newSingleThreadExecutor(BulkUserSearch.daemonThreads("graphcli-export-"));
+    try (FileChannel ch = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      // drop whatever was written after the last checkpoint
+      ch.truncate(resume == null ? 0 : resume.bytes);
+      ch.position(ch.size());
+      if (resume != null)
+        log.info("EXPORT resuming file={} users={} bytes={}", output, users, resume.bytes);
+
+      String startLink = resume == null ? null : resume.nextLink;
+      pager.execute(() -> page(startLink, queue));
+
+      OutputStream disk = new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16);
+      Member member = new Member(disk);
+      if (resume == null && format == AppConfig.OutputFormat.csv)
+        member.line(CSV_HEADER);
+
+      while (true) {
+        Page page = queue.take();
+        if (page.error != null)
+          throw new IllegalStateException("Export stopped after " + users + " users; run again to resume", page.error);
+        for (UserSummary u : page.users)
+          member.line(format == AppConfig.OutputFormat.ndjson ? UserIndex.toJson(u).toString() : csv(u));
+        users += page.users.size();
+        pages++;
+
+        if (page.nextLink == null) {
+          member.finish();
+          disk.flush();
+          ch.force(false);
+          break;
+        }
+        if (pages % checkpointPages == 0) {
+          member.finish();
+          disk.flush();
+          ch.force(false);
+          new Checkpoint(format, page.nextLink, ch.size(), users, pages).write(checkpoint);
+          log.info("EXPORT checkpoint users={} pages={} bytes={}", users, pages, ch.size());
+          member = new Member(disk);
+        }
+      }
+    } finally {
+      pager.shutdownNow();
+    }
+    Files.deleteIfExists(checkpoint);
+    return new Result(users, pages, Files.size(output), resume != null, (System.nanoTime() - start) / 1_000_000L);
+  }
+
+  /** Pager thread: lists users from the start or from a saved nextLink into the queue. */
+  private void page(String nextLink, BlockingQueue<Page> queue) {
+    try {
+      UserCollectionResponse resp = nextLink == null
+          ? graph.users().get(req -> {
+              req.queryParameters.select = GraphUserFinder.SELECT;
+              req.queryParameters.top = PAGE_SIZE;
+            })
+          : graph.users().withUrl(nextLink).get();
+      while (true) {
+        List<UserSummary> users = new ArrayList<>(PAGE_SIZE);
+        if (resp != null && resp.getValue() != null) {
+          for (User u : resp.getValue())
+            users.add(GraphUserFinder.toSummary(u));
+        }
+        String next = resp == null ? null : resp.getOdataNextLink();
+        queue.put(new Page(users, next, null));
+        if (next == null)
+          return;
+        resp = graph.users().withUrl(next).get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      log.warn("EXPORT paging failed error={}", e.toString());
+      try {
+        queue.put(new Page(null, null, e));
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static String csv(UserSummary u) {
+    return Csv.row(u.getId(), u.getDisplayName(), u.getUserPrincipalName(), u.getMail(), u.getUserType(),
+        u.getAccountEnabled(), u.getExternalUserState(), u.getExternalUserStateChangeDateTime());
+  }
+
+  /** One gzip member. Finishing it leaves the file stream open for the next member. */
+  private static final class Member {
+    private final Writer out;
+
+    Member(OutputStream disk) throws IOException {
+      // closing the gzip stream must release its Deflater without closing the file
+      GZIPOutputStream gzip = new GZIPOutputStream(new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          disk.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          disk.write(b, off, len);
+        }
+      }, 1 << 16);
+      this.out = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    void line(String s) throws IOException {
+      out.write(s);
+      out.write('\n');
+    }
+
+    void finish() throws IOException {
+      out.close();
+    }
+  }
+
+  private static final class Page {
+    final List<UserSummary> users;
+    final String nextLink;
+    final Exception error;
+
+    Page(List<UserSummary> users, String nextLink, Exception error) {
+      this.users = users;
+      this.nextLink = nextLink;
+      this.error = error;
+    }
+  }
+
+  /** Saved progress: where to continue paging and how much of the file is complete. */
+  static final class Checkpoint {
+    final AppConfig.OutputFormat format;
+    final String nextLink;
+    final long bytes;
+    final long users;
+    final int pages;
+
+    Checkpoint(AppConfig.OutputFormat format, String nextLink, long bytes, long users, int pages) {
+      this.format = format;
+      this.nextLink = nextLink;
+      this.bytes = bytes;
+      this.users = users;
+      this.pages = pages;
+    }
+
+    static Checkpoint read(Path file) throws IOException {
+      if (!Files.isRegularFile(file))
+        return null;
+      JsonNode n = MAPPER.readTree(file.toFile());
+      return new Checkpoint(AppConfig.OutputFormat.valueOf(n.path("format").asText()), n.path("nextLink").asText(),
+          n.path("bytes").asLong(), n.path("users").asLong(), n.path("pages").asInt());
+    }
+
+    void write(Path file) throws IOException {
+      ObjectNode n = MAPPER.createObjectNode();
+      n.put("format", format.name());
+      n.put("nextLink", nextLink);
+      n.put("bytes", bytes);
+      n.put("users", users);
+      n.put("pages", pages);
+      Path tmp = Paths.get(file.toString() + ".tmp");
+      Files.write(tmp, MAPPER.writeValueAsBytes(n));
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  public static final class Result {
+    public final long users;
+    public final int pages;
+    public final long bytes;
+    public final boolean resumed;
+    public final long elapsedMillis;
+
+    Result(long users, int pages, long bytes, boolean resumed, long elapsedMillis) {
+      this.users = users;
+      this.pages = pages;
+      this.bytes = bytes;
+      this.resumed = resumed;
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+      return "Exported " + users + " users in " + pages + " pages (" + bytes + " bytes compressed"
+          + (resumed ? ", resumed from checkpoint" : "") + ") in " + elapsedMillis + " ms.";
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.keyesit.graphcli;
+
+import com.microsoft.graph.models.Invitation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The single-user commands (search, delete, invite) with their console output, shared by the
+ * one-shot modes in {@link GraphCli} and by {@link GraphCliDaemon}, which writes the same text
+ * back to {@link GraphCliClient}.
+ */
+final class UserCommands {
+  private static final Logger log = LoggerFactory.getLogger(UserCommands.class);
+
+  private UserCommands() {
+  }
+
+  static void search(GraphUserFinder finder, String query, int maxResults, PrintStream out) {
+    List<UserSummary> users = finder.find(query, maxResults);
+    printCandidates(out, users);
+    log.debug("RESULT searchCount={}", users.size());
+  }
+
+  static void invite(GraphGuestInviter inviter, String email, String redirectUrl, boolean sendMsg, PrintStream out) {
+    out.println("=== Execution Plan ===");
+    out.println("Action: CREATE guest invitation");
+    out.println("  email: " + email);
+    out.println("  redirectUrl: " + redirectUrl);
+    out.println("  sendInvitationMessage: " + sendMsg);
+    out.println("======================");
+    Invitation created = inviter.invite(email, redirectUrl, sendMsg);
+    out.println("Invitation created.");
+    out.println("- invitedUserEmailAddress = "
+        + safe(created.getInvitedUserEmailAddress()));
+
+    if (created.getInvitedUser() != null) {
+      out.println("- invitedUserId = "
+          + safe(created.getInvitedUser().getId()));
+    } else {
+      out.println("- invitedUserId = (not returned yet)");
+      out.println("- invitedUserDisplayName = (not returned yet)");
+    }
+    out.println("======== INVITE =========");
+    out.println(safe(created.getInviteRedeemUrl()));
+    out.println("=========================");
+  }
+
+  /** Deletes only when the query matches exactly one user. Returns the process exit code. */
+  static int delete(GraphUserFinder finder, GraphUserDeleter deleter, String query, int maxResults, PrintStream out) {
+    return delete(finder, deleter, query, maxResults, out, u -> { });
+  }
+
+  /** As above; onDeleted is told about the user once Graph has deleted it. */
+  static int delete(GraphUserFinder finder, GraphUserDeleter deleter, String query, int maxResults, PrintStream out,
+      Consumer<UserSummary> onDeleted) {
+    List<UserSummary> matches = finder.find(query, maxResults);
+
+    if (matches.isEmpty()) {
+      out.println("No user found. No changes made.");
+      log.debug("MATCH count=0");
+      return 0;
+    }
+
+    if (matches.size() > 1) {
+      out.println("Multiple users matched; refusing to delete. No changes made.");
+      printCandidates(out, matches);
+      log.debug("MATCH count={} refusingToProceed=true", matches.size());
+      return 0;
+    }
+
+    UserSummary target = matches.get(0);
+    try {
+      deleter.deleteById(target.getId());
+      onDeleted.accept(target);
+      out.println("Delete completed.");
+      log.warn("RESULT status=SUCCESS deletedUserId={}", safe(target.getId()));
+      return 0;
+    } catch (Exception e) {
+      out.println("Delete failed. No changes made beyond attempted delete.");
+      out.println("ERROR: " + e.getMessage());
+      log.error("RESULT status=FAILED deletedUserId={} error={}", safe(target.getId()), e.toString(), e);
+      return 3;
+    }
+  }
+
+  static void printCandidates(PrintStream out, List<UserSummary> users) {
+    out.println("========");
+    out.println("Matches: " + users.size());
+    for (UserSummary u : users)
+      printCandidate(out, u);
+  }
+
+  static void printCandidate(PrintStream out, UserSummary u) {
+    out.println("========");
+    StringBuilder sb = new StringBuilder(safe("id = " + u.getId() + "\n"));
+    sb.append("name = " + u.getDisplayName() + "\n");
+    sb.append("upn = " + u.getUserPrincipalName() + "\n");
+    sb.append("mail = " + u.getMail() + "\n");
+    sb.append("userType = " + u.getUserType() + "\n");
+    if (u.getExternalUserState() != null) {
+      sb.append("InviteState = " + u.getExternalUserState() + "\n");
+    }
+    sb.append("acountEnabled = " + u.getAccountEnabled());
+    out.println(sb);
+  }
+
+  private static String safe(String s) {
+    return (s == null) ? "" : s;
+  }
+}
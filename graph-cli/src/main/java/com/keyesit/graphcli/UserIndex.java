@@ -0,0 +1,240 @@
+package com.keyesit.graphcli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.microsoft.graph.models.User;
+import com.microsoft.graph.models.UserCollectionResponse;
+import com.microsoft.graph.serviceclient.GraphServiceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-memory index of the directory so GraphUserFinder can answer lookups without a Graph call.
+ *
+ * id, UPN and mail are hash lookups (UPN and mail case-insensitive); displayName prefix
+ * searches walk a sorted map of lowercased names. Built from Graph, or loaded from an NDJSON
+ * export (one Graph user object per line, in Graph property names). Export lines marked
+ * {@code @removed}, as in a delta query response, remove that user, so a full export followed
+ * by delta exports can be loaded from a single file.
+ */
+public final class UserIndex implements UserLookup {
+  private static final Logger log = LoggerFactory.getLogger(UserIndex.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final Map<String, UserSummary> byId = new LinkedHashMap<>();
+  private final Map<String, UserSummary> byUpn = new HashMap<>();
+  private final Map<String, List<UserSummary>> byMail = new HashMap<>();
+  private final TreeMap<String, List<UserSummary>> byName = new TreeMap<>();
+  private final Instant builtAt;
+
+  private UserIndex(Instant builtAt) {
+    this.builtAt = builtAt;
+  }
+
+  /** Lists every user in the tenant. */
+  public static UserIndex fromGraph(GraphServiceClient graph) {
+    UserIndex index = new UserIndex(Instant.now());
+    UserCollectionResponse page = graph.users().get(req -> {
+      req.queryParameters.select = GraphUserFinder.SELECT;
+      req.queryParameters.top = 999;
+    });
+    int pages = 0;
+    while (page != null) {
+      pages++;
+      if (page.getValue() != null) {
+        for (User u : page.getValue())
+          index.put(GraphUserFinder.toSummary(u));
+      }
+      String next = page.getOdataNextLink();
+      if (next == null)
+        break;
+      page = graph.users().withUrl(next).get();
+    }
+    log.debug("INDEX built from Graph users={} pages={}", index.size(), pages);
+    return index;
+  }
+
+  /**
+   * Loads an NDJSON export, gzip-compressed if the name ends in .gz. The file's modification
+   * time is taken as the index age.
+   */
+  public static UserIndex load(Path file) throws IOException {
+    UserIndex index = new UserIndex(Files.getLastModifiedTime(file).toInstant());
+    try (BufferedReader r = openExport(file)) {
+      String line;
+      while ((line = r.readLine()) != null) {
+        if (line.trim().isEmpty())
+          continue;
+        JsonNode n = MAPPER.readTree(line);
+        String id = n.path("id").asText(null);
+        if (id == null)
+          continue; // header or other non-user line
+        if (n.has("@removed"))
+          index.remove(id);
+        else
+          index.put(fromJson(n));
+      }
+    }
+    log.debug("INDEX loaded file={} users={} builtAt={}", file, index.size(), index.builtAt);
+    return index;
+  }
+
+  static BufferedReader openExport(Path file) throws IOException {
+    InputStream in = Files.newInputStream(file);
+    if (file.getFileName().toString().endsWith(".gz"))
+      in = new GZIPInputStream(in, 1 << 16);
+    return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+  }
+
+  /** Writes the index as an NDJSON export (temp file + rename). */
+  public void save(Path file) throws IOException {
+    Path dir = file.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    Path tmp = Files.createTempFile(dir, "users", ".tmp");
+    try {
+      try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+        for (UserSummary u : byId.values()) {
+          w.write(toJson(u).toString());
+          w.write('\n');
+        }
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  @Override
+  public int size() {
+    return byId.size();
+  }
+
+  @Override
+  public Instant getBuiltAt() {
+    return builtAt;
+  }
+
+  @Override
+  public List<UserSummary> byId(String id) {
+    return one(byId.get(key(id)));
+  }
+
+  @Override
+  public List<UserSummary> byUpn(String upn) {
+    return one(byUpn.get(key(upn)));
+  }
+
+  @Override
+  public List<UserSummary> byMail(String mail) {
+    List<UserSummary> hits = byMail.get(key(mail));
+    return hits == null ? Collections.<UserSummary>emptyList() : hits;
+  }
+
+  @Override
+  public List<UserSummary> byDisplayNamePrefix(String prefix, int maxResults) {
+    String from = key(prefix);
+    List<UserSummary> out = new ArrayList<>();
+    for (Map.Entry<String, List<UserSummary>> e : byName.tailMap(from, true).entrySet()) {
+      if (!e.getKey().startsWith(from))
+        break;
+      for (UserSummary u : e.getValue()) {
+        out.add(u);
+        if (out.size() >= maxResults)
+          return out;
+      }
+    }
+    return out;
+  }
+
+  private void put(UserSummary u) {
+    if (u.getId() == null)
+      return;
+    remove(u.getId());
+    byId.put(key(u.getId()), u);
+    if (u.getUserPrincipalName() != null)
+      byUpn.put(key(u.getUserPrincipalName()), u);
+    if (u.getMail() != null)
+      byMail.computeIfAbsent(key(u.getMail()), k -> new ArrayList<>(1)).add(u);
+    if (u.getDisplayName() != null)
+      byName.computeIfAbsent(key(u.getDisplayName()), k -> new ArrayList<>(1)).add(u);
+  }
+
+  private void remove(String id) {
+    UserSummary old = byId.remove(key(id));
+    if (old == null)
+      return;
+    if (old.getUserPrincipalName() != null)
+      byUpn.remove(key(old.getUserPrincipalName()), old);
+    if (old.getMail() != null)
+      removeFrom(byMail, key(old.getMail()), old);
+    if (old.getDisplayName() != null)
+      removeFrom(byName, key(old.getDisplayName()), old);
+  }
+
+  private static void removeFrom(Map<String, List<UserSummary>> map, String k, UserSummary u) {
+    List<UserSummary> list = map.get(k);
+    if (list == null)
+      return;
+    list.remove(u);
+    if (list.isEmpty())
+      map.remove(k);
+  }
+
+  private static List<UserSummary> one(UserSummary u) {
+    return u == null ? Collections.<UserSummary>emptyList() : Collections.singletonList(u);
+  }
+
+  private static String key(String s) {
+    return s.trim().toLowerCase(Locale.ROOT);
+  }
+
+  static UserSummary fromJson(JsonNode n) {
+    JsonNode enabled = n.path("accountEnabled");
+    String changed = n.path("externalUserStateChangeDateTime").asText(null);
+    return new UserSummary(
+        n.path("id").asText(null),
+        n.path("displayName").asText(null),
+        n.path("userPrincipalName").asText(null),
+        n.path("mail").asText(null),
+        n.path("userType").asText(null),
+        enabled.isBoolean() ? enabled.asBoolean() : null,
+        n.path("externalUserState").asText(null),
+        changed == null ? null : OffsetDateTime.parse(changed));
+  }
+
+  static ObjectNode toJson(UserSummary u) {
+    ObjectNode n = MAPPER.createObjectNode();
+    n.put("id", u.getId());
+    n.put("displayName", u.getDisplayName());
+    n.put("userPrincipalName", u.getUserPrincipalName());
+    n.put("mail", u.getMail());
+    n.put("userType", u.getUserType());
+    n.put("accountEnabled", u.getAccountEnabled());
+    n.put("externalUserState", u.getExternalUserState());
+    n.put("externalUserStateChangeDateTime",
+        u.getExternalUserStateChangeDateTime() == null ? null : u.getExternalUserStateChangeDateTime().toString());
+    return n;
+  }
+}
@@ -0,0 +1,30 @@
+package com.keyesit.graphcli;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Local source of users that GraphUserFinder can answer from instead of Graph: the NDJSON
+ * {@link UserIndex} or the memory-mapped {@link UserSnapshot}. Key lookups are case-insensitive
+ * except by id.
+ */
+public interface UserLookup {
+
+  int size();
+
+  Instant getBuiltAt();
+
+  default boolean isFresh(Duration maxAge) {
+    return Duration.between(getBuiltAt(), Instant.now()).compareTo(maxAge) <= 0;
+  }
+
+  List<UserSummary> byId(String id);
+
+  List<UserSummary> byUpn(String upn);
+
+  List<UserSummary> byMail(String mail);
+
+  /** Users whose displayName starts with the prefix, up to maxResults, by name. */
+  List<UserSummary> byDisplayNamePrefix(String prefix, int maxResults);
+}
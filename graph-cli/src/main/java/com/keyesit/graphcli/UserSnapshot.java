@@ -0,0 +1,543 @@
+package com.keyesit.graphcli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Read-only binary snapshot of the directory, opened through a MappedByteBuffer.
+ *
+ * Opening reads only the header and the small value dictionary, so a snapshot of hundreds of
+ * thousands of users is usable in milliseconds; records are decoded only when a lookup or scan
+ * touches them. Lookups by id binary-search a sorted id index; UPN, mail and displayName
+ * lookups binary-search sorted lowercase key indexes, comparing UTF-8 bytes in place.
+ *
+ * <pre>
+ * header   magic "USNP", u16 version, u16 0, i64 builtAt millis, i32 count, i32 0,
+ *          then i64 file offsets of: dictionary, records table, id index, upn index,
+ *          mail index, name index, heap; then i64 heap length
+ * dict     i32 n, then n x (u16 length, UTF-8)          userType/externalUserState values
+ * records  count x i32                                 record offset in the heap
+ * id       count x i32                                 record numbers sorted by id
+ * upn      i32 n, then n x (i32 key offset, i32 record)  sorted by lowercase key bytes
+ * mail     same as upn
+ * name     same as upn
+ * heap     records, then keys
+ * record   i64 id high, i64 id low, u8 flags (1 enabled known, 2 enabled, 4 has time),
+ *          u8 userType code, u8 externalUserState code (0 = null), [i64 time millis],
+ *          displayName, userPrincipalName, mail as (varint length + 1, UTF-8), 0 = null
+ * key      varint length, UTF-8
+ * </pre>
+ *
+ * All integers are big-endian. Files are written to a temp file and renamed, so readers never
+ * see a partial snapshot. Limited to 2 GB, the largest single mapping.
+ */
+public final class UserSnapshot implements UserLookup, UserTable {
+  private static final Logger log = LoggerFactory.getLogger(UserSnapshot.class);
+
+  private static final int MAGIC = 0x55534E50; // "USNP"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 88;
+
+  private static final int ENABLED_KNOWN = 1;
+  private static final int ENABLED = 2;
+  private static final int HAS_TIME = 4;
+
+  private final ByteBuffer buf;
+  private final Instant builtAt;
+  private final int count;
+  private final String[] dictionary;
+  private final int records;
+  private final int ids;
+  private final int upns;
+  private final int mails;
+  private final int names;
+  private final int heap;
+
+  private UserSnapshot(ByteBuffer buf) throws IOException {
+    this.buf = buf;
+    if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC)
+      throw new IOException("Not a user snapshot");
+    int version = buf.getShort(4) & 0xFFFF;
+    if (version != VERSION)
+      throw new IOException("Unsupported user snapshot version " + version + " (expected " + VERSION + ")");
+    this.builtAt = Instant.ofEpochMilli(buf.getLong(8));
+    this.count = buf.getInt(16);
+    int dict = section(24);
+    this.records = section(32);
+    this.ids = section(40);
+    this.upns = section(48);
+    this.mails = section(56);
+    this.names = section(64);
+    this.heap = section(72);
+    if ((long) heap + buf.getLong(80) != buf.capacity())
+      throw new IOException("Truncated user snapshot");
+
+    int n = buf.getInt(dict);
+    dictionary = new String[n + 1];
+    int p = dict + 4;
+    for (int i = 1; i <= n; i++) {
+      int len = buf.getShort(p) & 0xFFFF;
+      dictionary[i] = utf8(p + 2, len);
+      p += 2 + len;
+    }
+  }
+
+  /** Maps a snapshot file. The mapping stays valid after the channel is closed. */
+  public static UserSnapshot open(Path file) throws IOException {
+    long start = System.nanoTime();
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (ch.size() > Integer.MAX_VALUE)
+        throw new IOException("User snapshot larger than 2 GB: " + file);
+      MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+      UserSnapshot s = new UserSnapshot(mapped);
+      log.debug("SNAPSHOT opened file={} users={} builtAt={} elapsedUs={}", file, s.count, s.builtAt,
+          (System.nanoTime() - start) / 1000);
+      return s;
+    }
+  }
+
+  /**
+   * Writes users as a snapshot (temp file + rename). Users are encoded in memory first, then
+   * written front to back in one pass.
+   */
+  public static void write(Iterable<UserSummary> users, Instant builtAt, Path file) throws IOException {
+    Writer w = new Writer();
+    for (UserSummary u : users)
+      w.add(u);
+    Path dir = file.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    Path tmp = Files.createTempFile(dir, "users", ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+        w.writeTo(out, builtAt);
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  // ---------- UserLookup ----------
+
+  @Override
+  public int size() {
+    return count;
+  }
+
+  @Override
+  public Instant getBuiltAt() {
+    return builtAt;
+  }
+
+  @Override
+  public List<UserSummary> byId(String id) {
+    int row = rowOf(id);
+    return row < 0 ? Collections.<UserSummary>emptyList() : Collections.singletonList(view(row));
+  }
+
+  @Override
+  public List<UserSummary> byUpn(String upn) {
+    return exact(upns, upn, 1);
+  }
+
+  @Override
+  public List<UserSummary> byMail(String mail) {
+    return exact(mails, mail, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public List<UserSummary> byDisplayNamePrefix(String prefix, int maxResults) {
+    byte[] key = key(prefix);
+    int n = buf.getInt(names);
+    List<UserSummary> out = new ArrayList<>();
+    for (int i = lowerBound(names, key); i < n && out.size() < maxResults; i++) {
+      if (!keyStartsWith(names, i, key))
+        break;
+      out.add(view(buf.getInt(names + 4 + 8 * i + 4)));
+    }
+    return out;
+  }
+
+  /** Row of the user with this id, or -1. */
+  public int rowOf(String id) {
+    UUID uuid;
+    try {
+      uuid = UUID.fromString(id.trim());
+    } catch (IllegalArgumentException e) {
+      return -1;
+    }
+    long hi = uuid.getMostSignificantBits();
+    long lo = uuid.getLeastSignificantBits();
+    int low = 0;
+    int high = count - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int rec = buf.getInt(ids + 4 * mid);
+      int at = recordAt(rec);
+      int c = compareId(buf.getLong(at), buf.getLong(at + 8), hi, lo);
+      if (c < 0)
+        low = mid + 1;
+      else if (c > 0)
+        high = mid - 1;
+      else
+        return rec;
+    }
+    return -1;
+  }
+
+  // ---------- UserTable ----------
+
+  @Override
+  public int rows() {
+    return count;
+  }
+
+  @Override
+  public boolean isLive(int row) {
+    return true;
+  }
+
+  @Override
+  public String userType(int row) {
+    return dictionary[buf.get(recordAt(row) + 17) & 0xFF];
+  }
+
+  @Override
+  public String externalUserState(int row) {
+    return dictionary[buf.get(recordAt(row) + 18) & 0xFF];
+  }
+
+  @Override
+  public Boolean accountEnabled(int row) {
+    int flags = buf.get(recordAt(row) + 16);
+    if ((flags & ENABLED_KNOWN) == 0)
+      return null;
+    return (flags & ENABLED) != 0 ? Boolean.TRUE : Boolean.FALSE;
+  }
+
+  @Override
+  public long externalUserStateChangeMillis(int row) {
+    int at = recordAt(row);
+    return (buf.get(at + 16) & HAS_TIME) == 0 ? Long.MIN_VALUE : buf.getLong(at + 19);
+  }
+
+  /** Decodes one record. */
+  @Override
+  public UserSummary view(int row) {
+    int at = recordAt(row);
+    String id = new UUID(buf.getLong(at), buf.getLong(at + 8)).toString();
+    int flags = buf.get(at + 16);
+    String userType = dictionary[buf.get(at + 17) & 0xFF];
+    String state = dictionary[buf.get(at + 18) & 0xFF];
+    int p = at + 19;
+    OffsetDateTime changed = null;
+    if ((flags & HAS_TIME) != 0) {
+      changed = OffsetDateTime.ofInstant(Instant.ofEpochMilli(buf.getLong(p)), ZoneOffset.UTC);
+      p += 8;
+    }
+    String[] s = new String[3];
+    for (int i = 0; i < 3; i++) {
+      int h = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = buf.get(p++);
+        h |= (b & 0x7F) << shift;
+        if (b >= 0)
+          break;
+      }
+      if (h > 0) {
+        s[i] = utf8(p, h - 1);
+        p += h - 1;
+      }
+    }
+    Boolean enabled = (flags & ENABLED_KNOWN) == 0 ? null : (flags & ENABLED) != 0;
+    return new UserSummary(id, s[0], s[1], s[2], userType, enabled, state, changed);
+  }
+
+  // ---------- internals ----------
+
+  private int section(int headerAt) throws IOException {
+    long off = buf.getLong(headerAt);
+    if (off < HEADER_SIZE || off > buf.capacity())
+      throw new IOException("Corrupt user snapshot header");
+    return (int) off;
+  }
+
+  private int recordAt(int row) {
+    return heap + buf.getInt(records + 4 * row);
+  }
+
+  private List<UserSummary> exact(int index, String value, int max) {
+    byte[] key = key(value);
+    int n = buf.getInt(index);
+    List<UserSummary> out = new ArrayList<>(1);
+    for (int i = lowerBound(index, key); i < n && out.size() < max; i++) {
+      if (compareKey(index, i, key) != 0)
+        break;
+      out.add(view(buf.getInt(index + 4 + 8 * i + 4)));
+    }
+    return out;
+  }
+
+  /** First entry whose key is >= the given key. */
+  private int lowerBound(int index, byte[] key) {
+    int low = 0;
+    int high = buf.getInt(index);
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compareKey(index, mid, key) < 0)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
+  /** Compares entry i's key with the given key, bytewise unsigned. */
+  private int compareKey(int index, int i, byte[] key) {
+    int p = heap + buf.getInt(index + 4 + 8 * i);
+    int len = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = buf.get(p++);
+      len |= (b & 0x7F) << shift;
+      if (b >= 0)
+        break;
+    }
+    int n = Math.min(len, key.length);
+    for (int j = 0; j < n; j++) {
+      int c = (buf.get(p + j) & 0xFF) - (key[j] & 0xFF);
+      if (c != 0)
+        return c;
+    }
+    return len - key.length;
+  }
+
+  private boolean keyStartsWith(int index, int i, byte[] prefix) {
+    int p = heap + buf.getInt(index + 4 + 8 * i);
+    int len = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = buf.get(p++);
+      len |= (b & 0x7F) << shift;
+      if (b >= 0)
+        break;
+    }
+    if (len < prefix.length)
+      return false;
+    for (int j = 0; j < prefix.length; j++) {
+      if (buf.get(p + j) != prefix[j])
+        return false;
+    }
+    return true;
+  }
+
+  private String utf8(int at, int len) {
+    byte[] b = new byte[len];
+    ByteBuffer d = buf.duplicate();
+    d.position(at);
+    d.get(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  private static byte[] key(String s) {
+    return s.trim().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static int compareId(long hi1, long lo1, long hi2, long lo2) {
+    int c = Long.compare(hi1, hi2);
+    return c != 0 ? c : Long.compare(lo1, lo2);
+  }
+
+  private static int compareBytes(byte[] a, byte[] b) {
+    int n = Math.min(a.length, b.length);
+    for (int i = 0; i < n; i++) {
+      int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+      if (c != 0)
+        return c;
+    }
+    return a.length - b.length;
+  }
+
+  /** Encodes records into an in-memory heap and builds the sorted indexes. */
+  private static final class Writer {
+    private final ByteArrayOutputStream heap = new ByteArrayOutputStream(1 << 20);
+    private final DataOutputStream heapOut = new DataOutputStream(heap);
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+    private int[] offsets = new int[1024];
+    private long[] idHi = new long[1024];
+    private long[] idLo = new long[1024];
+    private final List<Key> upnKeys = new ArrayList<>();
+    private final List<Key> mailKeys = new ArrayList<>();
+    private final List<Key> nameKeys = new ArrayList<>();
+    private final Map<UUID, Integer> seen = new HashMap<>();
+    private int count;
+
+    void add(UserSummary u) throws IOException {
+      UUID id = UUID.fromString(u.getId());
+      if (seen.put(id, count) != null)
+        throw new IllegalArgumentException("Duplicate user id in snapshot: " + u.getId());
+      if (count == offsets.length) {
+        offsets = Arrays.copyOf(offsets, count * 2);
+        idHi = Arrays.copyOf(idHi, count * 2);
+        idLo = Arrays.copyOf(idLo, count * 2);
+      }
+      offsets[count] = heapOut.size();
+      idHi[count] = id.getMostSignificantBits();
+      idLo[count] = id.getLeastSignificantBits();
+
+      int flags = 0;
+      if (u.getAccountEnabled() != null)
+        flags |= ENABLED_KNOWN | (u.getAccountEnabled() ? ENABLED : 0);
+      if (u.getExternalUserStateChangeDateTime() != null)
+        flags |= HAS_TIME;
+      heapOut.writeLong(idHi[count]);
+      heapOut.writeLong(idLo[count]);
+      heapOut.writeByte(flags);
+      heapOut.writeByte(code(u.getUserType()));
+      heapOut.writeByte(code(u.getExternalUserState()));
+      if ((flags & HAS_TIME) != 0)
+        heapOut.writeLong(u.getExternalUserStateChangeDateTime().toInstant().toEpochMilli());
+      writeString(u.getDisplayName());
+      writeString(u.getUserPrincipalName());
+      writeString(u.getMail());
+
+      addKey(upnKeys, u.getUserPrincipalName());
+      addKey(mailKeys, u.getMail());
+      addKey(nameKeys, u.getDisplayName());
+      count++;
+    }
+
+    void writeTo(DataOutputStream out, Instant builtAt) throws IOException {
+      // keys go into the heap after the records
+      for (List<Key> keys : Arrays.asList(upnKeys, mailKeys, nameKeys)) {
+        keys.sort(Comparator.comparing((Key k) -> k.bytes, UserSnapshot::compareBytes));
+        for (Key k : keys) {
+          k.offset = heapOut.size();
+          writeVarint(k.bytes.length);
+          heapOut.write(k.bytes);
+        }
+      }
+      byte[] heapBytes = heap.toByteArray();
+
+      Integer[] byId = new Integer[count];
+      for (int i = 0; i < count; i++)
+        byId[i] = i;
+      Arrays.sort(byId, (a, b) -> compareId(idHi[a], idLo[a], idHi[b], idLo[b]));
+
+      ByteArrayOutputStream dictBytes = new ByteArrayOutputStream();
+      DataOutputStream dictOut = new DataOutputStream(dictBytes);
+      dictOut.writeInt(dictionary.size());
+      for (String v : dictionary) {
+        byte[] b = v.getBytes(StandardCharsets.UTF_8);
+        dictOut.writeShort(b.length);
+        dictOut.write(b);
+      }
+
+      long dict = HEADER_SIZE;
+      long recs = dict + dictBytes.size();
+      long idIndex = recs + 4L * count;
+      long upn = idIndex + 4L * count;
+      long mail = upn + 4 + 8L * upnKeys.size();
+      long name = mail + 4 + 8L * mailKeys.size();
+      long heapAt = name + 4 + 8L * nameKeys.size();
+      if (heapAt + heapBytes.length > Integer.MAX_VALUE)
+        throw new IOException("User snapshot would exceed 2 GB");
+
+      out.writeInt(MAGIC);
+      out.writeShort(VERSION);
+      out.writeShort(0);
+      out.writeLong(builtAt.toEpochMilli());
+      out.writeInt(count);
+      out.writeInt(0);
+      for (long off : new long[] {dict, recs, idIndex, upn, mail, name, heapAt})
+        out.writeLong(off);
+      out.writeLong(heapBytes.length);
+
+      dictBytes.writeTo(out);
+      for (int i = 0; i < count; i++)
+        out.writeInt(offsets[i]);
+      for (Integer i : byId)
+        out.writeInt(i);
+      for (List<Key> keys : Arrays.asList(upnKeys, mailKeys, nameKeys)) {
+        out.writeInt(keys.size());
+        for (Key k : keys) {
+          out.writeInt(k.offset);
+          out.writeInt(k.record);
+        }
+      }
+      out.write(heapBytes);
+    }
+
+    private int code(String value) {
+      if (value == null)
+        return 0;
+      Integer c = codes.get(value);
+      if (c == null) {
+        if (dictionary.size() == 255)
+          throw new IllegalArgumentException("More than 255 distinct userType/externalUserState values");
+        dictionary.add(value);
+        c = dictionary.size();
+        codes.put(value, c);
+      }
+      return c;
+    }
+
+    private void writeString(String s) throws IOException {
+      if (s == null) {
+        writeVarint(0);
+        return;
+      }
+      byte[] b = s.getBytes(StandardCharsets.UTF_8);
+      writeVarint(b.length + 1);
+      heapOut.write(b);
+    }
+
+    private void writeVarint(int v) throws IOException {
+      while ((v & ~0x7F) != 0) {
+        heapOut.writeByte((v & 0x7F) | 0x80);
+        v >>>= 7;
+      }
+      heapOut.writeByte(v);
+    }
+
+    private void addKey(List<Key> keys, String value) {
+      if (value != null)
+        keys.add(new Key(key(value), count));
+    }
+  }
+
+  private static final class Key {
+    final byte[] bytes;
+    final int record;
+    int offset;
+
+    Key(byte[] bytes, int record) {
+      this.bytes = bytes;
+      this.record = record;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.keyesit.graphcli;
+
+/**
+ * Row-by-row read access shared by CompactUserStore and UserSnapshot, so tenant-wide counts can
+ * scan either without building a UserSummary per user. Rows run from 0 to rows() - 1; removed
+ * rows report isLive false.
+ */
+interface UserTable {
+
+  int size();
+
+  int rows();
+
+  boolean isLive(int row);
+
+  String userType(int row);
+
+  String externalUserState(int row);
+
+  Boolean accountEnabled(int row);
+
+  /** externalUserStateChangeDateTime as epoch millis, or Long.MIN_VALUE when unset. */
+  long externalUserStateChangeMillis(int row);
+
+  UserSummary view(int row);
+}
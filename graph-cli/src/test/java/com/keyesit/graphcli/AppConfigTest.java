@@ -47,12 +47,14 @@ class AppConfigTest {
         "maxResults=10\n" +
         "\n" +
         "[invite]\n" +
+        "email=guest@example.org\n" +
         "redirectUrl=https://myapps.microsoft.com\n" +
         "sendInvitationMessage=false\n";
 
     AppConfig cfg = loadAppConfig(ini);
 
     assertEquals(AppConfig.Mode.invite, cfg.mode);
+    assertEquals("guest@example.org", cfg.inviteEmail);
     assertEquals("https://myapps.microsoft.com", cfg.inviteRedirectUrl.toString());
     assertFalse(cfg.sendInvitationMessage);
   }
@@ -108,6 +110,22 @@ class AppConfigTest {
     assertTrue(ex.getMessage().contains("invite.redirectUrl"));
   }
 
+  @Test
+  void inviteMode_missing_email_throws() {
+    String ini = "[operation]\n" +
+        "mode=invite\n" +
+        "\n" +
+        "[search]\n" +
+        "maxResults=25\n" +
+        "\n" +
+        "[invite]\n" +
+        "redirectUrl=https://myapps.microsoft.com\n" +
+        "sendInvitationMessage=true\n";
+
+    ConfigException ex = assertThrows(ConfigException.class, () -> loadAppConfig(ini));
+    assertTrue(ex.getMessage().contains("invite.email"));
+  }
+
   @Test
   void invalid_mode_throws() {
     String ini = "[operation]\n" +
@@ -3,16 +3,21 @@ package com.keyesit.graphcli;
 
 import com.microsoft.graph.invitations.InvitationsRequestBuilder;
 import com.microsoft.graph.models.Invitation;
+import com.microsoft.graph.models.User;
 import com.microsoft.graph.models.UserCollectionResponse;
 import com.microsoft.graph.serviceclient.GraphServiceClient;
 import com.microsoft.graph.users.UsersRequestBuilder;
 import com.microsoft.graph.users.item.UserItemRequestBuilder;
+import com.microsoft.kiota.RequestAdapter;
 import org.junit.jupiter.api.Test;
 
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
@@ -91,8 +96,146 @@ class AppGraphTest {
     verify(users, times(1)).get(any());
   }
 
+  @Test
+  void search_mergedResolution_usesOneFilterAndKeepsUpnPrecedence() throws Exception {
+    GraphServiceClient graph = mock(GraphServiceClient.class);
+    UsersRequestBuilder users = mock(UsersRequestBuilder.class);
+    when(graph.users()).thenReturn(users);
+
+    User byMail = new User();
+    byMail.setId("1");
+    byMail.setUserPrincipalName("someone.else@contoso.com");
+    byMail.setMail("alice@contoso.com");
+    User byUpn = new User();
+    byUpn.setId("2");
+    byUpn.setUserPrincipalName("Alice@contoso.com");
+    UserCollectionResponse page = new UserCollectionResponse();
+    page.setValue(Arrays.asList(byMail, byUpn));
+    when(users.get(any())).thenReturn(page);
+
+    AppConfig cfg = loadConfig(emailSearch("merged"));
+    List<UserSummary> found = new GraphUserFinder(graph, null, null, cfg.resolution).find(cfg);
+
+    verify(users, times(1)).get(any());
+    verify(users, never()).byUserId(anyString());
+    assertEquals(1, found.size());
+    assertEquals("2", found.get(0).getId());
+  }
+
+  @Test
+  void search_mergedResolution_fullPageOfMailMatches_stillFindsUpn() throws Exception {
+    GraphServiceClient graph = mock(GraphServiceClient.class);
+    UsersRequestBuilder users = mock(UsersRequestBuilder.class);
+    when(graph.users()).thenReturn(users);
+
+    List<User> mailOnly = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      User u = new User();
+      u.setId("mail-" + i);
+      u.setUserPrincipalName("other" + i + "@contoso.com");
+      u.setMail("alice@contoso.com");
+      mailOnly.add(u);
+    }
+    UserCollectionResponse full = new UserCollectionResponse();
+    full.setValue(mailOnly);
+    when(users.get(any())).thenReturn(full, page("upn"));
+
+    AppConfig cfg = loadConfig(emailSearch("merged"));
+    List<UserSummary> found = new GraphUserFinder(graph, null, null, cfg.resolution).find(cfg);
+
+    verify(users, times(2)).get(any());
+    assertEquals(1, found.size());
+    assertEquals("upn", found.get(0).getId());
+  }
+
+  @Test
+  void search_mergedResolution_noExactMatch_findsNothing() throws Exception {
+    GraphServiceClient graph = mock(GraphServiceClient.class);
+    UsersRequestBuilder users = mock(UsersRequestBuilder.class);
+    when(graph.users()).thenReturn(users);
+    when(users.get(any())).thenReturn(page("unrelated"));
+
+    AppConfig cfg = loadConfig(emailSearch("merged"));
+
+    assertEquals(0, new GraphUserFinder(graph, null, null, cfg.resolution).find(cfg).size());
+  }
+
+  @Test
+  void search_parallelResolution_prefersDirectHit() throws Exception {
+    GraphServiceClient graph = mock(GraphServiceClient.class);
+    UsersRequestBuilder users = mock(UsersRequestBuilder.class);
+    UserItemRequestBuilder item = mock(UserItemRequestBuilder.class);
+    when(graph.users()).thenReturn(users);
+    when(users.byUserId("alice@contoso.com")).thenReturn(item);
+
+    User direct = new User();
+    direct.setId("direct");
+    when(item.get(any())).thenReturn(direct);
+    User other = new User();
+    other.setId("from-filter");
+    UserCollectionResponse page = new UserCollectionResponse();
+    page.setValue(Collections.singletonList(other));
+    when(users.get(any())).thenReturn(page);
+
+    AppConfig cfg = loadConfig(emailSearch("parallel"));
+    List<UserSummary> found = new GraphUserFinder(graph, null, null, cfg.resolution).find(cfg);
+
+    assertEquals(1, found.size());
+    assertEquals("direct", found.get(0).getId());
+  }
+
+  @Test
+  void streamingSearch_followsNextLinkUntilCap() throws Exception {
+    GraphServiceClient graph = mock(GraphServiceClient.class);
+    UsersRequestBuilder users = mock(UsersRequestBuilder.class);
+    RequestAdapter adapter = mock(RequestAdapter.class);
+    when(graph.users()).thenReturn(users);
+    when(graph.getRequestAdapter()).thenReturn(adapter);
+
+    UserCollectionResponse first = page("a1", "a2");
+    first.setOdataNextLink("https://graph.microsoft.com/v1.0/users?$skiptoken=2");
+    when(users.get(any())).thenReturn(first);
+    doReturn(page("a3", "a4")).when(adapter).send(any(), any(), any());
+
+    GraphUserFinder finder = new GraphUserFinder(graph);
+    List<String> ids = new ArrayList<>();
+    assertEquals(4, finder.stream("a", 0, u -> ids.add(u.getId())));
+    assertEquals(Arrays.asList("a1", "a2", "a3", "a4"), ids);
+
+    ids.clear();
+    assertEquals(3, finder.stream("a", 3, u -> ids.add(u.getId())));
+    assertEquals(Arrays.asList("a1", "a2", "a3"), ids);
+  }
+
   // ---------- helpers ----------
 
+  private static UserCollectionResponse page(String... ids) {
+    List<User> values = new ArrayList<>();
+    for (String id : ids) {
+      User u = new User();
+      u.setId(id);
+      values.add(u);
+    }
+    UserCollectionResponse page = new UserCollectionResponse();
+    page.setValue(values);
+    return page;
+  }
+
+  private static String emailSearch(String resolution) {
+    return "[operation]\n" +
+        "mode=search\n" +
+        "\n" +
+        "[search]\n" +
+        "query=alice@contoso.com\n" +
+        "maxResults=5\n" +
+        "resolution=" + resolution + "\n" +
+        "\n" +
+        "[invite]\n" +
+        "redirectUrl=\n" +
+        "sendInvitationMessage=true\n";
+  }
+
+
   private static AppConfig loadConfig(String ini) throws Exception {
     Path tmp = Files.createTempFile("config", ".ini");
     Files.write(tmp, ini.getBytes(StandardCharsets.UTF_8));
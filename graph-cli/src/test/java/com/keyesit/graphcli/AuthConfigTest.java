@@ -0,0 +1,58 @@
+package com.keyesit.graphcli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthConfigTest {
+
+  @Test
+  void auth_parsesSuccessfully() throws Exception {
+    String ini = "[auth]\n" +
+        "tenantId=contoso.onmicrosoft.com\n" +
+        "clientId=00000000-0000-0000-0000-000000000001\n" +
+        "clientSecret=\"s3cret\"\n" +
+        "scope=https://graph.microsoft.com/.default\n" +
+        "tokenCacheDir=.token-cache\n";
+
+    AuthConfig auth = loadAuthConfig(ini);
+
+    assertEquals("contoso.onmicrosoft.com", auth.tenantId);
+    assertEquals("s3cret", auth.clientSecret);
+    assertEquals(Paths.get(".token-cache"), auth.tokenCacheDir);
+  }
+
+  @Test
+  void missing_clientSecret_throws() {
+    String ini = "[auth]\n" +
+        "tenantId=contoso.onmicrosoft.com\n" +
+        "clientId=00000000-0000-0000-0000-000000000001\n" +
+        "scope=https://graph.microsoft.com/.default\n";
+
+    ConfigException ex = assertThrows(ConfigException.class, () -> loadAuthConfig(ini));
+    assertTrue(ex.getMessage().contains("auth.clientSecret"));
+  }
+
+  @Test
+  void relative_scope_throws() {
+    String ini = "[auth]\n" +
+        "tenantId=contoso.onmicrosoft.com\n" +
+        "clientId=00000000-0000-0000-0000-000000000001\n" +
+        "clientSecret=s3cret\n" +
+        "scope=User.ReadWrite.All\n";
+
+    ConfigException ex = assertThrows(ConfigException.class, () -> loadAuthConfig(ini));
+    assertTrue(ex.getMessage().contains("auth.scope"));
+  }
+
+  private static AuthConfig loadAuthConfig(String iniText) throws Exception {
+    Path tmp = Files.createTempFile("auth", ".ini");
+    Files.write(tmp, iniText.getBytes(StandardCharsets.UTF_8));
+    return AuthConfig.fromIni(IniConfig.load(tmp));
+  }
+}
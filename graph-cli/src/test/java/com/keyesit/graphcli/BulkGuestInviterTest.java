@@ -0,0 +1,68 @@
+package com.keyesit.graphcli;
+
+import com.microsoft.graph.models.Invitation;
+import com.microsoft.graph.models.User;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BulkGuestInviterTest {
+
+  private static final String CSV =
+      "email,redirectUrl,sendMessage\n" +
+          "a@partner.com,https://myapps.microsoft.com,true\n" +
+          "\"b@partner.com\",,false\n" +
+          "not-an-email,,\n" +
+          "c@partner.com,,\n" +
+          "A@Partner.com,,\n";
+
+  @Test
+  void rerun_skipsAddressesAlreadyInvited() throws Exception {
+    AtomicBoolean failC = new AtomicBoolean(true);
+    GraphGuestInviter inviter = mock(GraphGuestInviter.class);
+    when(inviter.invite(anyString(), anyString(), anyBoolean())).thenAnswer(inv -> {
+      String email = inv.getArgument(0);
+      if (email.startsWith("c@") && failC.get())
+        throw new RuntimeException("Too many requests");
+      Invitation created = new Invitation();
+      created.setInvitedUserEmailAddress(email);
+      created.setInviteRedeemUrl("https://login.example/redeem?e=" + email);
+      User u = new User();
+      u.setId("id-" + email);
+      created.setInvitedUser(u);
+      return created;
+    });
+
+    Path in = Files.createTempFile("invite", ".csv");
+    Files.write(in, CSV.getBytes(StandardCharsets.UTF_8));
+    Path out = Files.createTempDirectory("invite").resolve("results.csv");
+    BulkGuestInviter bulk = new BulkGuestInviter(inviter, 2, new RateLimiter(100),
+        "https://default.example", true);
+
+    RunStats first = bulk.run(in, out);
+    assertEquals(2, first.getCount(BulkGuestInviter.INVITED));
+    assertEquals(1, first.getCount(BulkGuestInviter.FAILED));
+    assertEquals(1, first.getCount(BulkGuestInviter.INVALID));
+    assertEquals(1, first.getCount(BulkGuestInviter.DUPLICATE));
+    verify(inviter).invite("b@partner.com", "https://default.example", false);
+
+    failC.set(false);
+    RunStats second = bulk.run(in, out);
+    assertEquals(1, second.getCount(BulkGuestInviter.INVITED));
+    assertEquals(3, second.getCount(BulkGuestInviter.SKIPPED));
+    verify(inviter, times(1)).invite(eq("a@partner.com"), anyString(), anyBoolean());
+    verify(inviter, times(2)).invite(eq("c@partner.com"), anyString(), anyBoolean());
+
+    List<String> lines = Files.readAllLines(out, StandardCharsets.UTF_8);
+    assertEquals("email,status,invitedUserId,redeemUrl,detail", lines.get(0));
+    assertEquals(1, lines.stream().filter(l -> l.startsWith("email,")).count());
+    assertTrue(lines.contains("c@partner.com,invited,id-c@partner.com,https://login.example/redeem?e=c@partner.com,"));
+  }
+}
@@ -0,0 +1,90 @@
+package com.keyesit.graphcli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BulkUserDeleterTest {
+
+  @Test
+  void onlyUniqueMatches_areDeletedInBatches() throws Exception {
+    GraphUserFinder finder = mock(GraphUserFinder.class);
+    when(finder.find(anyString(), anyInt())).thenAnswer(inv -> {
+      String q = inv.getArgument(0);
+      if (q.equals("missing"))
+        return Collections.emptyList();
+      if (q.equals("smith"))
+        return Arrays.asList(user("a"), user("b"));
+      if (q.equals("again"))
+        return Collections.singletonList(user("u0"));
+      return Collections.singletonList(user(q));
+    });
+
+    Set<String> deleted = Collections.synchronizedSet(new HashSet<>());
+    GraphUserDeleter deleter = mock(GraphUserDeleter.class);
+    when(deleter.deleteBatch(anyList())).thenAnswer(inv -> {
+      List<String> ids = inv.getArgument(0);
+      assertTrue(ids.size() <= GraphUserDeleter.MAX_BATCH_SIZE);
+      Map<String, GraphUserDeleter.Outcome> out = new LinkedHashMap<>();
+      for (String id : ids) {
+        deleted.add(id);
+        out.put(id, id.equals("id-u7")
+            ? new GraphUserDeleter.Outcome(404, "Request_ResourceNotFound: gone")
+            : new GraphUserDeleter.Outcome(204, null));
+      }
+      return out;
+    });
+
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 45; i++)
+      input.append("u").append(i).append('\n');
+    input.append("missing\nsmith\nagain\n");
+    Path in = Files.createTempFile("delete", ".txt");
+    Files.write(in, input.toString().getBytes(StandardCharsets.UTF_8));
+    Path out = Files.createTempFile("delete", ".csv");
+
+    RunStats stats = new BulkUserDeleter(finder, deleter, 4, 25, false).run(in, out);
+
+    verify(deleter, times(3)).deleteBatch(anyList());
+    assertEquals(45, deleted.size());
+    assertFalse(deleted.contains("id-a"));
+    assertEquals(44, stats.getCount(BulkUserDeleter.DELETED));
+    assertEquals(1, stats.getCount(BulkUserDeleter.ALREADY_GONE));
+    assertEquals(1, stats.getCount(BulkUserDeleter.NOT_FOUND));
+    assertEquals(1, stats.getCount(BulkUserDeleter.AMBIGUOUS));
+    assertEquals(1, stats.getCount(BulkUserDeleter.DUPLICATE));
+    assertEquals(49, Files.readAllLines(out, StandardCharsets.UTF_8).size());
+  }
+
+  @Test
+  void dryRun_deletesNothing() throws Exception {
+    GraphUserFinder finder = mock(GraphUserFinder.class);
+    when(finder.find(anyString(), anyInt())).thenAnswer(inv -> Collections.singletonList(user(inv.getArgument(0))));
+    GraphUserDeleter deleter = mock(GraphUserDeleter.class);
+
+    Path in = Files.createTempFile("delete", ".txt");
+    Files.write(in, "u1\nu2\n".getBytes(StandardCharsets.UTF_8));
+    Path out = Files.createTempFile("delete", ".csv");
+
+    RunStats stats = new BulkUserDeleter(finder, deleter, 2, 25, true).run(in, out);
+
+    verifyNoInteractions(deleter);
+    assertEquals(2, stats.getCount(BulkUserDeleter.WOULD_DELETE));
+  }
+
+  private static UserSummary user(String name) {
+    return new UserSummary("id-" + name, name, name + "@contoso.com", null, "Guest", true, null, null);
+  }
+}
@@ -0,0 +1,53 @@
+package com.keyesit.graphcli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BulkUserSearchTest {
+
+  @Test
+  void results_areWrittenInInputOrder() throws Exception {
+    GraphUserFinder finder = mock(GraphUserFinder.class);
+    when(finder.find(anyString(), anyInt())).thenAnswer(inv -> {
+      String q = inv.getArgument(0);
+      int n = Integer.parseInt(q.substring(1));
+      Thread.sleep((n % 5) * 3L); // finish out of order
+      if (q.equals("u13"))
+        throw new RuntimeException("boom");
+      if (n % 2 == 0)
+        return Collections.emptyList();
+      return Collections.singletonList(new UserSummary("id-" + n, "User, " + n, q + "@contoso.com",
+          null, "Member", true, null, null));
+    });
+
+    StringBuilder input = new StringBuilder("# header comment\n\n");
+    for (int i = 0; i < 40; i++)
+      input.append("u").append(i).append('\n');
+    Path in = Files.createTempFile("queries", ".txt");
+    Files.write(in, input.toString().getBytes(StandardCharsets.UTF_8));
+    Path out = Files.createTempFile("results", ".csv");
+
+    RunStats stats = new BulkUserSearch(finder, 4, 25).run(in, out, AppConfig.OutputFormat.csv);
+
+    List<String> lines = Files.readAllLines(out, StandardCharsets.UTF_8);
+    assertEquals(41, lines.size());
+    assertTrue(lines.get(0).startsWith("query,status"));
+    for (int i = 0; i < 40; i++)
+      assertTrue(lines.get(i + 1).startsWith("u" + i + ","), lines.get(i + 1));
+    assertEquals("u1,found,1,id-1,\"User, 1\",u1@contoso.com,,Member,true,", lines.get(2));
+    assertTrue(lines.get(14).startsWith("u13,error,0,"));
+
+    assertEquals(40, stats.getCount());
+    assertEquals(19, stats.getCount(BulkUserSearch.FOUND));
+    assertEquals(20, stats.getCount(BulkUserSearch.NOT_FOUND));
+    assertEquals(1, stats.getCount(BulkUserSearch.ERROR));
+  }
+}
@@ -0,0 +1,101 @@
+package com.keyesit.graphcli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactUserStoreTest {
+
+  private static final String ALICE = "11111111-1111-1111-1111-111111111111";
+  private static final String BOB = "22222222-2222-2222-2222-222222222222";
+
+  @Test
+  void views_roundTripEveryField() {
+    CompactUserStore store = new CompactUserStore();
+    OffsetDateTime changed = OffsetDateTime.parse("2024-03-01T10:15:30Z");
+    store.put(new UserSummary(ALICE, "Alice Smith", "alice@contoso.com", "alice.smith@contoso.com",
+        "Guest", true, "PendingAcceptance", changed));
+    store.put(new UserSummary(BOB, "Bøb ñ", "bob@contoso.com", null, null, null, null, null));
+
+    UserSummary a = store.get(ALICE);
+    assertEquals("Alice Smith", a.getDisplayName());
+    assertEquals("alice@contoso.com", a.getUserPrincipalName());
+    assertEquals("alice.smith@contoso.com", a.getMail());
+    assertEquals("Guest", a.getUserType());
+    assertEquals(Boolean.TRUE, a.getAccountEnabled());
+    assertEquals("PendingAcceptance", a.getExternalUserState());
+    assertEquals(changed.toInstant(), a.getExternalUserStateChangeDateTime().toInstant());
+
+    UserSummary b = store.get(BOB);
+    assertEquals("Bøb ñ", b.getDisplayName());
+    assertNull(b.getMail());
+    assertNull(b.getUserType());
+    assertNull(b.getAccountEnabled());
+    assertNull(b.getExternalUserStateChangeDateTime());
+    assertNull(store.get("33333333-3333-3333-3333-333333333333"));
+  }
+
+  @Test
+  void putReplacesAndRemoveHides() {
+    CompactUserStore store = new CompactUserStore();
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      String id = new UUID(i * 31L, i).toString();
+      ids.add(id);
+      store.put(new UserSummary(id, "User " + i, "u" + i + "@contoso.com", null, "Member", i % 2 == 0, null, null));
+    }
+    store.put(new UserSummary(ids.get(7), "Renamed", "u7@contoso.com", null, "Member", false, null, null));
+    for (int i = 0; i < 5000; i += 3)
+      assertTrue(store.remove(ids.get(i)));
+    assertFalse(store.remove(ids.get(0)));
+
+    assertEquals(5000 - 1667, store.size());
+    assertEquals("Renamed", store.get(ids.get(7)).getDisplayName());
+    assertNull(store.get(ids.get(3)));
+    // rows put as the id table grows (2048 -> 4096 -> 8192 slots), both removed above
+    for (int row : new int[] { 1536, 3072 }) {
+      assertNull(store.get(ids.get(row)));
+      assertEquals(-1, store.rowOf(ids.get(row)));
+    }
+    assertEquals("User 4999", store.get(ids.get(4999)).getDisplayName());
+
+    int seen = 0;
+    for (UserSummary u : store) {
+      assertNotNull(store.get(u.getId()));
+      seen++;
+    }
+    assertEquals(store.size(), seen);
+    assertThrows(IllegalArgumentException.class,
+        () -> store.put(new UserSummary("not-a-guid", null, null, null, null, null, null, null)));
+  }
+
+  @Test
+  void load_appliesRemovedLines() throws Exception {
+    Path tmp = Files.createTempFile("users", ".ndjson");
+    String export =
+        "{\"id\":\"" + ALICE + "\",\"displayName\":\"Alice\",\"userPrincipalName\":\"alice@contoso.com\","
+            + "\"userType\":\"Member\",\"accountEnabled\":true}\n"
+            + "{\"id\":\"" + BOB + "\",\"displayName\":\"Bob\",\"userType\":\"Guest\","
+            + "\"externalUserState\":\"Accepted\",\"externalUserStateChangeDateTime\":\"2023-01-02T03:04:05Z\"}\n"
+            + "{\"id\":\"" + ALICE + "\",\"@removed\":{\"reason\":\"deleted\"}}\n";
+    Files.write(tmp, export.getBytes(StandardCharsets.UTF_8));
+
+    CompactUserStore store = CompactUserStore.load(tmp);
+
+    assertEquals(1, store.size());
+    int row = store.rowOf(BOB);
+    assertEquals("Guest", store.userType(row));
+    assertEquals("Accepted", store.externalUserState(row));
+    assertEquals(OffsetDateTime.parse("2023-01-02T03:04:05Z").toInstant().toEpochMilli(),
+        store.externalUserStateChangeMillis(row));
+    assertFalse(store.isLive(store.rows() - 2));
+  }
+}
@@ -0,0 +1,718 @@
+package com.keyesit.graphcli;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for Microsoft Graph v1.0 and the Entra token endpoint, on loopback, so
+ * the HTTP path (paging, throttling, retries, connection reuse) can be exercised without a
+ * tenant. Serves:
+ * <ul>
+ *   <li>{@code POST /{tenant}/oauth2/v2.0/token} (client credentials)</li>
+ *   <li>{@code GET /v1.0/users} with $top (max 999), $select, nextLink paging and the $filter
+ *       forms the tools send: startswith(displayName,'x') and id/userPrincipalName/mail eq 'x'
+ *       joined with or</li>
+ *   <li>{@code GET, PATCH, DELETE /v1.0/users/{id or UPN}}</li>
+ *   <li>{@code POST /v1.0/invitations}</li>
+ *   <li>{@code POST /v1.0/$batch} (up to 20 steps, each routed like a single request)</li>
+ * </ul>
+ * Users come from a {@link SyntheticTenant} of any size. Any Graph request or batch step can be
+ * throttled with 429 + Retry-After, at a random rate or for the next n requests, and each HTTP
+ * request sleeps for a sample of the configured {@link Latency} first. Each request draws its
+ * latency and throttling from its own Random, seeded from the server seed and the request's
+ * sequence number, so the draws don't depend on how handler threads interleave; a run that sends
+ * its requests one at a time is repeatable.
+ *
+ * Point the Kiota client at it with {@code graph.getRequestAdapter().setBaseUrl(server.graphUrl())};
+ * point core at it with authorityHost and graphBaseUrl set to {@link #baseUrl()}. Run
+ * {@link #main} for a standalone server to load-test against.
+ */
+final class FakeGraphServer implements AutoCloseable {
+
+  private static final JsonFactory JSON = new JsonFactory();
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final List<String> DEFAULT_SELECT = Arrays.asList("businessPhones", "displayName", "givenName",
+      "jobTitle", "mail", "mobilePhone", "officeLocation", "preferredLanguage", "surname", "userPrincipalName", "id");
+  private static final int DEFAULT_TOP = 100;
+  private static final int MAX_TOP = 999;
+  private static final int MAX_BATCH = 20;
+
+  private static final Pattern STARTS_WITH =
+      Pattern.compile("startswith\\(\\s*displayName\\s*,\\s*'((?:[^']|'')*)'\\s*\\)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern EQ =
+      Pattern.compile("(id|userPrincipalName|mail)\\s+eq\\s+'((?:[^']|'')*)'", Pattern.CASE_INSENSITIVE);
+  private static final Pattern OR = Pattern.compile("\\s+or\\s+", Pattern.CASE_INSENSITIVE);
+
+  private final SyntheticTenant tenant;
+  private final long seed;
+  private final Map<String, Long> tokens = new ConcurrentHashMap<>();
+  private final AtomicInteger throttleNext = new AtomicInteger();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong throttled = new AtomicLong();
+  private final AtomicLong tokenRequests = new AtomicLong();
+  private final AtomicLong tokenSeq = new AtomicLong();
+
+  private volatile Latency latency = Latency.NONE;
+  private volatile Latency tokenLatency = Latency.NONE;
+  private volatile double throttleRate;
+  private volatile int retryAfterSeconds = 1;
+  private volatile int tokenLifetimeSeconds = 3599;
+
+  private HttpServer server;
+  private ExecutorService executor;
+  private String baseUrl;
+
+  FakeGraphServer(int users) {
+    this(users, 1L);
+  }
+
+  FakeGraphServer(int users, long seed) {
+    this.tenant = new SyntheticTenant(users);
+    this.seed = seed;
+  }
+
+  /** Service time of every Graph request (a $batch counts once). */
+  FakeGraphServer latency(Latency latency) {
+    this.latency = latency;
+    return this;
+  }
+
+  FakeGraphServer tokenLatency(Latency latency) {
+    this.tokenLatency = latency;
+    return this;
+  }
+
+  /** Answers this fraction of Graph requests (batch steps, not batches) with 429 and Retry-After. */
+  FakeGraphServer throttle(double rate, int retryAfterSeconds) {
+    this.throttleRate = rate;
+    this.retryAfterSeconds = retryAfterSeconds;
+    return this;
+  }
+
+  FakeGraphServer tokenLifetimeSeconds(int seconds) {
+    this.tokenLifetimeSeconds = seconds;
+    return this;
+  }
+
+  /** Throttles the next count Graph requests or batch steps, whatever the rate. */
+  void throttleNext(int count) {
+    throttleNext.addAndGet(count);
+  }
+
+  FakeGraphServer start() throws IOException {
+    return start(0);
+  }
+
+  FakeGraphServer start(int port) throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+    executor = Executors.newCachedThreadPool(BulkUserSearch.daemonThreads("fake-graph-"));
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    return this;
+  }
+
+  @Override
+  public void close() {
+    if (server != null)
+      server.stop(0);
+    if (executor != null)
+      executor.shutdownNow();
+  }
+
+  /** Token endpoint authority and Graph host (no version segment), e.g. http://127.0.0.1:41234. */
+  String baseUrl() {
+    return baseUrl;
+  }
+
+  /** Graph base URL including the version, for the Kiota request adapter. */
+  String graphUrl() {
+    return baseUrl + "/v1.0";
+  }
+
+  SyntheticTenant tenant() {
+    return tenant;
+  }
+
+  /** A bearer token the server accepts, as if the client credentials flow had run. */
+  String issueToken() {
+    String token = "fake." + tokenSeq.incrementAndGet() + "." + UUID.randomUUID();
+    tokens.put(token, System.currentTimeMillis() + tokenLifetimeSeconds * 1000L);
+    return token;
+  }
+
+  /** HTTP requests received, token requests included. */
+  long requests() {
+    return requests.get();
+  }
+
+  /** 429s sent, batch steps included. */
+  long throttled() {
+    return throttled.get();
+  }
+
+  long tokenRequests() {
+    return tokenRequests.get();
+  }
+
+  // ---------- HTTP ----------
+
+  private void handle(HttpExchange ex) {
+    Random random = new Random(seed * 0x9E3779B97F4A7C15L + requests.incrementAndGet());
+    try {
+      String path = ex.getRequestURI().getPath();
+      byte[] body = readAll(ex.getRequestBody());
+      Reply reply;
+      if (path.endsWith("/oauth2/v2.0/token")) {
+        tokenLatency.sleep(random);
+        reply = token(ex.getRequestMethod(), body);
+      } else if (path.startsWith("/v1.0/")) {
+        latency.sleep(random);
+        reply = authorized(ex.getRequestHeaders().getFirst("Authorization"))
+            ? route(ex.getRequestMethod(), path.substring("/v1.0".length()), ex.getRequestURI().getRawQuery(), body,
+                random)
+            : error(401, "InvalidAuthenticationToken", "Access token is empty, invalid or expired.");
+      } else {
+        reply = error(404, "Request_ResourceNotFound", "No route for " + path);
+      }
+      send(ex, reply);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      try {
+        send(ex, error(500, "InternalServerError", e.toString()));
+      } catch (IOException ignored) {
+        // client went away
+      }
+    } finally {
+      ex.close();
+    }
+  }
+
+  private void send(HttpExchange ex, Reply reply) throws IOException {
+    reply.headers.forEach((k, v) -> ex.getResponseHeaders().set(k, v));
+    ex.getResponseHeaders().set("request-id", UUID.randomUUID().toString());
+    String clientRequestId = ex.getRequestHeaders().getFirst("client-request-id");
+    if (clientRequestId != null)
+      ex.getResponseHeaders().set("client-request-id", clientRequestId);
+    if (reply.body == null) {
+      ex.sendResponseHeaders(reply.status, -1);
+      return;
+    }
+    ex.getResponseHeaders().set("Content-Type", "application/json");
+    ex.sendResponseHeaders(reply.status, reply.body.length);
+    try (OutputStream out = ex.getResponseBody()) {
+      out.write(reply.body);
+    }
+  }
+
+  private boolean authorized(String header) {
+    if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7))
+      return false;
+    Long expires = tokens.get(header.substring(7).trim());
+    return expires != null && expires > System.currentTimeMillis();
+  }
+
+  private Reply token(String method, byte[] body) throws IOException {
+    tokenRequests.incrementAndGet();
+    if (!"POST".equals(method))
+      return oauthError(405, "invalid_request", "Token requests must be POST");
+    Map<String, String> form = parseQuery(new String(body, StandardCharsets.UTF_8));
+    if (!"client_credentials".equals(form.get("grant_type")))
+      return oauthError(400, "unsupported_grant_type", "Only client_credentials is supported");
+    if (form.get("client_id") == null)
+      return oauthError(400, "invalid_request", "client_id is required");
+
+    ObjectNode n = MAPPER.createObjectNode();
+    n.put("token_type", "Bearer");
+    n.put("expires_in", tokenLifetimeSeconds);
+    n.put("ext_expires_in", tokenLifetimeSeconds);
+    n.put("access_token", issueToken());
+    return new Reply(200, MAPPER.writeValueAsBytes(n));
+  }
+
+  // ---------- Graph routes ----------
+
+  /**
+   * path is relative to /v1.0, e.g. /users/{id}. Used for HTTP requests and batch steps. As in
+   * Graph, a $batch is not throttled as a whole; its steps are, one by one.
+   */
+  private Reply route(String method, String path, String rawQuery, byte[] body, Random random)
+      throws IOException {
+    if (!path.equals("/$batch") && shouldThrottle(random)) {
+      throttled.incrementAndGet();
+      Reply r = error(429, "TooManyRequests", "Too many requests, retry after " + retryAfterSeconds + "s.");
+      r.headers.put("Retry-After", Integer.toString(retryAfterSeconds));
+      return r;
+    }
+    try {
+      Map<String, String> query = parseQuery(rawQuery);
+      if (path.equals("/users")) {
+        requireMethod(method, "GET");
+        return listUsers(query);
+      }
+      if (path.startsWith("/users/") && path.indexOf('/', "/users/".length()) < 0) {
+        String key = path.substring("/users/".length());
+        switch (method) {
+          case "GET":
+            return getUser(key, query);
+          case "PATCH":
+            return patchUser(key, body);
+          case "DELETE":
+            return deleteUser(key);
+          default:
+            throw new GraphError(405, "Request_BadRequest", "Method " + method + " is not allowed on " + path);
+        }
+      }
+      if (path.equals("/invitations")) {
+        requireMethod(method, "POST");
+        return invite(body);
+      }
+      if (path.equals("/$batch")) {
+        requireMethod(method, "POST");
+        return batch(body, random);
+      }
+      throw new GraphError(404, "Request_ResourceNotFound", "No route for " + path);
+    } catch (GraphError e) {
+      return error(e.status, e.code, e.getMessage());
+    }
+  }
+
+  private boolean shouldThrottle(Random random) {
+    if (throttleNext.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0)
+      return true;
+    double rate = throttleRate;
+    return rate > 0 && random.nextDouble() < rate;
+  }
+
+  private Reply listUsers(Map<String, String> query) throws IOException, GraphError {
+    int pos = 0;
+    int top;
+    String selectRaw;
+    String filter;
+    String skiptoken = query.get("$skiptoken");
+    if (skiptoken != null) {
+      String[] parts;
+      try {
+        parts = new String(Base64.getUrlDecoder().decode(skiptoken), StandardCharsets.UTF_8).split("\n", -1);
+        pos = Integer.parseInt(parts[0]);
+        top = Integer.parseInt(parts[1]);
+      } catch (RuntimeException e) {
+        throw new GraphError(400, "Request_BadRequest", "Invalid $skiptoken");
+      }
+      selectRaw = parts[2].isEmpty() ? null : parts[2];
+      filter = parts[3].isEmpty() ? null : parts[3];
+    } else {
+      top = parseTop(query.get("$top"));
+      selectRaw = query.get("$select");
+      filter = query.get("$filter");
+    }
+    List<String> select = parseSelect(selectRaw);
+    SyntheticTenant.Selection matches = select(filter);
+
+    ByteArrayOutputStream buf = new ByteArrayOutputStream(Math.min(top, matches.size()) * 320 + 512);
+    try (JsonGenerator g = JSON.createGenerator(buf)) {
+      g.writeStartObject();
+      g.writeStringField("@odata.context", graphUrl() + "/$metadata#users" + (selectRaw == null ? "" : "(" + selectRaw + ")"));
+      g.writeArrayFieldStart("value");
+      int written = 0;
+      while (pos < matches.size() && written < top) {
+        int i = matches.get(pos++);
+        if (!tenant.exists(i))
+          continue;
+        tenant.write(g, i, select);
+        written++;
+      }
+      g.writeEndArray();
+      if (pos < matches.size())
+        g.writeStringField("@odata.nextLink", graphUrl() + "/users?$skiptoken=" + skiptoken(pos, top, selectRaw, filter));
+      g.writeEndObject();
+    }
+    return new Reply(200, buf.toByteArray());
+  }
+
+  private static String skiptoken(int pos, int top, String select, String filter) {
+    String raw = pos + "\n" + top + "\n" + (select == null ? "" : select) + "\n" + (filter == null ? "" : filter);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private SyntheticTenant.Selection select(String filter) throws GraphError {
+    if (filter == null || filter.trim().isEmpty())
+      return tenant.all();
+    String f = filter.trim();
+    Matcher sw = STARTS_WITH.matcher(f);
+    if (sw.matches())
+      return tenant.displayNameStartsWith(unquote(sw.group(1)));
+
+    // one or more "prop eq 'value'" joined by or
+    Set<Integer> hits = new LinkedHashSet<>();
+    Matcher eq = EQ.matcher(f);
+    Matcher or = OR.matcher(f);
+    int at = 0;
+    while (true) {
+      eq.region(at, f.length());
+      if (!eq.lookingAt())
+        throw new GraphError(400, "Request_UnsupportedQuery", "Unsupported Query: " + filter);
+      int i = lookup(eq.group(1), unquote(eq.group(2)));
+      if (i >= 0)
+        hits.add(i);
+      at = eq.end();
+      if (at == f.length())
+        break;
+      or.region(at, f.length());
+      if (!or.lookingAt())
+        throw new GraphError(400, "Request_UnsupportedQuery", "Unsupported Query: " + filter);
+      at = or.end();
+    }
+    int[] indexes = new int[hits.size()];
+    int k = 0;
+    for (int i : hits)
+      indexes[k++] = i;
+    return tenant.of(indexes);
+  }
+
+  private int lookup(String property, String value) {
+    switch (property.toLowerCase()) {
+      case "id":
+        return tenant.indexOfId(value);
+      case "userprincipalname":
+        return tenant.indexOfUpn(value);
+      default:
+        return tenant.indexOfMail(value);
+    }
+  }
+
+  private Reply getUser(String key, Map<String, String> query) throws IOException, GraphError {
+    int i = resolve(key);
+    List<String> select = parseSelect(query.get("$select"));
+    ByteArrayOutputStream buf = new ByteArrayOutputStream(512);
+    try (JsonGenerator g = JSON.createGenerator(buf)) {
+      tenant.write(g, i, select);
+    }
+    return new Reply(200, buf.toByteArray());
+  }
+
+  private Reply patchUser(String key, byte[] body) throws IOException, GraphError {
+    int i = resolve(key);
+    JsonNode n = parseBody(body);
+    if (n.has("accountEnabled"))
+      tenant.setAccountEnabled(i, n.get("accountEnabled").asBoolean());
+    return new Reply(204, null);
+  }
+
+  private Reply deleteUser(String key) throws GraphError {
+    if (!tenant.delete(resolve(key)))
+      throw notFound(key);
+    return new Reply(204, null);
+  }
+
+  private int resolve(String key) throws GraphError {
+    int i = key.indexOf('@') >= 0 ? tenant.indexOfUpn(key) : tenant.indexOfId(key);
+    if (i < 0)
+      throw notFound(key);
+    return i;
+  }
+
+  private static GraphError notFound(String key) {
+    return new GraphError(404, "Request_ResourceNotFound",
+        "Resource '" + key + "' does not exist or one of its queried reference-property objects are not present.");
+  }
+
+  private Reply invite(byte[] body) throws IOException, GraphError {
+    JsonNode n = parseBody(body);
+    String email = n.path("invitedUserEmailAddress").asText("");
+    String redirect = n.path("inviteRedirectUrl").asText("");
+    if (email.indexOf('@') <= 0 || redirect.isEmpty())
+      throw new GraphError(400, "BadRequest", "invitedUserEmailAddress and inviteRedirectUrl are required.");
+    String name = n.path("invitedUserDisplayName").asText("");
+    int i = tenant.invite(email, name.isEmpty() ? email.substring(0, email.indexOf('@')) : name);
+
+    ObjectNode out = MAPPER.createObjectNode();
+    out.put("@odata.context", graphUrl() + "/$metadata#invitations/$entity");
+    out.put("id", UUID.randomUUID().toString());
+    out.put("inviteRedeemUrl", "https://login.microsoftonline.com/redeem?rd=" + UUID.randomUUID());
+    out.put("invitedUserDisplayName", tenant.displayName(i));
+    out.put("invitedUserType", "Guest");
+    out.put("invitedUserEmailAddress", email);
+    out.put("sendInvitationMessage", n.path("sendInvitationMessage").asBoolean(false));
+    out.put("inviteRedirectUrl", redirect);
+    out.put("status", "PendingAcceptance");
+    out.putObject("invitedUser").put("id", tenant.id(i));
+    return new Reply(201, MAPPER.writeValueAsBytes(out));
+  }
+
+  private Reply batch(byte[] body, Random random) throws IOException, GraphError {
+    JsonNode steps = parseBody(body).path("requests");
+    if (!steps.isArray() || steps.size() == 0)
+      throw new GraphError(400, "BadRequest", "Batch request must contain a non-empty requests array.");
+    if (steps.size() > MAX_BATCH)
+      throw new GraphError(400, "BadRequest", "A maximum of " + MAX_BATCH + " requests is allowed in a batch.");
+
+    ObjectNode out = MAPPER.createObjectNode();
+    ArrayNode responses = out.putArray("responses");
+    for (JsonNode step : steps) {
+      String url = step.path("url").asText("");
+      int v = url.indexOf("/v1.0/");
+      if (v >= 0)
+        url = url.substring(v + "/v1.0".length());
+      int q = url.indexOf('?');
+      String path = URI.create("http://batch" + (q < 0 ? url : url.substring(0, q))).getPath();
+      String rawQuery = q < 0 ? null : url.substring(q + 1);
+      JsonNode stepBody = step.get("body");
+
+      Reply r = path.equals("/$batch")
+          ? error(400, "BadRequest", "Nested batches are not supported.")
+          : route(step.path("method").asText("GET"), path, rawQuery,
+              stepBody == null ? new byte[0] : MAPPER.writeValueAsBytes(stepBody), random);
+
+      ObjectNode resp = responses.addObject();
+      resp.put("id", step.path("id").asText());
+      resp.put("status", r.status);
+      ObjectNode headers = resp.putObject("headers");
+      r.headers.forEach(headers::put);
+      if (r.body != null) {
+        headers.put("Content-Type", "application/json");
+        resp.set("body", MAPPER.readTree(r.body));
+      }
+    }
+    return new Reply(200, MAPPER.writeValueAsBytes(out));
+  }
+
+  // ---------- parsing ----------
+
+  private static void requireMethod(String method, String expected) throws GraphError {
+    if (!expected.equals(method))
+      throw new GraphError(405, "Request_BadRequest", "Method " + method + " is not allowed; use " + expected);
+  }
+
+  private static int parseTop(String raw) throws GraphError {
+    if (raw == null)
+      return DEFAULT_TOP;
+    try {
+      int top = Integer.parseInt(raw.trim());
+      if (top >= 1 && top <= MAX_TOP)
+        return top;
+    } catch (NumberFormatException ignored) {
+      // falls through to the error below
+    }
+    throw new GraphError(400, "Request_BadRequest", "Invalid page size specified: '" + raw + "'. Must be between 1 and " + MAX_TOP + " inclusive.");
+  }
+
+  private static List<String> parseSelect(String raw) throws GraphError {
+    if (raw == null || raw.trim().isEmpty())
+      return DEFAULT_SELECT;
+    List<String> out = new ArrayList<>();
+    for (String p : raw.split(",")) {
+      String name = p.trim();
+      if (!SyntheticTenant.isProperty(name))
+        throw new GraphError(400, "Request_BadRequest", "Could not find a property named '" + name + "' on type 'microsoft.graph.user'.");
+      out.add(name);
+    }
+    return out;
+  }
+
+  private static JsonNode parseBody(byte[] body) throws GraphError {
+    try {
+      JsonNode n = body.length == 0 ? null : MAPPER.readTree(body);
+      if (n == null || !n.isObject())
+        throw new GraphError(400, "BadRequest", "Request body must be a JSON object.");
+      return n;
+    } catch (IOException e) {
+      throw new GraphError(400, "BadRequest", "Invalid JSON: " + e.getMessage());
+    }
+  }
+
+  private static String unquote(String odataLiteral) {
+    return odataLiteral.replace("''", "'");
+  }
+
+  private static Map<String, String> parseQuery(String raw) throws UnsupportedEncodingException {
+    Map<String, String> out = new HashMap<>();
+    if (raw == null || raw.isEmpty())
+      return out;
+    for (String pair : raw.split("&")) {
+      int eq = pair.indexOf('=');
+      String k = eq < 0 ? pair : pair.substring(0, eq);
+      String v = eq < 0 ? "" : pair.substring(eq + 1);
+      out.put(URLDecoder.decode(k, "UTF-8"), URLDecoder.decode(v, "UTF-8"));
+    }
+    return out;
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    int n;
+    while ((n = in.read(buf)) > 0)
+      out.write(buf, 0, n);
+    return out.toByteArray();
+  }
+
+  private static Reply error(int status, String code, String message) throws IOException {
+    ObjectNode n = MAPPER.createObjectNode();
+    ObjectNode err = n.putObject("error");
+    err.put("code", code);
+    err.put("message", message);
+    ObjectNode inner = err.putObject("innerError");
+    inner.put("date", Instant.now().toString());
+    inner.put("request-id", UUID.randomUUID().toString());
+    return new Reply(status, MAPPER.writeValueAsBytes(n));
+  }
+
+  private static Reply oauthError(int status, String code, String description) throws IOException {
+    ObjectNode n = MAPPER.createObjectNode();
+    n.put("error", code);
+    n.put("error_description", description);
+    return new Reply(status, MAPPER.writeValueAsBytes(n));
+  }
+
+  private static final class Reply {
+    final int status;
+    final byte[] body;
+    final Map<String, String> headers = new LinkedHashMap<>();
+
+    Reply(int status, byte[] body) {
+      this.status = status;
+      this.body = body;
+    }
+  }
+
+  private static final class GraphError extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    final int status;
+    final String code;
+
+    GraphError(int status, String code, String message) {
+      super(message);
+      this.status = status;
+      this.code = code;
+    }
+  }
+
+  // ---------- standalone ----------
+
+  /**
+   * Standalone server for load runs, until killed:
+   * <pre>
+   * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/test.cp
+   * java -cp "target/test-classes:target/classes:$(cat target/test.cp)" com.keyesit.graphcli.FakeGraphServer \
+   *     --port 8089 --users 2000000 --latency lognormal:20,250 --throttle 0.01 --retry-after 1
+   * </pre>
+   */
+  public static void main(String[] args) throws Exception {
+    int port = 8089;
+    int users = 1_000_000;
+    long seed = 1;
+    Latency latency = Latency.NONE;
+    Latency tokenLatency = Latency.NONE;
+    double throttleRate = 0;
+    int retryAfter = 1;
+    int tokenLifetime = 3599;
+    Iterator<String> it = Arrays.asList(args).iterator();
+    while (it.hasNext()) {
+      String flag = it.next();
+      if (!it.hasNext())
+        usage("missing value for " + flag);
+      String value = it.next();
+      switch (flag) {
+        case "--port":
+          port = Integer.parseInt(value);
+          break;
+        case "--users":
+          users = Integer.parseInt(value);
+          break;
+        case "--seed":
+          seed = Long.parseLong(value);
+          break;
+        case "--latency":
+          latency = Latency.parse(value);
+          break;
+        case "--token-latency":
+          tokenLatency = Latency.parse(value);
+          break;
+        case "--throttle":
+          throttleRate = Double.parseDouble(value);
+          break;
+        case "--retry-after":
+          retryAfter = Integer.parseInt(value);
+          break;
+        case "--token-lifetime":
+          tokenLifetime = Integer.parseInt(value);
+          break;
+        default:
+          usage("unknown option " + flag);
+      }
+    }
+
+    FakeGraphServer server = new FakeGraphServer(users, seed)
+        .latency(latency)
+        .tokenLatency(tokenLatency)
+        .throttle(throttleRate, retryAfter)
+        .tokenLifetimeSeconds(tokenLifetime)
+        .start(port);
+    long started = System.nanoTime();
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      long secs = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+      System.out.println("requests=" + server.requests() + " (" + server.requests() / secs + "/s) throttled="
+          + server.throttled() + " tokens=" + server.tokenRequests());
+      server.close();
+    }));
+
+    System.out.println("Fake Graph on " + server.baseUrl() + " with " + users + " users");
+    System.out.println("  latency=" + latency + " tokenLatency=" + tokenLatency + " throttle=" + throttleRate
+        + " retryAfter=" + retryAfter + "s tokenLifetime=" + tokenLifetime + "s");
+    System.out.println("  core entra.ini: authorityHost=" + server.baseUrl() + " graphBaseUrl=" + server.baseUrl());
+    System.out.println("  Kiota: graph.getRequestAdapter().setBaseUrl(\"" + server.graphUrl() + "\")");
+    new CountDownLatch(1).await();
+  }
+
+  private static void usage(String problem) {
+    System.err.println(problem);
+    System.err.println("usage: FakeGraphServer [--port 8089] [--users 1000000] [--seed 1] [--latency SPEC]"
+        + " [--token-latency SPEC] [--throttle RATE] [--retry-after SECONDS] [--token-lifetime SECONDS]");
+    System.err.println("  SPEC: none | fixed:MS | uniform:MIN-MAX | lognormal:MEDIAN,P99");
+    System.exit(2);
+  }
+}
@@ -0,0 +1,127 @@
+package com.keyesit.graphcli;
+
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.TokenCredential;
+import com.microsoft.graph.models.Invitation;
+import com.microsoft.graph.serviceclient.GraphServiceClient;
+import com.microsoft.kiota.authentication.AzureIdentityAuthenticationProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The Kiota-based code paths over real HTTP, against {@link FakeGraphServer}. */
+class FakeGraphServerTest {
+
+  private FakeGraphServer server;
+  private SyntheticTenant tenant;
+  private GraphServiceClient graph;
+
+  @BeforeEach
+  void start() throws Exception {
+    server = new FakeGraphServer(30_000).start();
+    tenant = server.tenant();
+    graph = client(server);
+  }
+
+  @AfterEach
+  void stop() {
+    server.close();
+  }
+
+  static GraphServiceClient client(FakeGraphServer server) {
+    TokenCredential credential = ctx -> Mono.just(new AccessToken(server.issueToken(), OffsetDateTime.now().plusHours(1)));
+    // no allowed-hosts list, so the token is sent to the loopback host too
+    GraphServiceClient graph = new GraphServiceClient(new AzureIdentityAuthenticationProvider(
+        credential, new String[0], "https://graph.microsoft.com/.default"));
+    graph.getRequestAdapter().setBaseUrl(server.graphUrl());
+    return graph;
+  }
+
+  @Test
+  void finder_resolvesIdUpnMailAndName() {
+    GraphUserFinder finder = new GraphUserFinder(graph);
+
+    assertEquals(tenant.id(7), finder.find(tenant.id(7), 25).get(0).getId());
+    assertEquals(tenant.id(8), finder.find(tenant.userPrincipalName(8), 25).get(0).getId());
+
+    // guest: direct GET and UPN filter miss, mail filter hits
+    UserSummary guest = finder.find(tenant.mail(9), 25).get(0);
+    assertEquals(tenant.id(9), guest.getId());
+    assertEquals("Guest", guest.getUserType());
+
+    List<UserSummary> named = finder.find("adele bowen", 25);
+    assertEquals(25, named.size());
+    assertEquals("Adele Bowen 00", named.get(0).getDisplayName());
+    assertTrue(finder.find("Nobody Here", 25).isEmpty());
+  }
+
+  @Test
+  void stream_followsNextLinksAcrossPages() {
+    GraphUserFinder finder = new GraphUserFinder(graph);
+    List<String> names = new ArrayList<>();
+
+    // Adele, Alex, Allan x 25 surnames x 40 = 3000 users, four pages of 999
+    long n = finder.stream("a", 0, u -> names.add(u.getDisplayName()));
+
+    assertEquals(3000, n);
+    assertEquals("Adele Bowen 00", names.get(0));
+    assertEquals("Allan Zrinka 39", names.get(2999));
+  }
+
+  @Test
+  void throttledRequest_isRetriedAfterRetryAfter() {
+    server.throttleNext(1);
+
+    List<UserSummary> hit = new GraphUserFinder(graph).find(tenant.id(42), 25);
+
+    assertEquals(tenant.id(42), hit.get(0).getId());
+    assertEquals(1, server.throttled());
+  }
+
+  @Test
+  void batchDelete_retriesThrottledSteps() throws Exception {
+    List<String> ids = Arrays.asList(tenant.id(100), tenant.id(101), tenant.id(102));
+    server.throttleNext(1);
+
+    Map<String, GraphUserDeleter.Outcome> outcomes = new GraphUserDeleter(graph).deleteBatch(ids);
+
+    for (String id : ids) {
+      assertTrue(outcomes.get(id).isSuccess(), id);
+      assertEquals(-1, tenant.indexOfId(id));
+    }
+    assertEquals(1, server.throttled());
+  }
+
+  @Test
+  void invite_createsGuestFindableByMail() {
+    Invitation inv = new GraphGuestInviter(graph).invite("new.guest@example.org", "https://myapps.microsoft.com", false);
+
+    UserSummary guest = new GraphUserFinder(graph).find("new.guest@example.org", 25).get(0);
+    assertEquals(inv.getInvitedUser().getId(), guest.getId());
+    assertEquals("PendingAcceptance", guest.getExternalUserState());
+  }
+
+  @Test
+  void export_pagesThroughWholeTenant() throws Exception {
+    Path out = Files.createTempDirectory("export").resolve("users.ndjson.gz");
+
+    TenantExporter.Result result = new TenantExporter(graph, AppConfig.OutputFormat.ndjson, 10).run(out);
+
+    assertEquals(30_000, result.users);
+    assertEquals(31, result.pages);
+    UserIndex index = UserIndex.load(out);
+    assertEquals(30_000, index.size());
+    assertEquals(tenant.displayName(29_999), index.byId(tenant.id(29_999)).get(0).getDisplayName());
+  }
+}
@@ -0,0 +1,144 @@
+package com.keyesit.graphcli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** {@link GraphCliClient} against a {@link GraphCliDaemon} backed by {@link FakeGraphServer}. */
+class GraphCliDaemonTest {
+
+  @TempDir
+  Path dir;
+
+  private FakeGraphServer server;
+  private GraphCliDaemon daemon;
+  private Path keyFile;
+  private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+  private final PrintStream out = new PrintStream(buf, true);
+
+  @BeforeEach
+  void start() throws Exception {
+    server = new FakeGraphServer(3_000).start();
+    keyFile = dir.resolve("daemon.key");
+    daemon = startDaemon("");
+  }
+
+  private GraphCliDaemon startDaemon(String extraSearch) throws Exception {
+    Path ini = dir.resolve("config.ini");
+    String text = "[operation]\nmode=daemon\n\n[search]\nquery=unused\nmaxResults=25\n" + extraSearch + "\n"
+        + "[invite]\nredirectUrl=https://myapps.microsoft.com\nsendInvitationMessage=false\n\n"
+        + "[daemon]\nport=0\nthreads=2\nkeyFile=" + keyFile.toString().replace('\\', '/') + "\n";
+    Files.write(ini, text.getBytes(StandardCharsets.UTF_8));
+    return GraphCliDaemon.start(AppConfig.fromIni(IniConfig.load(ini)), FakeGraphServerTest.client(server),
+        new GraphMetrics());
+  }
+
+  @AfterEach
+  void stop() {
+    daemon.close();
+    server.close();
+  }
+
+  @Test
+  void keyFile_isOwnerOnlyAndNamesThePort() throws Exception {
+    String content = new String(Files.readAllBytes(keyFile), StandardCharsets.UTF_8);
+    assertTrue(content.contains("port=" + daemon.getPort()));
+    if (Files.getFileStore(keyFile).supportsFileAttributeView("posix"))
+      assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(keyFile)));
+  }
+
+  @Test
+  void search_andDelete_runOnTheWarmClient() throws Exception {
+    SyntheticTenant tenant = server.tenant();
+
+    assertEquals(0, GraphCliClient.run(keyFile, new String[] { "search", tenant.userPrincipalName(5) }, out));
+    assertTrue(output().contains("Matches: 1"));
+    assertTrue(output().contains("id = " + tenant.id(5)));
+
+    buf.reset();
+    assertEquals(0, GraphCliClient.run(keyFile, new String[] { "search", "adele", "bowen" }, out));
+    assertTrue(output().contains("name = Adele Bowen"));
+
+    buf.reset();
+    assertEquals(0, GraphCliClient.run(keyFile, new String[] { "delete", tenant.id(6) }, out));
+    assertTrue(output().contains("Delete completed."));
+    assertFalse(tenant.exists(6));
+  }
+
+  @Test
+  void delete_bypassesTheIndex_andSearchStopsTrustingIt() throws Exception {
+    SyntheticTenant tenant = server.tenant();
+    String upn = tenant.userPrincipalName(9);
+    Path index = dir.resolve("users.ndjson");
+    String line = "{\"id\":\"" + tenant.id(9) + "\",\"displayName\":\"" + tenant.displayName(9)
+        + "\",\"userPrincipalName\":\"" + upn + "\"}\n";
+    Files.write(index, line.getBytes(StandardCharsets.UTF_8));
+    daemon.close();
+    daemon = startDaemon("indexFile=" + index.toString().replace('\\', '/') + "\n");
+
+    assertEquals(0, GraphCliClient.run(keyFile, new String[] { "search", upn }, out));
+    assertTrue(output().contains("id = " + tenant.id(9)));
+    assertEquals(0, server.requests(), "answered from the index");
+
+    buf.reset();
+    assertEquals(0, GraphCliClient.run(keyFile, new String[] { "delete", upn }, out));
+    assertTrue(output().contains("Delete completed."));
+    assertFalse(tenant.exists(9));
+    long afterDelete = server.requests();
+    assertTrue(afterDelete > 0, "delete resolved against Graph");
+
+    buf.reset();
+    assertEquals(0, GraphCliClient.run(keyFile, new String[] { "search", upn }, out));
+    assertTrue(output().contains("Matches: 0"), output());
+    assertTrue(server.requests() > afterDelete);
+
+    buf.reset();
+    assertEquals(0, GraphCliClient.run(keyFile, new String[] { "delete", upn }, out));
+    assertTrue(output().contains("No user found."), output());
+  }
+
+  @Test
+  void badKey_isRejected() throws Exception {
+    Path forged = dir.resolve("forged.key");
+    Files.write(forged, ("port=" + daemon.getPort() + "\nkey=0000\n").getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(2, GraphCliClient.run(forged, new String[] { "ping" }, out));
+    assertTrue(output().contains("Bad key"));
+    assertEquals(0, server.requests());
+  }
+
+  @Test
+  void shutdown_removesKeyFile_andClientReportsNoDaemon() throws Exception {
+    assertEquals(0, GraphCliClient.run(keyFile, new String[] { "ping" }, out));
+    assertEquals(2, GraphCliClient.run(keyFile, new String[] { "bogus" }, out));
+    assertEquals(0, GraphCliClient.run(keyFile, new String[] { "shutdown" }, out));
+
+    daemon.awaitShutdown();
+    daemon.close();
+    assertFalse(Files.exists(keyFile));
+    buf.reset();
+    assertEquals(2, GraphCliClient.run(keyFile, new String[] { "ping" }, out));
+    assertTrue(output().contains("No daemon key file"));
+  }
+
+  @Test
+  void commandLine_joinsQueriesButKeepsInviteArgumentsApart() {
+    assertEquals("search\talice smith", GraphCliClient.commandLine(new String[] { "search", "alice", "smith" }));
+    assertEquals("invite\ta@b.com\thttps://x\tfalse",
+        GraphCliClient.commandLine(new String[] { "invite", "a@b.com", "https://x", "false" }));
+  }
+
+  private String output() {
+    return new String(buf.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
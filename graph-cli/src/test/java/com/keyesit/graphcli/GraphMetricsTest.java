@@ -0,0 +1,58 @@
+package com.keyesit.graphcli;
+
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.TokenCredential;
+import com.microsoft.graph.serviceclient.GraphServiceClient;
+import com.microsoft.kiota.authentication.AzureIdentityAuthenticationProvider;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+
+import static com.keyesit.graphcli.GraphMetrics.Operation.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphMetricsTest {
+
+  @Test
+  void classify_usesMethodAndPath() {
+    assertEquals(LIST_USERS, GraphMetrics.Operation.classify("GET", Arrays.asList("v1.0", "users")));
+    assertEquals(GET_USER, GraphMetrics.Operation.classify("GET", Arrays.asList("v1.0", "users", "a@b.com")));
+    assertEquals(UPDATE_USER, GraphMetrics.Operation.classify("PATCH", Arrays.asList("v1.0", "users", "id")));
+    assertEquals(DELETE_USER, GraphMetrics.Operation.classify("DELETE", Arrays.asList("v1.0", "users", "id")));
+    assertEquals(DELTA, GraphMetrics.Operation.classify("GET", Arrays.asList("v1.0", "users", "delta")));
+    assertEquals(BATCH, GraphMetrics.Operation.classify("POST", Arrays.asList("v1.0", "$batch")));
+    assertEquals(INVITE, GraphMetrics.Operation.classify("POST", Arrays.asList("v1.0", "invitations")));
+    assertEquals(OTHER, GraphMetrics.Operation.classify("GET", Arrays.asList("v1.0", "users", "id", "memberOf")));
+  }
+
+  @Test
+  void interceptor_countsAttemptsRetriesAndTokens() throws Exception {
+    try (FakeGraphServer server = new FakeGraphServer(3_000).start()) {
+      GraphMetrics metrics = new GraphMetrics();
+      // like the Azure credentials, hands out the same token until it nears expiry
+      AccessToken token = new AccessToken(server.issueToken(), OffsetDateTime.now().plusHours(1));
+      TokenCredential credential = ctx -> Mono.just(token);
+      GraphServiceClient graph = new GraphServiceClient(new AzureIdentityAuthenticationProvider(
+          metrics.meter(credential), new String[0], "https://graph.microsoft.com/.default"), GraphCli.httpClient(metrics));
+      graph.getRequestAdapter().setBaseUrl(server.graphUrl());
+      GraphUserFinder finder = new GraphUserFinder(graph);
+
+      server.throttleNext(1);
+      finder.find(server.tenant().id(42), 25);
+      long listed = finder.stream("a", 0, u -> { });
+
+      assertEquals(300, listed);
+      assertEquals(1, metrics.getRetries());
+      assertEquals(1, metrics.getThrottled());
+      assertEquals(Long.valueOf(1), metrics.getStatusCounts().get("429"));
+      assertEquals(2, metrics.getLatency().get("GET_USER").getCount());
+      assertEquals(1, metrics.getLatency().get("LIST_USERS").getCount());
+      assertEquals(metrics.getRequests(), server.requests());
+      assertEquals(1, metrics.getFailures());
+      assertTrue(metrics.getBytesIn() > 0);
+      assertEquals(1, metrics.getTokenRefreshes());
+    }
+  }
+}
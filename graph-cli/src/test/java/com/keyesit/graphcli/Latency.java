@@ -0,0 +1,114 @@
+package com.keyesit.graphcli;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service time added by {@link FakeGraphServer} before it answers a request. Specs, as used on
+ * the command line: {@code none}, {@code fixed:20}, {@code uniform:5-50} and
+ * {@code lognormal:20,400} (median and p99, in milliseconds). Log-normal gives the long right
+ * tail real Graph calls have.
+ */
+abstract class Latency {
+
+  static final Latency NONE = new Latency() {
+    @Override
+    long sampleNanos(Random random) {
+      return 0;
+    }
+
+    @Override
+    public String toString() {
+      return "none";
+    }
+  };
+
+  abstract long sampleNanos(Random random);
+
+  static Latency fixed(long millis) {
+    long nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    return new Latency() {
+      @Override
+      long sampleNanos(Random random) {
+        return nanos;
+      }
+
+      @Override
+      public String toString() {
+        return "fixed:" + millis;
+      }
+    };
+  }
+
+  static Latency uniform(long minMillis, long maxMillis) {
+    if (maxMillis < minMillis)
+      throw new IllegalArgumentException("uniform latency max < min: " + minMillis + "-" + maxMillis);
+    long min = TimeUnit.MILLISECONDS.toNanos(minMillis);
+    long span = TimeUnit.MILLISECONDS.toNanos(maxMillis) - min;
+    return new Latency() {
+      @Override
+      long sampleNanos(Random random) {
+        return min + (long) (random.nextDouble() * span);
+      }
+
+      @Override
+      public String toString() {
+        return "uniform:" + minMillis + "-" + maxMillis;
+      }
+    };
+  }
+
+  /** Log-normal with the given median and 99th percentile. */
+  static Latency logNormal(double medianMillis, double p99Millis) {
+    if (medianMillis <= 0 || p99Millis < medianMillis)
+      throw new IllegalArgumentException("lognormal latency needs 0 < median <= p99: " + medianMillis + "," + p99Millis);
+    // z(0.99) = 2.3263
+    double sigma = Math.log(p99Millis / medianMillis) / 2.3263;
+    double medianNanos = medianMillis * 1_000_000d;
+    return new Latency() {
+      @Override
+      long sampleNanos(Random random) {
+        return (long) (medianNanos * Math.exp(sigma * random.nextGaussian()));
+      }
+
+      @Override
+      public String toString() {
+        return "lognormal:" + medianMillis + "," + p99Millis;
+      }
+    };
+  }
+
+  static Latency parse(String spec) {
+    String s = spec.trim();
+    int colon = s.indexOf(':');
+    String kind = colon < 0 ? s : s.substring(0, colon);
+    String args = colon < 0 ? "" : s.substring(colon + 1);
+    try {
+      switch (kind) {
+        case "none":
+          return NONE;
+        case "fixed":
+          return fixed(Long.parseLong(args.trim()));
+        case "uniform": {
+          String[] p = args.split("-");
+          return uniform(Long.parseLong(p[0].trim()), Long.parseLong(p[1].trim()));
+        }
+        case "lognormal": {
+          String[] p = args.split(",");
+          return logNormal(Double.parseDouble(p[0].trim()), Double.parseDouble(p[1].trim()));
+        }
+        default:
+          break;
+      }
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Bad latency '" + spec + "': " + e.getMessage(), e);
+    }
+    throw new IllegalArgumentException("Bad latency '" + spec + "' (none | fixed:MS | uniform:MIN-MAX | lognormal:MEDIAN,P99)");
+  }
+
+  void sleep(Random random) throws InterruptedException {
+    long nanos = sampleNanos(random);
+    if (nanos > 0)
+      TimeUnit.NANOSECONDS.sleep(nanos);
+  }
+}
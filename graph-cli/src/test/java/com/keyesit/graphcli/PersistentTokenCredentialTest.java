@@ -0,0 +1,92 @@
+package com.keyesit.graphcli;
+
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.credential.TokenRequestContext;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.OffsetDateTime;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PersistentTokenCredentialTest {
+
+  private static final TokenRequestContext CTX =
+      new TokenRequestContext().addScopes("https://graph.microsoft.com/.default");
+
+  @Test
+  void validToken_isReusedAcrossInstances() throws Exception {
+    Path dir = Files.createTempDirectory("tokens").resolve("cache");
+    TokenCredential delegate = mock(TokenCredential.class);
+    when(delegate.getTokenSync(any())).thenReturn(new AccessToken("t1", OffsetDateTime.now().plusHours(1)));
+
+    AccessToken first = new PersistentTokenCredential(delegate, dir, "tenant", "client").getTokenSync(CTX);
+    AccessToken second = new PersistentTokenCredential(delegate, dir, "tenant", "client").getTokenSync(CTX);
+
+    assertEquals("t1", first.getToken());
+    assertEquals("t1", second.getToken());
+    verify(delegate, times(1)).getTokenSync(any());
+
+    if (dir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(dir)));
+      try (Stream<Path> files = Files.list(dir)) {
+        for (Path f : files.collect(Collectors.toList()))
+          assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(f)));
+      }
+    }
+  }
+
+  @Test
+  void repeatedCalls_areServedFromMemory() throws Exception {
+    Path dir = Files.createTempDirectory("tokens");
+    TokenCredential delegate = mock(TokenCredential.class);
+    when(delegate.getTokenSync(any())).thenReturn(new AccessToken("t1", OffsetDateTime.now().plusHours(1)));
+    PersistentTokenCredential credential = new PersistentTokenCredential(delegate, dir, "tenant", "client");
+
+    credential.getTokenSync(CTX);
+    try (Stream<Path> files = Files.list(dir)) {
+      for (Path f : files.collect(Collectors.toList()))
+        Files.delete(f);
+    }
+
+    assertEquals("t1", credential.getTokenSync(CTX).getToken());
+    assertEquals("t1", credential.getToken(CTX).block().getToken());
+    verify(delegate, times(1)).getTokenSync(any());
+    try (Stream<Path> files = Files.list(dir)) {
+      assertEquals(0, files.count(), "a cached token is not written again");
+    }
+  }
+
+  @Test
+  void nearlyExpiredToken_isRefreshed() throws Exception {
+    Path dir = Files.createTempDirectory("tokens");
+    TokenCredential delegate = mock(TokenCredential.class);
+    when(delegate.getTokenSync(any()))
+        .thenReturn(new AccessToken("old", OffsetDateTime.now().plusSeconds(30)))
+        .thenReturn(new AccessToken("new", OffsetDateTime.now().plusHours(1)));
+
+    new PersistentTokenCredential(delegate, dir, "tenant", "client").getTokenSync(CTX);
+    AccessToken second = new PersistentTokenCredential(delegate, dir, "tenant", "client").getTokenSync(CTX);
+
+    assertEquals("new", second.getToken());
+    verify(delegate, times(2)).getTokenSync(any());
+  }
+
+  @Test
+  void differentClient_doesNotShareToken() throws Exception {
+    Path dir = Files.createTempDirectory("tokens");
+    TokenCredential delegate = mock(TokenCredential.class);
+    when(delegate.getTokenSync(any())).thenReturn(new AccessToken("t", OffsetDateTime.now().plusHours(1)));
+
+    new PersistentTokenCredential(delegate, dir, "tenant", "client-a").getTokenSync(CTX);
+    new PersistentTokenCredential(delegate, dir, "tenant", "client-b").getTokenSync(CTX);
+
+    verify(delegate, times(2)).getTokenSync(any());
+  }
+}
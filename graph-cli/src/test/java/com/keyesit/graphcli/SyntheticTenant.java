@@ -0,0 +1,397 @@
+package com.keyesit.graphcli;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The users behind {@link FakeGraphServer}: millions of them without storing any. User i is
+ * computed from i, and names are laid out so that displayName order is index order
+ * ("Adele Bowen 0000" .. "Yuki Zrinka 1332"), which turns a startswith filter into two binary
+ * searches. Ids and UPNs carry i, so lookups are arithmetic too. Only changes are stored:
+ * deletions, accountEnabled updates and invited guests (indexes from size() up).
+ *
+ * Every fifth user is a guest from another domain with an #EXT# UPN; about one member in ten
+ * has no mail.
+ */
+final class SyntheticTenant {
+
+  // Sorted, and no name is a prefix of another, so "First Last NNNN" sorts like (first, last, n).
+  private static final String[] FIRST = {"Adele", "Alex", "Allan", "Ben", "Carlos", "Christie", "Debra",
+      "Diego", "Emily", "Enrico", "Grady", "Henrietta", "Irvin", "Isaiah", "Johanna", "Joni", "Lee", "Lidia",
+      "Lynne", "Megan", "Miriam", "Nestor", "Patti", "Pradeep", "Raul", "Sanjay", "Sofia", "Tomasz", "Wei", "Yuki"};
+  private static final String[] LAST = {"Bowen", "Braun", "Cameron", "Cline", "Gable", "Garcia", "Gonzalez",
+      "Haddad", "Johansson", "Kowalski", "Lamb", "Mathis", "Mittal", "Nakamura", "Nguyen", "Okafor", "Patel",
+      "Rossi", "Siciliani", "Sorensen", "Vance", "Wilber", "Wong", "Yamada", "Zrinka"};
+  private static final String[] GUEST_DOMAINS = {"fabrikam.com", "gmail.com", "outlook.com", "northwindtraders.com"};
+  private static final String[] JOBS = {"Developer", "Marketing Manager", "Product Manager", "Accountant",
+      "Sales Representative", "Designer", "IT Admin", "Attorney"};
+  private static final String[] OFFICES = {"18/2111", "20/1101", "12/1110", "19/3123", "131/1104"};
+
+  static final String DOMAIN = "contoso.com";
+  private static final String EXT_SUFFIX = "#EXT#@contoso.onmicrosoft.com";
+  private static final long EPOCH_2024 = Instant.parse("2024-01-01T00:00:00Z").getEpochSecond();
+
+  private static final Pattern GENERATED_LOCAL = Pattern.compile("^[a-z]+\\.[a-z]+\\.(\\d+)[@_]");
+  private static final Pattern ID = Pattern.compile("^[0-9a-f]{8}-[0-9a-f]{4}-4[0-9a-f]{3}-[89ab][0-9a-f]{3}-([0-9a-f]{12})$");
+
+  private final int size;
+  private final int perName;
+  private final String numberFormat;
+
+  private final BitSet deleted = new BitSet();
+  private final Map<Integer, Boolean> enabledOverrides = new ConcurrentHashMap<>();
+  private final List<Invitee> invited = new ArrayList<>();
+
+  SyntheticTenant(int size) {
+    if (size < 0)
+      throw new IllegalArgumentException("size must be >= 0");
+    this.size = size;
+    int names = FIRST.length * LAST.length;
+    this.perName = Math.max(1, (size + names - 1) / names);
+    this.numberFormat = "%0" + Integer.toString(perName - 1).length() + "d";
+  }
+
+  /** Number of generated users (invited guests come after them). */
+  int size() {
+    return size;
+  }
+
+  /** Generated plus invited users, deleted ones included. */
+  synchronized int end() {
+    return size + invited.size();
+  }
+
+  synchronized boolean exists(int i) {
+    return i >= 0 && i < size + invited.size() && !deleted.get(i);
+  }
+
+  synchronized boolean delete(int i) {
+    if (!exists(i))
+      return false;
+    deleted.set(i);
+    return true;
+  }
+
+  void setAccountEnabled(int i, boolean enabled) {
+    enabledOverrides.put(i, enabled);
+  }
+
+  /** Adds a guest and returns its index, or the index of the user who already has that mail. */
+  synchronized int invite(String email, String displayName) {
+    int existing = indexOfMail(email);
+    if (existing >= 0)
+      return existing;
+    invited.add(new Invitee(email, displayName, Instant.now()));
+    return size + invited.size() - 1;
+  }
+
+  // ---------- lookups (return -1 when absent or deleted) ----------
+
+  int indexOfId(String id) {
+    Matcher m = ID.matcher(id.toLowerCase(Locale.ROOT));
+    if (!m.matches())
+      return -1;
+    long i = Long.parseLong(m.group(1), 16);
+    if (i >= Integer.MAX_VALUE || !id.equalsIgnoreCase(id((int) i)))
+      return -1;
+    return exists((int) i) ? (int) i : -1;
+  }
+
+  int indexOfUpn(String upn) {
+    int i = generatedIndex(upn);
+    if (i >= 0 && upn.equalsIgnoreCase(userPrincipalName(i)))
+      return exists(i) ? i : -1;
+    return scanInvited(upn, true);
+  }
+
+  int indexOfMail(String mail) {
+    int i = generatedIndex(mail);
+    if (i >= 0 && mail.equalsIgnoreCase(mail(i)))
+      return exists(i) ? i : -1;
+    return scanInvited(mail, false);
+  }
+
+  private int generatedIndex(String address) {
+    Matcher m = GENERATED_LOCAL.matcher(address.toLowerCase(Locale.ROOT));
+    if (!m.find() || m.group(1).length() > 9)
+      return -1;
+    int i = Integer.parseInt(m.group(1));
+    return i < size ? i : -1;
+  }
+
+  private synchronized int scanInvited(String address, boolean upn) {
+    for (int k = 0; k < invited.size(); k++) {
+      int i = size + k;
+      String v = upn ? userPrincipalName(i) : mail(i);
+      if (address.equalsIgnoreCase(v) && !deleted.get(i))
+        return i;
+    }
+    return -1;
+  }
+
+  // ---------- selections ----------
+
+  /** Every user, in index order. */
+  synchronized Selection all() {
+    int[] extra = new int[invited.size()];
+    for (int k = 0; k < extra.length; k++)
+      extra[k] = size + k;
+    return new Selection(0, size, extra);
+  }
+
+  Selection of(int... indexes) {
+    return new Selection(0, 0, indexes);
+  }
+
+  /** Users whose displayName starts with prefix, ignoring case. */
+  synchronized Selection displayNameStartsWith(String prefix) {
+    String p = prefix.toLowerCase(Locale.ROOT);
+    // generated names are sorted: [lo, hi) is the block that starts with p
+    int lo = 0, hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (lowerName(mid).compareTo(p) < 0)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    int from = lo;
+    hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (lowerName(mid).startsWith(p))
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    List<Integer> extra = new ArrayList<>();
+    for (int k = 0; k < invited.size(); k++) {
+      if (displayName(size + k).toLowerCase(Locale.ROOT).startsWith(p))
+        extra.add(size + k);
+    }
+    int[] e = new int[extra.size()];
+    for (int k = 0; k < e.length; k++)
+      e[k] = extra.get(k);
+    return new Selection(from, lo, e);
+  }
+
+  private String lowerName(int i) {
+    return displayName(i).toLowerCase(Locale.ROOT);
+  }
+
+  /** Generated users [lo, hi) followed by the listed indexes. */
+  static final class Selection {
+    private final int lo;
+    private final int hi;
+    private final int[] extra;
+
+    Selection(int lo, int hi, int[] extra) {
+      this.lo = lo;
+      this.hi = hi;
+      this.extra = extra;
+    }
+
+    int size() {
+      return hi - lo + extra.length;
+    }
+
+    int get(int k) {
+      int range = hi - lo;
+      return k < range ? lo + k : extra[k - range];
+    }
+  }
+
+  // ---------- properties of user i ----------
+
+  String id(int i) {
+    long h = mix(i);
+    return String.format("%08x-%04x-4%03x-%04x-%012x", h >>> 32, (h >>> 16) & 0xffff, h & 0xfff,
+        0x8000 | ((h >>> 48) & 0x3fff), (long) i);
+  }
+
+  String displayName(int i) {
+    Invitee inv = invitee(i);
+    if (inv != null)
+      return inv.displayName;
+    return givenName(i) + " " + surname(i) + (perName == 1 ? "" : " " + String.format(numberFormat, i % perName));
+  }
+
+  String givenName(int i) {
+    Invitee inv = invitee(i);
+    return inv != null ? null : FIRST[(i / perName) / LAST.length];
+  }
+
+  String surname(int i) {
+    Invitee inv = invitee(i);
+    return inv != null ? null : LAST[(i / perName) % LAST.length];
+  }
+
+  boolean isGuest(int i) {
+    return i >= size || i % 5 == 4;
+  }
+
+  String userPrincipalName(int i) {
+    if (isGuest(i))
+      return mail(i).replace('@', '_') + EXT_SUFFIX;
+    return local(i) + "@" + DOMAIN;
+  }
+
+  String mail(int i) {
+    Invitee inv = invitee(i);
+    if (inv != null)
+      return inv.email;
+    if (isGuest(i))
+      return local(i) + "@" + GUEST_DOMAINS[(i / 5) % GUEST_DOMAINS.length];
+    return i % 10 == 3 ? null : local(i) + "@" + DOMAIN;
+  }
+
+  private String local(int i) {
+    return (givenName(i) + "." + surname(i)).toLowerCase(Locale.ROOT) + "." + i;
+  }
+
+  String userType(int i) {
+    return isGuest(i) ? "Guest" : "Member";
+  }
+
+  boolean accountEnabled(int i) {
+    Boolean o = enabledOverrides.get(i);
+    return o != null ? o : i % 23 != 0;
+  }
+
+  String externalUserState(int i) {
+    if (!isGuest(i))
+      return null;
+    if (invitee(i) != null)
+      return "PendingAcceptance";
+    return (i / 5) % 3 == 0 ? "PendingAcceptance" : "Accepted";
+  }
+
+  String externalUserStateChangeDateTime(int i) {
+    if (!isGuest(i))
+      return null;
+    Invitee inv = invitee(i);
+    if (inv != null)
+      return inv.invitedAt.toString();
+    return Instant.ofEpochSecond(EPOCH_2024 + (i * 7919L) % 31_536_000L).toString();
+  }
+
+  private Invitee invitee(int i) {
+    if (i < size)
+      return null;
+    synchronized (this) {
+      return i - size < invited.size() ? invited.get(i - size) : null;
+    }
+  }
+
+  /** Writes user i as a Graph user object with the given properties. */
+  void write(JsonGenerator g, int i, List<String> select) throws IOException {
+    g.writeStartObject();
+    for (String p : select) {
+      switch (p) {
+        case "id":
+          g.writeStringField(p, id(i));
+          break;
+        case "displayName":
+          g.writeStringField(p, displayName(i));
+          break;
+        case "givenName":
+          g.writeStringField(p, givenName(i));
+          break;
+        case "surname":
+          g.writeStringField(p, surname(i));
+          break;
+        case "userPrincipalName":
+          g.writeStringField(p, userPrincipalName(i));
+          break;
+        case "mail":
+          g.writeStringField(p, mail(i));
+          break;
+        case "userType":
+          g.writeStringField(p, userType(i));
+          break;
+        case "accountEnabled":
+          g.writeBooleanField(p, accountEnabled(i));
+          break;
+        case "externalUserState":
+          g.writeStringField(p, externalUserState(i));
+          break;
+        case "externalUserStateChangeDateTime":
+          g.writeStringField(p, externalUserStateChangeDateTime(i));
+          break;
+        case "jobTitle":
+          g.writeStringField(p, isGuest(i) ? null : JOBS[i % JOBS.length]);
+          break;
+        case "officeLocation":
+          g.writeStringField(p, isGuest(i) ? null : OFFICES[i % OFFICES.length]);
+          break;
+        case "preferredLanguage":
+          g.writeStringField(p, "en-US");
+          break;
+        case "mobilePhone":
+          g.writeStringField(p, null);
+          break;
+        case "businessPhones":
+          g.writeArrayFieldStart(p);
+          if (!isGuest(i))
+            g.writeString(String.format("+1 425 555 %04d", i % 10000));
+          g.writeEndArray();
+          break;
+        default:
+          throw new IllegalArgumentException(p);
+      }
+    }
+    g.writeEndObject();
+  }
+
+  static boolean isProperty(String name) {
+    switch (name) {
+      case "id":
+      case "displayName":
+      case "givenName":
+      case "surname":
+      case "userPrincipalName":
+      case "mail":
+      case "userType":
+      case "accountEnabled":
+      case "externalUserState":
+      case "externalUserStateChangeDateTime":
+      case "jobTitle":
+      case "officeLocation":
+      case "preferredLanguage":
+      case "mobilePhone":
+      case "businessPhones":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static long mix(long x) {
+    x += 0x9E3779B97F4A7C15L;
+    x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+    x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+    return x ^ (x >>> 31);
+  }
+
+  private static final class Invitee {
+    final String email;
+    final String displayName;
+    final Instant invitedAt;
+
+    Invitee(String email, String displayName, Instant invitedAt) {
+      this.email = email;
+      this.displayName = displayName;
+      this.invitedAt = invitedAt;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.keyesit.graphcli;
+
+import com.microsoft.graph.models.User;
+import com.microsoft.graph.models.UserCollectionResponse;
+import com.microsoft.graph.serviceclient.GraphServiceClient;
+import com.microsoft.graph.users.UsersRequestBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TenantExporterTest {
+
+  @Test
+  void interruptedExport_resumesFromCheckpoint() throws Exception {
+    GraphServiceClient graph = mock(GraphServiceClient.class);
+    UsersRequestBuilder users = mock(UsersRequestBuilder.class);
+    UsersRequestBuilder second = mock(UsersRequestBuilder.class);
+    UsersRequestBuilder third = mock(UsersRequestBuilder.class);
+    when(graph.users()).thenReturn(users);
+    when(users.get(any())).thenReturn(page("n1", 0, 1));
+    when(users.withUrl("n1")).thenReturn(second);
+    when(users.withUrl("n2")).thenReturn(third);
+    when(second.get()).thenReturn(page("n2", 2, 3));
+    when(third.get())
+        .thenThrow(new RuntimeException("connection reset"))
+        .thenReturn(page(null, 4, 5));
+
+    Path out = Files.createTempDirectory("export").resolve("users.ndjson.gz");
+    TenantExporter exporter = new TenantExporter(graph, AppConfig.OutputFormat.ndjson, 1);
+
+    assertThrows(IllegalStateException.class, () -> exporter.run(out));
+    assertTrue(Files.exists(TenantExporter.checkpointFile(out)));
+
+    TenantExporter.Result result = exporter.run(out);
+
+    assertTrue(result.resumed);
+    assertEquals(6, result.users);
+    assertFalse(Files.exists(TenantExporter.checkpointFile(out)));
+    List<String> lines = gunzip(out);
+    assertEquals(6, lines.size());
+    for (int i = 0; i < 6; i++)
+      assertTrue(lines.get(i).contains(id(i)), lines.get(i));
+    verify(users, times(1)).get(any());
+
+    // the export doubles as an index file
+    assertEquals("User 5", UserIndex.load(out).byId(id(5)).get(0).getDisplayName());
+  }
+
+  private static UserCollectionResponse page(String next, int... ids) {
+    List<User> value = new ArrayList<>();
+    for (int i : ids) {
+      User u = new User();
+      u.setId(id(i));
+      u.setDisplayName("User " + i);
+      u.setUserPrincipalName("user" + i + "@contoso.com");
+      u.setAccountEnabled(true);
+      value.add(u);
+    }
+    UserCollectionResponse page = new UserCollectionResponse();
+    page.setValue(value);
+    page.setOdataNextLink(next);
+    return page;
+  }
+
+  private static String id(int i) {
+    return String.format("00000000-0000-0000-0000-%012d", i);
+  }
+
+  private static List<String> gunzip(Path file) throws Exception {
+    List<String> lines = new ArrayList<>();
+    try (BufferedReader r = new BufferedReader(new InputStreamReader(
+        new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = r.readLine()) != null)
+        lines.add(line);
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,145 @@
+package com.keyesit.graphcli;
+
+import com.microsoft.graph.models.UserCollectionResponse;
+import com.microsoft.graph.serviceclient.GraphServiceClient;
+import com.microsoft.graph.users.UsersRequestBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserIndexTest {
+
+  private static final String EXPORT =
+      "{\"id\":\"11111111-1111-1111-1111-111111111111\",\"displayName\":\"Alice Smith\","
+          + "\"userPrincipalName\":\"Alice@contoso.com\",\"mail\":\"alice.smith@contoso.com\",\"accountEnabled\":true}\n"
+          + "{\"id\":\"aaaaaaaa-2222-2222-2222-222222222222\",\"displayName\":\"Alicia Keys\","
+          + "\"userPrincipalName\":\"alicia@contoso.com\",\"mail\":null,\"accountEnabled\":false}\n"
+          + "{\"id\":\"bbbbbbbb-3333-3333-3333-333333333333\",\"displayName\":\"Bob\","
+          + "\"userPrincipalName\":\"bob@contoso.com\"}\n"
+          // delta export lines (ids in upper case): Bob removed, Alicia renamed
+          + "{\"id\":\"BBBBBBBB-3333-3333-3333-333333333333\",\"@removed\":{\"reason\":\"deleted\"}}\n"
+          + "{\"id\":\"AAAAAAAA-2222-2222-2222-222222222222\",\"displayName\":\"Alicia Jones\","
+          + "\"userPrincipalName\":\"alicia@contoso.com\",\"accountEnabled\":false}\n";
+
+  // ---------- index lookups ----------
+
+  @Test
+  void export_isIndexedWithDeltaLinesApplied() throws Exception {
+    UserIndex index = UserIndex.load(writeExport(Instant.now()));
+
+    assertEquals(2, index.size());
+    assertEquals("Alice Smith", index.byUpn("ALICE@contoso.com").get(0).getDisplayName());
+    assertEquals("Alice Smith", index.byMail("Alice.Smith@contoso.com").get(0).getDisplayName());
+    assertEquals(1, index.byId("11111111-1111-1111-1111-111111111111").size());
+    assertEquals("Alicia Jones", index.byId("aaaaaaaa-2222-2222-2222-222222222222").get(0).getDisplayName());
+    assertTrue(index.byUpn("bob@contoso.com").isEmpty());
+
+    List<UserSummary> ali = index.byDisplayNamePrefix("ali", 25);
+    assertEquals(2, ali.size());
+    assertEquals("Alicia Jones", ali.get(1).getDisplayName());
+    assertEquals(1, index.byDisplayNamePrefix("ali", 1).size());
+    assertTrue(index.byDisplayNamePrefix("alicia k", 25).isEmpty());
+  }
+
+  // ---------- finder ----------
+
+  @Test
+  void freshIndex_answersWithoutGraph() throws Exception {
+    GraphServiceClient graph = mock(GraphServiceClient.class);
+    UserIndex index = UserIndex.load(writeExport(Instant.now()));
+
+    GraphUserFinder finder = new GraphUserFinder(graph, index, Duration.ofMinutes(60));
+    List<UserSummary> found = finder.find(loadConfig("alice@contoso.com"));
+
+    assertEquals(1, found.size());
+    verifyNoInteractions(graph);
+  }
+
+  @Test
+  void freshIndex_neverBuildsTheClient() throws Exception {
+    UserIndex index = UserIndex.load(writeExport(Instant.now()));
+    LazyGraphClient graph = new LazyGraphClient(() -> {
+      throw new AssertionError("client built for an index hit");
+    });
+
+    GraphUserFinder finder = new GraphUserFinder(graph, index, Duration.ofMinutes(60), AppConfig.Resolution.sequential);
+
+    assertEquals(1, finder.find("alice@contoso.com", 25).size());
+    assertEquals(2, finder.find("ali", 25).size());
+  }
+
+  @Test
+  void staleIndex_goesToGraph() throws Exception {
+    GraphServiceClient graph = mock(GraphServiceClient.class);
+    UsersRequestBuilder users = mock(UsersRequestBuilder.class);
+    when(graph.users()).thenReturn(users);
+    UserCollectionResponse emptyPage = new UserCollectionResponse();
+    emptyPage.setValue(Collections.emptyList());
+    when(users.get(any())).thenReturn(emptyPage);
+
+    UserIndex index = UserIndex.load(writeExport(Instant.now().minus(Duration.ofHours(2))));
+
+    GraphUserFinder finder = new GraphUserFinder(graph, index, Duration.ofMinutes(60));
+    finder.find(loadConfig("ali"));
+
+    verify(users, times(1)).get(any());
+  }
+
+  @Test
+  void deleteFinder_ignoresFreshIndex() throws Exception {
+    GraphServiceClient graph = mock(GraphServiceClient.class);
+    UsersRequestBuilder users = mock(UsersRequestBuilder.class);
+    when(graph.users()).thenReturn(users);
+    UserCollectionResponse emptyPage = new UserCollectionResponse();
+    emptyPage.setValue(Collections.emptyList());
+    when(users.get(any())).thenReturn(emptyPage);
+
+    Path export = writeExport(Instant.now());
+    AppConfig cfg = loadConfig("ali", "indexFile=" + export.toString().replace('\\', '/') + "\n");
+
+    assertEquals(2, GraphCli.newFinder(cfg, () -> graph).find(cfg).size());
+    verifyNoInteractions(graph);
+    assertTrue(GraphCli.deleteFinder(cfg, () -> graph).find(cfg).isEmpty());
+    verify(users, times(1)).get(any());
+  }
+
+  // ---------- helpers ----------
+
+  private static Path writeExport(Instant modified) throws Exception {
+    Path tmp = Files.createTempFile("users", ".ndjson");
+    Files.write(tmp, EXPORT.getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(tmp, FileTime.from(modified));
+    return tmp;
+  }
+
+  private static AppConfig loadConfig(String query) throws Exception {
+    return loadConfig(query, "");
+  }
+
+  private static AppConfig loadConfig(String query, String extraSearch) throws Exception {
+    Path tmp = Files.createTempFile("config", ".ini");
+    String ini = "[operation]\n" +
+        "mode=search\n" +
+        "\n" +
+        "[search]\n" +
+        "query=" + query + "\n" +
+        "maxResults=25\n" +
+        extraSearch +
+        "\n" +
+        "[invite]\n" +
+        "redirectUrl=\n" +
+        "sendInvitationMessage=true\n";
+    Files.write(tmp, ini.getBytes(StandardCharsets.UTF_8));
+    return AppConfig.fromIni(IniConfig.load(tmp));
+  }
+}
@@ -0,0 +1,103 @@
+package com.keyesit.graphcli;
+
+import com.microsoft.graph.serviceclient.GraphServiceClient;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserSnapshotTest {
+
+  private static final String ALICE = "11111111-1111-1111-1111-111111111111";
+  private static final String ALICIA = "22222222-2222-2222-2222-222222222222";
+  private static final String BOB = "03333333-3333-3333-3333-333333333333";
+
+  private static final List<UserSummary> USERS = Arrays.asList(
+      new UserSummary(BOB, "Bob", "bob@contoso.com", "shared@contoso.com", "Member", false, null, null),
+      new UserSummary(ALICE, "Alice Smith", "Alice@contoso.com", "alice.smith@contoso.com", "Guest", true,
+          "PendingAcceptance", OffsetDateTime.parse("2024-03-01T10:15:30Z")),
+      new UserSummary(ALICIA, "alicia Jones", "alicia@contoso.com", "shared@contoso.com", "Member", null, null, null));
+
+  @Test
+  void lookups_answerFromMappedFile() throws Exception {
+    Instant builtAt = Instant.parse("2025-01-01T00:00:00Z");
+    UserSnapshot snap = writeAndOpen(USERS, builtAt);
+
+    assertEquals(3, snap.size());
+    assertEquals(builtAt, snap.getBuiltAt());
+
+    UserSummary alice = snap.byId(ALICE).get(0);
+    assertEquals("Alice Smith", alice.getDisplayName());
+    assertEquals("alice.smith@contoso.com", alice.getMail());
+    assertEquals("PendingAcceptance", alice.getExternalUserState());
+    assertEquals(Boolean.TRUE, alice.getAccountEnabled());
+    assertEquals(Instant.parse("2024-03-01T10:15:30Z"), alice.getExternalUserStateChangeDateTime().toInstant());
+    assertTrue(snap.byId("44444444-4444-4444-4444-444444444444").isEmpty());
+
+    assertEquals(ALICE, snap.byUpn("ALICE@contoso.com").get(0).getId());
+    assertEquals(2, snap.byMail("Shared@Contoso.com").size());
+    assertTrue(snap.byMail("nobody@contoso.com").isEmpty());
+
+    List<UserSummary> ali = snap.byDisplayNamePrefix("ali", 25);
+    assertEquals(2, ali.size());
+    assertEquals("Alice Smith", ali.get(0).getDisplayName());
+    assertEquals(1, snap.byDisplayNamePrefix("ali", 1).size());
+    assertTrue(snap.byDisplayNamePrefix("alicia k", 25).isEmpty());
+
+    int row = snap.rowOf(ALICIA);
+    assertNull(snap.accountEnabled(row));
+    assertEquals("Member", snap.userType(row));
+    assertEquals(Long.MIN_VALUE, snap.externalUserStateChangeMillis(row));
+  }
+
+  @Test
+  void largeSnapshot_findsEveryId() throws Exception {
+    List<UserSummary> users = new ArrayList<>();
+    for (int i = 0; i < 20000; i++)
+      users.add(new UserSummary(new UUID(i * 0x9E3779B97F4A7C15L, i).toString(), "User " + i,
+          "u" + i + "@contoso.com", null, "Member", true, null, null));
+    UserSnapshot snap = writeAndOpen(users, Instant.now());
+
+    for (int i = 0; i < users.size(); i += 997) {
+      String id = users.get(i).getId();
+      assertEquals(id, snap.byId(id).get(0).getId());
+      assertEquals(id, snap.byUpn("U" + i + "@contoso.com").get(0).getId());
+    }
+  }
+
+  @Test
+  void freshSnapshot_servesFinderWithoutGraph() throws Exception {
+    GraphServiceClient graph = mock(GraphServiceClient.class);
+    UserSnapshot snap = writeAndOpen(USERS, Instant.now());
+
+    GraphUserFinder finder = new GraphUserFinder(graph, snap, Duration.ofMinutes(60));
+
+    assertEquals(BOB, finder.find("bob@contoso.com", 25).get(0).getId());
+    assertEquals(2, finder.find("ali", 25).size());
+    verifyNoInteractions(graph);
+  }
+
+  @Test
+  void open_rejectsOtherFiles() throws Exception {
+    Path tmp = Files.createTempFile("users", ".snap");
+    Files.write(tmp, new byte[128]);
+    assertThrows(IOException.class, () -> UserSnapshot.open(tmp));
+  }
+
+  private static UserSnapshot writeAndOpen(List<UserSummary> users, Instant builtAt) throws Exception {
+    Path file = Files.createTempFile("users", ".snap");
+    UserSnapshot.write(users, builtAt, file);
+    return UserSnapshot.open(file);
+  }
+}